@@ -2,8 +2,12 @@ package com.adrianr.vending;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@EnableScheduling
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class VendingApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,61 @@
+package com.adrianr.vending.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Frequency estimates in fixed memory. An estimate never undercounts and overcounts by at most
+ * {@code e / width * total} with probability {@code 1 - e^-depth}.
+ */
+public class CountMinSketch {
+
+    private final int width;
+    private final long[][] table;
+
+    public CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1 || depth < 1) {
+            throw new IllegalArgumentException("Width must be a power of two and depth positive");
+        }
+        this.width = width;
+        this.table = new long[depth][width];
+    }
+
+    public void add(long key, long count) {
+        long h1 = Hashing.mix(key);
+        long h2 = Hashing.mix(h1);
+        for (int row = 0; row < table.length; row++) {
+            table[row][index(h1, h2, row)] += count;
+        }
+    }
+
+    public long estimate(long key) {
+        long h1 = Hashing.mix(key);
+        long h2 = Hashing.mix(h1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < table.length; row++) {
+            estimate = Math.min(estimate, table[row][index(h1, h2, row)]);
+        }
+        return estimate;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.table.length != table.length) {
+            throw new IllegalArgumentException("Sketch dimensions do not match");
+        }
+        for (int row = 0; row < table.length; row++) {
+            for (int column = 0; column < width; column++) {
+                table[row][column] += other.table[row][column];
+            }
+        }
+    }
+
+    public void clear() {
+        for (long[] row : table) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    private int index(long h1, long h2, int row) {
+        return (int) ((h1 + row * h2) & (width - 1));
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.adrianr.vending.analytics;
+
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * SplitMix64 finalizer: spreads sequential ids over all 64 bits, which both sketches rely on.
+     */
+    static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.adrianr.vending.analytics;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.tenancy.TenantContext;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Published by every buy path. {@link SalesAnalytics} only picks it up once the buy has committed.
+ */
+@Data
+@Builder
+public class SaleEvent {
+
+    private Integer productId;
+    private Integer machineId;
+    private String productName;
+    private Integer sellerId;
+    private Integer buyerId;
+    private Integer amount;
+    private BigDecimal revenue;
+    private Instant timestamp;
+    private String tenant;
+
+    /**
+     * @param machineId the machine the item left from, or null for a buy against the global product stock
+     */
+    public static SaleEvent of(Product product, Integer machineId, Integer buyerId, Integer amount,
+                               BigDecimal revenue, Instant timestamp) {
+        return SaleEvent.builder()
+                .productId(product.getId())
+                .machineId(machineId)
+                .productName(product.getProductName())
+                .sellerId(product.getSellerId())
+                .buyerId(buyerId)
+                .amount(amount)
+                .revenue(revenue)
+                .timestamp(timestamp)
+                .tenant(TenantContext.current().orElse(null))
+                .build();
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.adrianr.vending.analytics;
+
+import com.adrianr.vending.config.AnalyticsProperties;
+import com.adrianr.vending.rest.dto.AnalyticsSummaryDto;
+import com.adrianr.vending.rest.dto.TopProductDto;
+import com.adrianr.vending.tenancy.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Sales aggregates over a sliding window, kept entirely in memory and never queried from the database.
+ * <p>
+ * Committed {@link SaleEvent}s are only enqueued on the request thread; a scheduled drain folds them into the
+ * window. When the queue is full the event is dropped and counted rather than slowing the buy down. Every read is
+ * scoped to one seller, so no seller can see, or work out, another's sales. Aggregates start empty on every restart.
+ */
+@Service
+public class SalesAnalytics {
+
+    private static final String NO_TENANT = "";
+
+    private final AnalyticsProperties properties;
+    private final LongSupplier clock;
+    private final BlockingQueue<SaleEvent> queue;
+    private final Map<String, SalesWindow> windows = new ConcurrentHashMap<>();
+    private final Counter dropped;
+    private final Counter late;
+
+    @Autowired
+    public SalesAnalytics(AnalyticsProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    SalesAnalytics(AnalyticsProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.dropped = meterRegistry.counter("vending.analytics.dropped");
+        this.late = meterRegistry.counter("vending.analytics.late");
+        meterRegistry.gaugeCollectionSize("vending.analytics.queue", Tags.empty(), queue);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSale(SaleEvent event) {
+        if (properties.isEnabled() && !queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${vending.analytics.drain-interval-ms:200}")
+    public void drain() {
+        List<SaleEvent> events = new ArrayList<>();
+        queue.drainTo(events);
+        if (events.isEmpty()) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        for (SaleEvent event : events) {
+            SalesWindow window = window(event.getTenant());
+            synchronized (window) {
+                if (!window.record(event, now)) {
+                    late.increment();
+                }
+            }
+        }
+    }
+
+    public List<TopProductDto> topProducts(Integer sellerId, int limit) {
+        SalesWindow window = window(TenantContext.current().orElse(null));
+        Map<Integer, String> names = new HashMap<>();
+        List<Map.Entry<Integer, Long>> top;
+        synchronized (window) {
+            top = window.topProducts(sellerId, limit, clock.getAsLong(), names);
+        }
+        return top.stream()
+                .map(entry -> TopProductDto.builder()
+                        .productId(entry.getKey())
+                        .productName(names.get(entry.getKey()))
+                        .units(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    public BigDecimal revenueOfSeller(Integer sellerId) {
+        SalesWindow window = window(TenantContext.current().orElse(null));
+        synchronized (window) {
+            return window.revenueOfSeller(sellerId, clock.getAsLong());
+        }
+    }
+
+    /**
+     * Units the seller sold per hour over the window. Buckets shorter than an hour are summed into the hour they start
+     * in.
+     */
+    public Map<Instant, Long> unitsPerHour(Integer sellerId) {
+        SalesWindow window = window(TenantContext.current().orElse(null));
+        Map<Long, Long> units;
+        synchronized (window) {
+            units = window.unitsPerBucket(sellerId, clock.getAsLong());
+        }
+        Map<Instant, Long> perHour = new TreeMap<>();
+        units.forEach((start, count) -> perHour.merge(
+                Instant.ofEpochMilli(start - Math.floorMod(start, 3_600_000L)), count, Long::sum));
+        return perHour;
+    }
+
+    public AnalyticsSummaryDto summary(Integer sellerId) {
+        SalesWindow window = window(TenantContext.current().orElse(null));
+        synchronized (window) {
+            long now = clock.getAsLong();
+            return AnalyticsSummaryDto.builder()
+                    .windowStart(Instant.ofEpochMilli(window.windowStart(now)))
+                    .units(window.totalUnits(sellerId, now))
+                    .revenue(window.revenueOfSeller(sellerId, now))
+                    .distinctBuyers(window.distinctBuyers(sellerId, now))
+                    .build();
+        }
+    }
+
+    /**
+     * Each tenant gets its own window, so one operator's figures never show up in another's.
+     */
+    private SalesWindow window(String tenant) {
+        return windows.computeIfAbsent(tenant != null ? tenant : NO_TENANT, key -> new SalesWindow(properties));
+    }
+
+}
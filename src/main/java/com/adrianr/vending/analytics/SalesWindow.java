@@ -0,0 +1,190 @@
+package com.adrianr.vending.analytics;
+
+import com.adrianr.vending.config.AnalyticsProperties;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * A ring of fixed-length time buckets covering the last {@code buckets * bucketDuration}. A bucket is recycled as
+ * soon as the clock moves into a slot it last held data for a full window ago, so sliding is O(1) per event.
+ * <p>
+ * Units per product live in a Count-Min sketch shared by all sellers, since a product only ever has one seller. Every
+ * figure a seller sees is scoped to them: each bucket keeps, per seller that sold in it, exact units and revenue, a
+ * HyperLogLog of buyers and the few products with the highest estimates as top-N candidates. Memory grows with the
+ * sellers active in the window, not with the catalogue. Not thread safe, {@link SalesAnalytics} serialises access.
+ */
+class SalesWindow {
+
+    private final AnalyticsProperties properties;
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+
+    SalesWindow(AnalyticsProperties properties) {
+        this.properties = properties;
+        this.bucketMillis = properties.getBucketDuration().toMillis();
+        this.buckets = new Bucket[properties.getBuckets()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * @return false if the sale is older than the window, e.g. an offline buy synced late
+     */
+    boolean record(SaleEvent event, long now) {
+        long time = Math.min(event.getTimestamp().toEpochMilli(), now);
+        if (time < windowStart(now)) {
+            return false;
+        }
+
+        long start = time - Math.floorMod(time, bucketMillis);
+        Bucket bucket = buckets[(int) Math.floorMod(start / bucketMillis, (long) buckets.length)];
+        if (bucket.start != start) {
+            bucket.reset(start);
+        }
+        bucket.add(event);
+        return true;
+    }
+
+    long windowStart(long now) {
+        return now - Math.floorMod(now, bucketMillis) - (buckets.length - 1) * bucketMillis;
+    }
+
+    List<Map.Entry<Integer, Long>> topProducts(Integer sellerId, int limit, long now, Map<Integer, String> names) {
+        CountMinSketch units = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        Set<Integer> candidates = new HashSet<>();
+        for (Bucket bucket : live(now)) {
+            units.merge(bucket.units);
+            SellerSales sales = bucket.sellers.get(sellerId);
+            if (sales != null) {
+                candidates.addAll(sales.candidates.keySet());
+                names.putAll(sales.candidates);
+            }
+        }
+
+        List<Map.Entry<Integer, Long>> top = new ArrayList<>(candidates.size());
+        for (Integer productId : candidates) {
+            top.add(Map.entry(productId, units.estimate(productId)));
+        }
+        top.sort(Map.Entry.<Integer, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    BigDecimal revenueOfSeller(Integer sellerId, long now) {
+        BigDecimal revenue = BigDecimal.ZERO;
+        for (SellerSales sales : salesOf(sellerId, now)) {
+            revenue = revenue.add(sales.revenue);
+        }
+        return revenue;
+    }
+
+    /**
+     * Units the seller sold per bucket start, oldest first, with empty buckets included so gaps show up as zeroes.
+     */
+    Map<Long, Long> unitsPerBucket(Integer sellerId, long now) {
+        Map<Long, Long> units = new TreeMap<>();
+        for (long start = windowStart(now); start <= now; start += bucketMillis) {
+            units.put(start, 0L);
+        }
+        for (Bucket bucket : live(now)) {
+            SellerSales sales = bucket.sellers.get(sellerId);
+            if (sales != null) {
+                units.put(bucket.start, sales.units);
+            }
+        }
+        return units;
+    }
+
+    long distinctBuyers(Integer sellerId, long now) {
+        HyperLogLog buyers = new HyperLogLog(properties.getHyperLogLogPrecision());
+        for (SellerSales sales : salesOf(sellerId, now)) {
+            buyers.merge(sales.buyers);
+        }
+        return buyers.estimate();
+    }
+
+    long totalUnits(Integer sellerId, long now) {
+        return salesOf(sellerId, now).stream().mapToLong(sales -> sales.units).sum();
+    }
+
+    private List<SellerSales> salesOf(Integer sellerId, long now) {
+        List<SellerSales> sales = new ArrayList<>();
+        for (Bucket bucket : live(now)) {
+            SellerSales bucketSales = bucket.sellers.get(sellerId);
+            if (bucketSales != null) {
+                sales.add(bucketSales);
+            }
+        }
+        return sales;
+    }
+
+    private List<Bucket> live(long now) {
+        long windowStart = windowStart(now);
+        List<Bucket> live = new ArrayList<>(buckets.length);
+        for (Bucket bucket : buckets) {
+            if (bucket.start >= windowStart && bucket.start <= now) {
+                live.add(bucket);
+            }
+        }
+        return live;
+    }
+
+    private class Bucket {
+
+        private long start = Long.MIN_VALUE;
+        private final CountMinSketch units =
+                new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        private final Map<Integer, SellerSales> sellers = new HashMap<>();
+
+        void reset(long start) {
+            this.start = start;
+            units.clear();
+            sellers.clear();
+        }
+
+        void add(SaleEvent event) {
+            units.add(event.getProductId(), event.getAmount());
+            sellers.computeIfAbsent(event.getSellerId(), sellerId -> new SellerSales()).add(event, units);
+        }
+
+    }
+
+    private class SellerSales {
+
+        private final HyperLogLog buyers = new HyperLogLog(properties.getHyperLogLogPrecision());
+        private final Map<Integer, String> candidates = new HashMap<>();
+        private long units;
+        private BigDecimal revenue = BigDecimal.ZERO;
+
+        void add(SaleEvent event, CountMinSketch productUnits) {
+            buyers.add(event.getBuyerId());
+            units += event.getAmount();
+            revenue = revenue.add(event.getRevenue());
+            offerCandidate(event.getProductId(), event.getProductName(), productUnits);
+        }
+
+        private void offerCandidate(Integer productId, String productName, CountMinSketch productUnits) {
+            if (candidates.containsKey(productId) || candidates.size() < properties.getTopCandidates()) {
+                candidates.put(productId, productName);
+                return;
+            }
+
+            Integer weakest = null;
+            long weakestEstimate = Long.MAX_VALUE;
+            for (Integer candidate : candidates.keySet()) {
+                long estimate = productUnits.estimate(candidate);
+                if (estimate < weakestEstimate) {
+                    weakest = candidate;
+                    weakestEstimate = estimate;
+                }
+            }
+            if (productUnits.estimate(productId) > weakestEstimate) {
+                candidates.remove(weakest);
+                candidates.put(productId, productName);
+            }
+        }
+
+    }
+
+}
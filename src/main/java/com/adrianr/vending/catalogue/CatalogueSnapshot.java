@@ -0,0 +1,132 @@
+package com.adrianr.vending.catalogue;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.repository.CatalogueChangeRepository;
+import com.adrianr.vending.service.ProductService;
+import com.adrianr.vending.tenancy.TenantContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The product list of each tenant, serialized once into read-only direct buffers, plain and gzip encoded. A sale on
+ * this node or a new catalogue change marks it stale; stale snapshots are rebuilt every {@code debounce-ms}, so a
+ * burst of changes costs one rebuild. Every snapshot is also rebuilt after {@code max-age} regardless.
+ */
+@Slf4j
+public class CatalogueSnapshot {
+
+    private static final String NO_TENANT = "";
+
+    private final ProductService productService;
+    private final CatalogueChangeRepository catalogueChangeRepository;
+    private final ObjectMapper objectMapper;
+    private final CatalogueSnapshotProperties properties;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+
+    public CatalogueSnapshot(ProductService productService,
+                             CatalogueChangeRepository catalogueChangeRepository,
+                             ObjectMapper objectMapper,
+                             CatalogueSnapshotProperties properties) {
+        this.productService = productService;
+        this.catalogueChangeRepository = catalogueChangeRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * The current tenant's snapshot, empty until the first one is built.
+     */
+    public Optional<Snapshot> current() {
+        return Optional.ofNullable(snapshots.get(tenant()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSale(SaleEvent event) {
+        stale.add(event.getTenant() == null ? NO_TENANT : event.getTenant());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${vending.catalogue.snapshot.debounce-ms:250}")
+    public synchronized void refresh() {
+        TenantContext.forEachTenant(() -> {
+            String tenant = tenant();
+            try {
+                Snapshot snapshot = snapshots.get(tenant);
+                Integer latestChange = catalogueChangeRepository.findLatestVersion();
+                if (stale.remove(tenant) || snapshot == null || !snapshot.latestChange.equals(latestChange)
+                        || System.nanoTime() - snapshot.builtAt > properties.getMaxAge().toNanos()) {
+                    snapshots.put(tenant, build(latestChange));
+                }
+            } catch (IOException | RuntimeException e) {
+                stale.add(tenant);
+                log.warn("Could not rebuild the catalogue snapshot of tenant {}, serving the previous one", tenant, e);
+            }
+        });
+    }
+
+    private Snapshot build(Integer latestChange) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(productService.getAllProducts());
+        ByteBuffer gzip = null;
+        if (properties.isGzip()) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(json);
+            }
+            gzip = toDirect(compressed.toByteArray());
+        }
+        return new Snapshot(toDirect(json), gzip, latestChange, System.nanoTime());
+    }
+
+    private static ByteBuffer toDirect(byte[] bytes) {
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+    }
+
+    private static String tenant() {
+        return TenantContext.current().orElse(NO_TENANT);
+    }
+
+    public static final class Snapshot {
+
+        private final ByteBuffer json;
+        private final ByteBuffer gzip;
+        private final Integer latestChange;
+        private final long builtAt;
+
+        private Snapshot(ByteBuffer json, ByteBuffer gzip, Integer latestChange, long builtAt) {
+            this.json = json;
+            this.gzip = gzip;
+            this.latestChange = latestChange;
+            this.builtAt = builtAt;
+        }
+
+        /**
+         * A view of the plain JSON with its own position, safe to drain on one request.
+         */
+        public ByteBuffer json() {
+            return json.duplicate();
+        }
+
+        /**
+         * A view of the gzip encoded JSON, empty when gzip is off.
+         */
+        public Optional<ByteBuffer> gzip() {
+            return Optional.ofNullable(gzip).map(ByteBuffer::duplicate);
+        }
+
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.adrianr.vending.catalogue;
+
+import com.adrianr.vending.repository.CatalogueChangeRepository;
+import com.adrianr.vending.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serves the product list from a prebuilt {@link CatalogueSnapshot}. Off by default. The snapshot filter runs after
+ * the security chain, so responses carry the same security headers as the controller's.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "vending.catalogue.snapshot", name = "enabled", havingValue = "true")
+public class CatalogueSnapshotConfiguration {
+
+    @Bean
+    public CatalogueSnapshot catalogueSnapshot(ProductService productService,
+                                               CatalogueChangeRepository catalogueChangeRepository,
+                                               ObjectMapper objectMapper,
+                                               CatalogueSnapshotProperties properties) {
+        return new CatalogueSnapshot(productService, catalogueChangeRepository, objectMapper, properties);
+    }
+
+    @Bean
+    public FilterRegistrationBean<CatalogueSnapshotFilter> catalogueSnapshotFilter(
+            CatalogueSnapshot catalogueSnapshot) {
+        FilterRegistrationBean<CatalogueSnapshotFilter> registration =
+                new FilterRegistrationBean<>(new CatalogueSnapshotFilter(catalogueSnapshot));
+        registration.addUrlPatterns(CatalogueSnapshotFilter.PATH);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+}
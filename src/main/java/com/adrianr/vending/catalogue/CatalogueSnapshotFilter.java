@@ -0,0 +1,132 @@
+package com.adrianr.vending.catalogue;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Answers {@code GET /products} for JSON clients from the {@link CatalogueSnapshot}, without reaching the dispatcher,
+ * the database or Jackson. Other formats, and requests arriving before the first snapshot, pass through to the
+ * controller.
+ * <p>
+ * Tomcat's and Undertow's output streams both take a {@link ByteBuffer} directly, which the servlet API does not
+ * expose. Headers are committed through the wrappers around the response first, so the security headers are written,
+ * and the buffer then goes to the container's own stream. When a wrapper holds the response back, a buffering one,
+ * the bytes are copied through it in chunks instead.
+ */
+public class CatalogueSnapshotFilter extends OncePerRequestFilter {
+
+    static final String PATH = "/products";
+
+    private static final int COPY_CHUNK = 8192;
+    private static final ClassValue<Optional<MethodHandle>> BUFFER_WRITERS = new ClassValue<>() {
+        @Override
+        protected Optional<MethodHandle> computeValue(Class<?> type) {
+            try {
+                return Optional.of(MethodHandles.publicLookup().findVirtual(type, "write",
+                        MethodType.methodType(void.class, ByteBuffer.class)));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return Optional.empty();
+            }
+        }
+    };
+
+    private final CatalogueSnapshot catalogueSnapshot;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public CatalogueSnapshotFilter(CatalogueSnapshot catalogueSnapshot) {
+        this.catalogueSnapshot = catalogueSnapshot;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod())
+                || !PATH.equals(urlPathHelper.getPathWithinApplication(request))
+                || !acceptsJson(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Optional<CatalogueSnapshot.Snapshot> snapshot = catalogueSnapshot.current();
+        if (snapshot.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, PATH);
+        Optional<ByteBuffer> gzip = acceptsGzip(request) ? snapshot.get().gzip() : Optional.empty();
+        ByteBuffer body = gzip.orElseGet(snapshot.get()::json);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.remaining());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip.isPresent()) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        write(body, response);
+    }
+
+    private static void write(ByteBuffer body, HttpServletResponse response) throws IOException {
+        response.flushBuffer();
+        ServletResponse target = response;
+        if (response.isCommitted()) {
+            while (target instanceof ServletResponseWrapper) {
+                target = ((ServletResponseWrapper) target).getResponse();
+            }
+        }
+
+        ServletOutputStream out = target.getOutputStream();
+        Optional<MethodHandle> writer = BUFFER_WRITERS.get(out.getClass());
+        if (writer.isPresent()) {
+            try {
+                writer.get().invoke(out, body);
+                return;
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IOException(e);
+            }
+        }
+
+        byte[] chunk = new byte[Math.min(COPY_CHUNK, body.remaining())];
+        while (body.hasRemaining()) {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    private static boolean acceptsJson(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return true;
+        }
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        return accepted.isEmpty() || accepted.stream().anyMatch(type -> type.includes(MediaType.APPLICATION_JSON));
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+}
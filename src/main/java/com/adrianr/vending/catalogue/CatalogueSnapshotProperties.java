@@ -0,0 +1,24 @@
+package com.adrianr.vending.catalogue;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("vending.catalogue.snapshot")
+public class CatalogueSnapshotProperties {
+
+    private boolean enabled = false;
+    private boolean gzip = true;
+    /**
+     * How long changes are gathered before the snapshot is rebuilt, and so how stale it can be after a change.
+     */
+    private long debounceMs = 250;
+    /**
+     * Rebuilds a snapshot at least this often, for changes it is not told about: stock held by reservations, buys
+     * made on other nodes.
+     */
+    private Duration maxAge = Duration.ofSeconds(5);
+
+}
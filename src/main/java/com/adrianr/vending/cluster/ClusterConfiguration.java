@@ -0,0 +1,92 @@
+package com.adrianr.vending.cluster;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.core.HazelcastInstance;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs every node as a member of an embedded Hazelcast cluster, found over TCP at {@code members}. The cluster holds
+ * the product and credential caches, read through a near cache on each node and invalidated cluster-wide on change,
+ * and a stock counter per product that turns away buys for sold out stock before they reach the database. Token
+ * revocations and restock alert batches go through the cluster too, so every node sees them. Deposit coalescing keeps
+ * pending amounts on the node that took them and is refused.
+ * <p>
+ * Off by default. Spring Boot starts the member from the {@link Config} declared here.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "vending.cluster", name = "enabled", havingValue = "true")
+public class ClusterConfiguration {
+
+    private static final List<String> INCOMPATIBLE = List.of("vending.deposit.coalescing.enabled");
+
+    public ClusterConfiguration(Environment environment) {
+        INCOMPATIBLE.stream()
+                .filter(property -> environment.getProperty(property, Boolean.class, false))
+                .findFirst()
+                .ifPresent(property -> {
+                    throw new IllegalStateException(property + " cannot be combined with vending.cluster.enabled");
+                });
+    }
+
+    @Bean
+    public Config hazelcastConfig(ClusterProperties properties) {
+        if (properties.getCpMemberCount() > properties.getMembers().size()) {
+            throw new IllegalStateException("vending.cluster.cp-member-count=" + properties.getCpMemberCount()
+                    + " needs at least that many vending.cluster.members, or 0 to run the stock counters unsafe");
+        }
+
+        Config config = new Config()
+                .setClusterName(properties.getName())
+                .setProperty("hazelcast.phone.home.enabled", "false")
+                .setProperty("hazelcast.logging.type", "slf4j")
+                .addMapConfig(cachedMap(HazelcastProductCache.MAP_NAME, properties.getProductTtl()))
+                .addMapConfig(cachedMap(HazelcastUserCache.MAP_NAME, properties.getCredentialTtl()));
+
+        config.getNetworkConfig()
+                .setPort(properties.getPort())
+                .setPortAutoIncrement(true);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig()
+                .setEnabled(true)
+                .setMembers(properties.getMembers());
+
+        config.getCPSubsystemConfig().setCPMemberCount(properties.getCpMemberCount());
+        return config;
+    }
+
+    @Bean
+    public HazelcastProductCache hazelcastProductCache(HazelcastInstance hazelcastInstance) {
+        return new HazelcastProductCache(hazelcastInstance);
+    }
+
+    @Bean
+    public HazelcastUserCache hazelcastUserCache(HazelcastInstance hazelcastInstance) {
+        return new HazelcastUserCache(hazelcastInstance);
+    }
+
+    @Bean
+    public ClusterStockAspect clusterStockAspect(HazelcastInstance hazelcastInstance) {
+        return new ClusterStockAspect(hazelcastInstance);
+    }
+
+    private static MapConfig cachedMap(String name, Duration ttl) {
+        return new MapConfig(name)
+                .setTimeToLiveSeconds((int) ttl.toSeconds())
+                .setNearCacheConfig(new NearCacheConfig(name)
+                        .setInMemoryFormat(InMemoryFormat.BINARY)
+                        .setInvalidateOnChange(true)
+                        .setTimeToLiveSeconds((int) ttl.toSeconds()));
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.adrianr.vending.cluster;
+
+import com.adrianr.vending.tenancy.TenantContext;
+
+/**
+ * Ids and usernames repeat across tenants, so every cluster-wide key carries the current tenant.
+ */
+final class ClusterKeys {
+
+    private ClusterKeys() {
+    }
+
+    static String of(Object id) {
+        return TenantContext.current().map(tenant -> tenant + ":" + id).orElse(String.valueOf(id));
+    }
+
+}
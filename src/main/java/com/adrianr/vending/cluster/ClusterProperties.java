@@ -0,0 +1,29 @@
+package com.adrianr.vending.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@ConfigurationProperties("vending.cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+    private String name = "vending";
+    /**
+     * First port to listen on; the next free one above it is taken when it is in use, so several nodes can share a host.
+     */
+    private int port = 5701;
+    private List<String> members = List.of("127.0.0.1");
+    /**
+     * Members backing the stock counters with Raft. Stock counters wait until this many nodes have joined, and startup
+     * fails when fewer {@code members} are listed. 0 runs the counters unsafe: replicated, but a split brain can let two
+     * halves hand out the same stock, which the database then refuses.
+     */
+    private int cpMemberCount = 3;
+    private Duration productTtl = Duration.ofSeconds(30);
+    private Duration credentialTtl = Duration.ofMinutes(5);
+
+}
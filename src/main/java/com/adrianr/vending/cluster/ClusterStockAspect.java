@@ -0,0 +1,128 @@
+package com.adrianr.vending.cluster;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.repository.ProductRepository;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.IAtomicLong;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+import java.util.Optional;
+
+/**
+ * Keeps a cluster-wide counter of each product's stock in front of the {@link ProductRepository} stock updates. A buy
+ * takes its units off the counter first and only reaches the database when they were there, so once a product sells
+ * out the nodes stop queueing on its row. The database stays authoritative: its conditional update still decides, and
+ * a counter that disagrees with it is dropped and read again.
+ * <p>
+ * Counters hold the stock plus one, leaving 0, the value of a counter never written, for one that is not loaded.
+ */
+@Aspect
+public class ClusterStockAspect {
+
+    private static final long UNKNOWN = 0;
+
+    private final HazelcastInstance hazelcastInstance;
+
+    public ClusterStockAspect(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Around("target(productRepository)")
+    public Object coordinateStock(ProceedingJoinPoint joinPoint, ProductRepository productRepository)
+            throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        switch (joinPoint.getSignature().getName()) {
+            case "takeStock":
+                return takeStock(joinPoint, productRepository, (Integer) args[0], (Integer) args[1]);
+            case "returnStock":
+                return returnStock(joinPoint, (Integer) args[0], (Integer) args[1]);
+            case "save":
+                Integer productId = ((Product) args[0]).getId();
+                if (productId != null) {
+                    forgetAfterCommit(productId);
+                }
+                return joinPoint.proceed();
+            case "deleteById":
+                forgetAfterCommit((Integer) args[0]);
+                return joinPoint.proceed();
+            default:
+                return joinPoint.proceed();
+        }
+    }
+
+    private Object takeStock(ProceedingJoinPoint joinPoint, ProductRepository productRepository, Integer productId,
+                             Integer amount) throws Throwable {
+        IAtomicLong counter = counter(productId);
+        if (!reserve(counter, productRepository, productId, amount)) {
+            return 0;
+        }
+
+        int taken;
+        try {
+            taken = (Integer) joinPoint.proceed();
+        } catch (Throwable e) {
+            giveBack(counter, amount);
+            throw e;
+        }
+        if (taken == 0) {
+            counter.set(UNKNOWN);
+        } else {
+            AfterCommit.onRollback(() -> giveBack(counter, amount));
+        }
+        return taken;
+    }
+
+    private Object returnStock(ProceedingJoinPoint joinPoint, Integer productId, Integer amount) throws Throwable {
+        Object returned = joinPoint.proceed();
+        IAtomicLong counter = counter(productId);
+        AfterCommit.run(() -> giveBack(counter, amount));
+        return returned;
+    }
+
+    /**
+     * Takes {@code amount} off the counter, loading it from the database first when needed. False when the counter
+     * does not have that many left, or the product does not exist.
+     */
+    private static boolean reserve(IAtomicLong counter, ProductRepository productRepository, Integer productId,
+                                   int amount) {
+        while (true) {
+            long current = counter.get();
+            if (current == UNKNOWN) {
+                Optional<Integer> stock = productRepository.findStock(productId);
+                if (stock.isEmpty()) {
+                    return false;
+                }
+                counter.compareAndSet(UNKNOWN, stock.get() + 1L);
+                continue;
+            }
+            if (current - 1 < amount) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - amount)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Puts units back on a loaded counter. An unloaded one is left alone; it reads the database when next used.
+     */
+    private static void giveBack(IAtomicLong counter, int amount) {
+        long current;
+        do {
+            current = counter.get();
+        } while (current != UNKNOWN && !counter.compareAndSet(current, current + amount));
+    }
+
+    private void forgetAfterCommit(Integer productId) {
+        IAtomicLong counter = counter(productId);
+        AfterCommit.run(() -> counter.set(UNKNOWN));
+    }
+
+    IAtomicLong counter(Integer productId) {
+        return hazelcastInstance.getCPSubsystem().getAtomicLong("stock:" + ClusterKeys.of(productId));
+    }
+
+}
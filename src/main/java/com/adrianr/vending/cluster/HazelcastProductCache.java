@@ -0,0 +1,36 @@
+package com.adrianr.vending.cluster;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.service.ProductCache;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+import java.util.Optional;
+
+public class HazelcastProductCache implements ProductCache {
+
+    static final String MAP_NAME = "products";
+
+    private final IMap<String, Product> products;
+
+    public HazelcastProductCache(HazelcastInstance hazelcastInstance) {
+        this.products = hazelcastInstance.getMap(MAP_NAME);
+    }
+
+    @Override
+    public Optional<Product> get(Integer productId) {
+        return Optional.ofNullable(products.get(ClusterKeys.of(productId)));
+    }
+
+    @Override
+    public void put(Product product) {
+        products.set(ClusterKeys.of(product.getId()), product);
+    }
+
+    @Override
+    public void evict(Integer productId) {
+        String key = ClusterKeys.of(productId);
+        AfterCommit.run(() -> products.delete(key));
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.adrianr.vending.cluster;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Credentials shared by every node, so Basic authentication looks a user up in the database once per cluster rather
+ * than once per node and request. Entries hold the password hash, never the password.
+ */
+public class HazelcastUserCache implements UserCache {
+
+    static final String MAP_NAME = "credentials";
+
+    private final IMap<String, UserDetails> credentials;
+
+    public HazelcastUserCache(HazelcastInstance hazelcastInstance) {
+        this.credentials = hazelcastInstance.getMap(MAP_NAME);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        return credentials.get(ClusterKeys.of(username));
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        credentials.set(ClusterKeys.of(user.getUsername()), user);
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        String key = ClusterKeys.of(username);
+        AfterCommit.run(() -> credentials.delete(key));
+    }
+
+}
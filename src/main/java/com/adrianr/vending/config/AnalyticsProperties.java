@@ -0,0 +1,22 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("vending.analytics")
+public class AnalyticsProperties {
+
+    private boolean enabled = true;
+    private Duration bucketDuration = Duration.ofHours(1);
+    private int buckets = 24;
+    private int queueCapacity = 10_000;
+    private long drainIntervalMs = 200;
+    private int topCandidates = 64;
+    private int sketchWidth = 1024;
+    private int sketchDepth = 4;
+    private int hyperLogLogPrecision = 12;
+
+}
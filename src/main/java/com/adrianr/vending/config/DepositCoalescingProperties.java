@@ -0,0 +1,13 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("vending.deposit.coalescing")
+public class DepositCoalescingProperties {
+
+    private boolean enabled = false;
+    private long flushIntervalMs = 50;
+
+}
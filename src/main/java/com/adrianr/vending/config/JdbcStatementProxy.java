@@ -0,0 +1,88 @@
+package com.adrianr.vending.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Data source, connection and statement proxies that hand each statement execution to a {@link Listener}, with the
+ * SQL it runs. Everything on the connection goes through them: Hibernate, Spring Data native queries and bare
+ * {@code JdbcTemplate} calls alike.
+ */
+public final class JdbcStatementProxy {
+
+    private JdbcStatementProxy() {
+    }
+
+    /**
+     * Proxies the data source by its interfaces, so pool metadata and health checks can still unwrap it.
+     */
+    public static DataSource dataSource(DataSource dataSource, Listener listener) {
+        ProxyFactory proxyFactory = new ProxyFactory(dataSource);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            Object result = invocation.proceed();
+            return result instanceof Connection && invocation.getMethod().getName().equals("getConnection")
+                    ? connection((Connection) result, listener)
+                    : result;
+        });
+        return (DataSource) proxyFactory.getProxy(dataSource.getClass().getClassLoader());
+    }
+
+    public static Connection connection(Connection connection, Listener listener) {
+        return (Connection) Proxy.newProxyInstance(JdbcStatementProxy.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement) {
+                        String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+                        return statement((Statement) result, method.getReturnType(), sql, listener);
+                    }
+                    return result;
+                });
+    }
+
+    private static Object statement(Statement statement, Class<?> type, String preparedSql, Listener listener) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                return invoke(statement, method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            return listener.onExecute(sql, method, () -> invoke(statement, method, args));
+        };
+        return Proxy.newProxyInstance(JdbcStatementProxy.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Runs around one execution and must call {@code execution} exactly once.
+         *
+         * @param sql the statement's SQL, or {@code null} for a batch of unprepared statements
+         */
+        Object onExecute(String sql, Method method, Execution execution) throws Throwable;
+
+    }
+
+    @FunctionalInterface
+    public interface Execution {
+
+        Object proceed() throws Throwable;
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.adrianr.vending.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import com.adrianr.vending.service.TokenBucket;
+import org.slf4j.Marker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples and rate limits INFO and lower events per logger before an event is even created. WARN and ERROR always
+ * pass. The rule for a logger is resolved once from its closest configured ancestor and cached by name.
+ */
+public class LogThrottlingTurboFilter extends TurboFilter {
+
+    private static final Rule NO_RULE = new Rule(1.0, null);
+
+    private final Map<String, Double> sampleRatios;
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    public LogThrottlingTurboFilter(LoggingProperties properties, LongSupplier nanoClock) {
+        this.sampleRatios = Map.copyOf(properties.getSampleRatio());
+        this.nanoClock = nanoClock;
+        long now = nanoClock.getAsLong();
+        properties.getMaxPerSecond().forEach((logger, perSecond) ->
+                buckets.put(logger, new TokenBucket((int) Math.max(1, Math.ceil(perSecond)), perSecond, now)));
+    }
+
+    public boolean hasRules() {
+        return !sampleRatios.isEmpty() || !buckets.isEmpty();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        // isXxxEnabled() checks come without a format; deciding there would sample the same event twice.
+        if (format == null || level.isGreaterOrEqual(Level.WARN)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        Rule rule = rules.computeIfAbsent(logger.getName(), this::resolve);
+        if (rule == NO_RULE) {
+            return FilterReply.NEUTRAL;
+        }
+        if (rule.sampleRatio < 1.0 && ThreadLocalRandom.current().nextDouble() >= rule.sampleRatio) {
+            sampledOut.increment();
+            return FilterReply.DENY;
+        }
+        if (rule.bucket != null && rule.bucket.tryAcquire(nanoClock.getAsLong()) > 0) {
+            rateLimited.increment();
+            return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    private Rule resolve(String loggerName) {
+        Double sampleRatio = closest(sampleRatios, loggerName);
+        TokenBucket bucket = closest(buckets, loggerName);
+        return sampleRatio == null && bucket == null ? NO_RULE
+                : new Rule(sampleRatio != null ? sampleRatio : 1.0, bucket);
+    }
+
+    private static <T> T closest(Map<String, T> byLogger, String loggerName) {
+        for (String name = loggerName; ; name = name.substring(0, name.lastIndexOf('.'))) {
+            T value = byLogger.get(name);
+            if (value != null || name.indexOf('.') < 0) {
+                return value;
+            }
+        }
+    }
+
+    private static class Rule {
+
+        private final double sampleRatio;
+        private final TokenBucket bucket;
+
+        Rule(double sampleRatio, TokenBucket bucket) {
+            this.sampleRatio = sampleRatio;
+            this.bucket = bucket;
+        }
+
+    }
+
+}
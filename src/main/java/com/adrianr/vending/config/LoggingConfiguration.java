@@ -0,0 +1,46 @@
+package com.adrianr.vending.config;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Installs the {@link LogThrottlingTurboFilter} into Logback when any sampling or rate limit is configured, and
+ * counts the events it drops as {@code vending.logging.dropped}. The rest of the logging setup, the JSON encoder and
+ * the asynchronous ring buffer appender, lives in {@code logback-spring.xml}.
+ */
+@Configuration
+public class LoggingConfiguration implements DisposableBean {
+
+    private final LoggerContext loggerContext;
+    private final LogThrottlingTurboFilter turboFilter;
+
+    public LoggingConfiguration(LoggingProperties properties, MeterRegistry meterRegistry) {
+        this.loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        this.turboFilter = new LogThrottlingTurboFilter(properties, System::nanoTime);
+        if (!turboFilter.hasRules()) {
+            return;
+        }
+
+        turboFilter.setName("vending-log-throttling");
+        turboFilter.setContext(loggerContext);
+        turboFilter.start();
+        loggerContext.addTurboFilter(turboFilter);
+        FunctionCounter.builder("vending.logging.dropped", turboFilter, LogThrottlingTurboFilter::getSampledOut)
+                .tag("reason", "sampled")
+                .register(meterRegistry);
+        FunctionCounter.builder("vending.logging.dropped", turboFilter, LogThrottlingTurboFilter::getRateLimited)
+                .tag("reason", "rate-limited")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        loggerContext.getTurboFilterList().remove(turboFilter);
+        turboFilter.stop();
+    }
+
+}
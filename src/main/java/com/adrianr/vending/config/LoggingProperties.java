@@ -0,0 +1,27 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("vending.logging")
+public class LoggingProperties {
+
+    /**
+     * {@code plain} or {@code json}. Read by {@code logback-spring.xml}, like {@code ring-buffer-size}.
+     */
+    private String format = "plain";
+    private int ringBufferSize = 8192;
+    /**
+     * Share of INFO and lower events kept, by logger name; a logger inherits the closest configured ancestor.
+     */
+    private Map<String, Double> sampleRatio = new HashMap<>();
+    /**
+     * Most INFO and lower events written per second, by logger name and shared by the logger's descendants.
+     */
+    private Map<String, Double> maxPerSecond = new HashMap<>();
+
+}
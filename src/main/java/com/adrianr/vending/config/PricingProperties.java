@@ -0,0 +1,21 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.ZoneId;
+
+@Data
+@ConfigurationProperties("vending.pricing")
+public class PricingProperties {
+
+    /**
+     * Rules changed on this node apply as soon as they commit; this picks up changes made on other nodes.
+     */
+    private long reloadIntervalMs = 30000;
+    /**
+     * The zone daily windows are read in.
+     */
+    private ZoneId zone = ZoneId.systemDefault();
+
+}
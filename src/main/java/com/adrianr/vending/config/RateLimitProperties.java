@@ -0,0 +1,35 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@Data
+@ConfigurationProperties("vending.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private List<String> paths = List.of("/deposit/**", "/buy", "/reset",
+            "/machines/*/deposit/**", "/machines/*/buy", "/machines/*/reset", "/reservations/**");
+    private Bucket user = new Bucket(20, 10);
+    private Bucket ip = new Bucket(100, 50);
+    private int maxConcurrentPerUser = 4;
+
+    @Data
+    public static class Bucket {
+
+        private int capacity;
+        private double refillPerSecond;
+
+        public Bucket() {
+        }
+
+        public Bucket(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+
+    }
+
+}
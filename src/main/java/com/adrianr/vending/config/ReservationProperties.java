@@ -0,0 +1,17 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("vending.reservation")
+public class ReservationProperties {
+
+    private Duration ttl = Duration.ofMinutes(2);
+    private long sweepIntervalMs = 250;
+    private Duration lease = Duration.ofSeconds(10);
+    private long leaseRenewIntervalMs = 1000;
+
+}
@@ -0,0 +1,17 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("vending.restock")
+public class RestockProperties {
+
+    private boolean enabled = true;
+    private int threshold = 2;
+    private long checkIntervalMs = 1000;
+    private Duration streamTimeout = Duration.ofMinutes(30);
+
+}
@@ -0,0 +1,37 @@
+package com.adrianr.vending.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(prefix = "vending.sql-statements", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatementConfiguration {
+
+    private static final String DATA_SOURCE = "dataSource";
+
+    @Bean
+    public SqlStatementCounter sqlStatementCounter() {
+        return new SqlStatementCounter();
+    }
+
+    /**
+     * Wraps the application's {@code dataSource}, so every statement run on its connections is counted.
+     */
+    @Bean
+    public static BeanPostProcessor sqlStatementCountingPostProcessor(ObjectProvider<SqlStatementCounter> counter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return DATA_SOURCE.equals(beanName) && bean instanceof DataSource
+                        ? JdbcStatementProxy.dataSource((DataSource) bean, counter.getObject())
+                        : bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.adrianr.vending.config;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements executed on the current thread between {@link #begin()} and {@link #end()}, keeping a
+ * count per distinct statement so the same query run over and over (an N+1) stands out. It listens on the
+ * application's data source connections, so Hibernate, native queries and the {@code JdbcTemplate} lookups behind
+ * Basic authentication are all counted.
+ */
+public class SqlStatementCounter implements JdbcStatementProxy.Listener {
+
+    private final ThreadLocal<Tally> current = new ThreadLocal<>();
+
+    public Tally begin() {
+        Tally tally = new Tally();
+        current.set(tally);
+        return tally;
+    }
+
+    public void end() {
+        current.remove();
+    }
+
+    @Override
+    public Object onExecute(String sql, Method method, JdbcStatementProxy.Execution execution) throws Throwable {
+        Tally tally = current.get();
+        if (tally != null) {
+            tally.record(sql != null ? sql : method.getName());
+        }
+        return execution.proceed();
+    }
+
+    public static class Tally {
+
+        private final Map<String, Integer> statements = new HashMap<>();
+        private int total;
+
+        void record(String sql) {
+            statements.merge(sql, 1, Integer::sum);
+            total++;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return the statement run most often, with its count
+         */
+        public Map.Entry<String, Integer> mostRepeated() {
+            return statements.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .orElse(Map.entry("", 0));
+        }
+
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("vending.sql-statements")
+public class SqlStatementProperties {
+
+    private boolean enabled = true;
+    private boolean exposeHeader = false;
+    private int repeatThreshold = 5;
+
+}
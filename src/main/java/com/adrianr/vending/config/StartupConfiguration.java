@@ -0,0 +1,33 @@
+package com.adrianr.vending.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfiguration {
+
+    /**
+     * Keeps schema migration at startup when {@code spring.main.lazy-initialization} is on, so a broken migration
+     * fails the deploy instead of the first request.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerMigrationFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(FlywayMigrationInitializer.class);
+    }
+
+    /**
+     * Exits once the app is ready. Used by the {@code appcds} build to record the classes loaded during startup.
+     */
+    @Bean
+    @ConditionalOnProperty("vending.startup.training-run")
+    public ApplicationListener<ApplicationReadyEvent> trainingRunExit() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+
+}
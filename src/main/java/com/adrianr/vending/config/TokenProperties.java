@@ -0,0 +1,16 @@
+package com.adrianr.vending.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("vending.auth.token")
+public class TokenProperties {
+
+    private String secret;
+    private Duration ttl = Duration.ofMinutes(15);
+    private String issuer = "vending";
+
+}
@@ -0,0 +1,35 @@
+package com.adrianr.vending.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.undertow.UndertowBuilderCustomizer;
+import org.springframework.boot.web.embedded.undertow.UndertowDeploymentInfoCustomizer;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.stream.Collectors;
+
+/**
+ * Runs the app on Undertow instead of Tomcat when {@code vending.server.connector=undertow} and Undertow is on the
+ * classpath (build with {@code -Pundertow}). Declaring the factory makes Boot's Tomcat auto-configuration back off,
+ * so both servers can ship in one artifact and be picked per deployment.
+ */
+@Configuration
+@ConditionalOnClass(name = "io.undertow.Undertow")
+@ConditionalOnProperty(name = "vending.server.connector", havingValue = "undertow")
+public class UndertowServerConfiguration {
+
+    @Bean
+    public UndertowServletWebServerFactory undertowServletWebServerFactory(
+            ObjectProvider<UndertowDeploymentInfoCustomizer> deploymentInfoCustomizers,
+            ObjectProvider<UndertowBuilderCustomizer> builderCustomizers) {
+        UndertowServletWebServerFactory factory = new UndertowServletWebServerFactory();
+        factory.getDeploymentInfoCustomizers()
+                .addAll(deploymentInfoCustomizers.orderedStream().collect(Collectors.toList()));
+        factory.getBuilderCustomizers().addAll(builderCustomizers.orderedStream().collect(Collectors.toList()));
+        return factory;
+    }
+
+}
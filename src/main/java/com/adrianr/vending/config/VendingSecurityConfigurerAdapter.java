@@ -1,19 +1,30 @@
 package com.adrianr.vending.config;
 
+import com.adrianr.vending.rest.BearerTokenAuthenticationFilter;
+import com.adrianr.vending.rest.IpRateLimitFilter;
+import com.adrianr.vending.rest.RateLimitFilter;
+import com.adrianr.vending.service.RateLimiter;
+import com.adrianr.vending.service.TokenService;
+import com.adrianr.vending.sharding.ShardedUserDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.ObjectPostProcessor;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 import javax.sql.DataSource;
+import java.util.Optional;
 
 @Configuration
 @EnableWebSecurity
@@ -21,9 +32,24 @@ import javax.sql.DataSource;
 public class VendingSecurityConfigurerAdapter extends WebSecurityConfigurerAdapter {
 
     private final DataSource dataSource;
+    private final Optional<ShardedUserDetailsService> shardedUserDetailsService;
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties rateLimitProperties;
+    private final TokenService tokenService;
+    private final Optional<UserCache> userCache;
 
-    public VendingSecurityConfigurerAdapter(DataSource dataSource) {
+    public VendingSecurityConfigurerAdapter(DataSource dataSource,
+                                            Optional<ShardedUserDetailsService> shardedUserDetailsService,
+                                            RateLimiter rateLimiter,
+                                            RateLimitProperties rateLimitProperties,
+                                            TokenService tokenService,
+                                            Optional<UserCache> userCache) {
         this.dataSource = dataSource;
+        this.shardedUserDetailsService = shardedUserDetailsService;
+        this.rateLimiter = rateLimiter;
+        this.rateLimitProperties = rateLimitProperties;
+        this.tokenService = tokenService;
+        this.userCache = userCache;
     }
 
     @Bean
@@ -33,11 +59,29 @@ public class VendingSecurityConfigurerAdapter extends WebSecurityConfigurerAdapt
 
     @Autowired
     public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
+        if (shardedUserDetailsService.isPresent()) {
+            auth.userDetailsService(shardedUserDetailsService.get())
+                    .passwordEncoder(passwordEncoder())
+                    .withObjectPostProcessor(userCachePostProcessor());
+            return;
+        }
+
         auth.jdbcAuthentication()
                 .passwordEncoder(passwordEncoder())
                 .dataSource(dataSource)
                 .usersByUsernameQuery("select username, password, 1 as enabled from users where username = ?")
-                .authoritiesByUsernameQuery("select username, 'ROLE_' || role from users where username = ?");
+                .authoritiesByUsernameQuery("select username, 'ROLE_' || role from users where username = ?")
+                .withObjectPostProcessor(userCachePostProcessor());
+    }
+
+    private ObjectPostProcessor<DaoAuthenticationProvider> userCachePostProcessor() {
+        return new ObjectPostProcessor<>() {
+            @Override
+            public <O extends DaoAuthenticationProvider> O postProcess(O provider) {
+                userCache.ifPresent(provider::setUserCache);
+                return provider;
+            }
+        };
     }
 
     @Override
@@ -47,6 +91,10 @@ public class VendingSecurityConfigurerAdapter extends WebSecurityConfigurerAdapt
                 .headers().frameOptions().disable().and()
                 .httpBasic()
                 .and()
+                .addFilterBefore(new BearerTokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
+                .addFilterBefore(new IpRateLimitFilter(rateLimiter, rateLimitProperties),
+                        BearerTokenAuthenticationFilter.class)
+                .addFilterAfter(new RateLimitFilter(rateLimiter, rateLimitProperties), BasicAuthenticationFilter.class)
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .authorizeRequests()
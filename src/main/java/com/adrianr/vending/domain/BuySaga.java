@@ -0,0 +1,31 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Stock taken on the product's shard for a cross-shard buy that has not been settled yet.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "BUY_SAGAS")
+public class BuySaga {
+
+    @Id
+    private String id;
+    private Integer productId;
+    private Integer buyerId;
+    private Integer amount;
+    private Instant createdAt;
+
+}
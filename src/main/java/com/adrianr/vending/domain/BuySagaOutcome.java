@@ -0,0 +1,30 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Written on the buyer's shard, either by the debit or by the compensation that rules it out. The primary key lets
+ * only one of them win.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "BUY_SAGA_OUTCOMES")
+public class BuySagaOutcome {
+
+    @Id
+    private String sagaId;
+    private Boolean debited;
+    private Instant createdAt;
+
+}
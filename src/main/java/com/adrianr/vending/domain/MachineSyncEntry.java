@@ -0,0 +1,26 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "MACHINE_SYNC_LOG")
+public class MachineSyncEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    private Integer machineId;
+    private String transactionId;
+    @Enumerated(EnumType.STRING)
+    private SyncStatus status;
+
+}
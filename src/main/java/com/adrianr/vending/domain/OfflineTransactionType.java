@@ -0,0 +1,8 @@
+package com.adrianr.vending.domain;
+
+public enum OfflineTransactionType {
+
+    DEPOSIT,
+    BUY
+
+}
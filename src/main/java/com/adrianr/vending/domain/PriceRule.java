@@ -0,0 +1,42 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+
+/**
+ * A promotion on one product, or on all of a seller's products when {@code productId} is null. It runs between
+ * {@code startsAt} and {@code endsAt}, either of which may be open, and only between {@code dailyFrom} and
+ * {@code dailyTo} each day when those are set.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "PRICE_RULES")
+public class PriceRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    private Integer sellerId;
+    private Integer productId;
+    @Enumerated(EnumType.STRING)
+    private PriceRuleType ruleType;
+    private Integer percentOff;
+    private BigDecimal unitPrice;
+    private Integer buyAmount;
+    private Integer freeAmount;
+    private Instant startsAt;
+    private Instant endsAt;
+    private LocalTime dailyFrom;
+    private LocalTime dailyTo;
+
+}
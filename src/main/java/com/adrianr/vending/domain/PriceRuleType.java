@@ -0,0 +1,18 @@
+package com.adrianr.vending.domain;
+
+public enum PriceRuleType {
+
+    /**
+     * {@code percentOff} percent off the whole buy.
+     */
+    PERCENTAGE,
+    /**
+     * Every {@code buyAmount} items bought bring {@code freeAmount} more for free.
+     */
+    BUY_N_GET_M,
+    /**
+     * Each item at {@code unitPrice} between {@code dailyFrom} and {@code dailyTo}.
+     */
+    HAPPY_HOUR
+
+}
@@ -0,0 +1,39 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * An open hold, written when it is placed and deleted when it settles. The instance named by {@code heldBy} tracks its
+ * expiry for as long as it keeps renewing the lease.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "RESERVATIONS")
+public class Reservation {
+
+    @Id
+    private String id;
+    private Integer userId;
+    private Integer productId;
+    private String productName;
+    private Integer sellerId;
+    private Integer machineId;
+    private Integer amount;
+    private BigDecimal totalPrice;
+    private Instant expiresAt;
+    private String heldBy;
+    private Instant leaseExpiresAt;
+
+}
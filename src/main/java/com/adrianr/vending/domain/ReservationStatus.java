@@ -0,0 +1,10 @@
+package com.adrianr.vending.domain;
+
+public enum ReservationStatus {
+
+    HELD,
+    COMMITTED,
+    CANCELLED,
+    EXPIRED
+
+}
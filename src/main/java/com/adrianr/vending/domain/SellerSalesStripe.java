@@ -0,0 +1,58 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * One of {@link #STRIPES} sales counters per seller. Each buy adds to a random stripe, so concurrent buys from the
+ * same seller rarely queue on one row; the dashboard sums the stripes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(SellerSalesStripe.Key.class)
+@Table(name = "SELLER_SALES_STRIPES")
+public class SellerSalesStripe {
+
+    public static final int STRIPES = 16;
+
+    @Id
+    private Integer sellerId;
+    @Id
+    private Integer stripe;
+    private Long unitsSold;
+    private BigDecimal revenue;
+    private Long sales;
+
+    public static SellerSalesStripe empty(Integer sellerId, Integer stripe) {
+        return SellerSalesStripe.builder()
+                .sellerId(sellerId)
+                .stripe(stripe)
+                .unitsSold(0L)
+                .revenue(BigDecimal.ZERO)
+                .sales(0L)
+                .build();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private Integer sellerId;
+        private Integer stripe;
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.adrianr.vending.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.math.BigDecimal;
+
+/**
+ * One row per seller, kept up to date by product changes so the dashboard never aggregates products. The sales
+ * figures are not stored here but summed from the seller's {@link SellerSalesStripe}s.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "SELLER_SUMMARIES")
+public class SellerSummary {
+
+    @Id
+    private Integer sellerId;
+    private Integer productCount;
+    @Transient
+    private Long unitsSold;
+    @Transient
+    private BigDecimal revenue;
+    @Transient
+    private Long sales;
+
+    public static SellerSummary empty(Integer sellerId) {
+        return SellerSummary.builder()
+                .sellerId(sellerId)
+                .productCount(0)
+                .unitsSold(0L)
+                .revenue(BigDecimal.ZERO)
+                .sales(0L)
+                .build();
+    }
+
+}
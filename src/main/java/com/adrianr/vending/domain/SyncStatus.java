@@ -0,0 +1,9 @@
+package com.adrianr.vending.domain;
+
+public enum SyncStatus {
+
+    APPLIED,
+    REJECTED,
+    DUPLICATE
+
+}
@@ -0,0 +1,36 @@
+package com.adrianr.vending.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.collection.IQueue;
+import com.hazelcast.core.HazelcastInstance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offers messages, as JSON, to a queue on the cluster's embedded Hazelcast grid, for consumers that join the cluster
+ * or connect to it as clients.
+ */
+public class HazelcastOutboxSink implements OutboxSink {
+
+    private final IQueue<String> queue;
+    private final ObjectMapper objectMapper;
+
+    public HazelcastOutboxSink(HazelcastInstance hazelcastInstance, String queueName, ObjectMapper objectMapper) {
+        this.queue = hazelcastInstance.getQueue(queueName);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) throws IOException {
+        List<String> json = new ArrayList<>(messages.size());
+        for (OutboxMessage message : messages) {
+            json.add(objectMapper.writeValueAsString(message));
+        }
+        if (!queue.addAll(json)) {
+            throw new IOException("Queue " + queue.getName() + " refused the batch");
+        }
+    }
+
+}
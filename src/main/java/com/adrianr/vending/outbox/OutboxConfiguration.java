@@ -0,0 +1,64 @@
+package com.adrianr.vending.outbox;
+
+import com.adrianr.vending.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.core.HazelcastInstance;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.net.URI;
+
+/**
+ * Publishes purchases to downstream systems through a transactional outbox: {@link OutboxWriter} stores each sale
+ * next to the stock and deposit changes, and {@link OutboxRelay} delivers stored events to the configured sink at
+ * least once. Buys never wait on the sink.
+ * <p>
+ * Off by default. Sharded buys span transactions on several shards, so the outbox cannot be combined with sharding.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "vending.outbox", name = "enabled", havingValue = "true")
+public class OutboxConfiguration {
+
+    private final OutboxProperties properties;
+
+    public OutboxConfiguration(OutboxProperties properties, Environment environment) {
+        if (environment.getProperty("vending.sharding.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("vending.sharding.enabled cannot be combined with vending.outbox.enabled");
+        }
+        this.properties = properties;
+    }
+
+    @Bean
+    public OutboxWriter outboxWriter(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        return new OutboxWriter(outboxEventRepository, objectMapper);
+    }
+
+    @Bean
+    public OutboxSink outboxSink(ObjectMapper objectMapper, ObjectProvider<HazelcastInstance> hazelcastInstance) {
+        switch (properties.getSink()) {
+            case WEBHOOK:
+                if (properties.getWebhookUrl() == null) {
+                    throw new IllegalStateException("vending.outbox.sink=webhook needs vending.outbox.webhook-url");
+                }
+                return new WebhookOutboxSink(URI.create(properties.getWebhookUrl()), properties.getWebhookTimeout(),
+                        objectMapper);
+            case HAZELCAST:
+                return new HazelcastOutboxSink(hazelcastInstance.getIfAvailable(() -> {
+                    throw new IllegalStateException("vending.outbox.sink=hazelcast needs vending.cluster.enabled");
+                }), properties.getQueueName(), objectMapper);
+            default:
+                return new FileOutboxSink(properties.getFile(), objectMapper);
+        }
+    }
+
+    @Bean
+    public OutboxRelay outboxRelay(OutboxEventRepository outboxEventRepository, OutboxSink outboxSink,
+                                   MeterRegistry meterRegistry) {
+        return new OutboxRelay(outboxEventRepository, outboxSink, properties, meterRegistry);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.adrianr.vending.outbox;
+
+import com.adrianr.vending.domain.OutboxEvent;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Builder;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * An outbox event as delivered. Consumers deduplicate redeliveries on {@code tenant} and {@code id}.
+ */
+@Data
+@Builder
+public class OutboxMessage implements Serializable {
+
+    private Long id;
+    private String tenant;
+    private String type;
+    private Integer aggregateId;
+    private Instant createdAt;
+    @JsonRawValue
+    private String payload;
+
+    public static OutboxMessage of(OutboxEvent event, String tenant) {
+        return OutboxMessage.builder()
+                .id(event.getId())
+                .tenant(tenant)
+                .type(event.getEventType())
+                .aggregateId(event.getAggregateId())
+                .createdAt(event.getCreatedAt())
+                .payload(event.getPayload())
+                .build();
+    }
+
+}
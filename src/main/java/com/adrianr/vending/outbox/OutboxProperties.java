@@ -0,0 +1,31 @@
+package com.adrianr.vending.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("vending.outbox")
+public class OutboxProperties {
+
+    private boolean enabled = false;
+    private Sink sink = Sink.FILE;
+    private long pollIntervalMs = 500;
+    private int batchSize = 100;
+    /**
+     * Batches relayed per tenant and poll before yielding to the next poll, so a backlog drains at up to
+     * {@code batch-size * max-batches-per-poll} events per poll interval.
+     */
+    private int maxBatchesPerPoll = 10;
+    private Path file = Path.of("data", "outbox.jsonl");
+    private String webhookUrl;
+    private Duration webhookTimeout = Duration.ofSeconds(5);
+    private String queueName = "purchases";
+
+    public enum Sink {
+        FILE, WEBHOOK, HAZELCAST
+    }
+
+}
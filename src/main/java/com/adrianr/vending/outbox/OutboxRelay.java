@@ -0,0 +1,73 @@
+package com.adrianr.vending.outbox;
+
+import com.adrianr.vending.domain.OutboxEvent;
+import com.adrianr.vending.repository.OutboxEventRepository;
+import com.adrianr.vending.tenancy.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Polls each tenant's outbox in id order and hands it to the {@link OutboxSink} a batch at a time, deleting a batch
+ * only after the sink took it. A failed batch stops that tenant's relay until the next poll, keeping events in order.
+ * <p>
+ * Every node relays. In a cluster two nodes can pick up the same batch, which at-least-once delivery allows for.
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink sink;
+    private final OutboxProperties properties;
+    private final Counter published;
+    private final Counter failures;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxSink sink, OutboxProperties properties,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sink;
+        this.properties = properties;
+        this.published = meterRegistry.counter("vending.outbox.published");
+        this.failures = meterRegistry.counter("vending.outbox.failures");
+    }
+
+    @Scheduled(fixedDelayString = "${vending.outbox.poll-interval-ms:500}")
+    public synchronized void relay() {
+        TenantContext.forEachTenant(this::relayTenant);
+    }
+
+    private void relayTenant() {
+        String tenant = TenantContext.current().orElse(null);
+        try {
+            for (int i = 0; i < properties.getMaxBatchesPerPoll(); i++) {
+                List<OutboxEvent> batch = outboxEventRepository.findAllByOrderById(
+                        PageRequest.of(0, properties.getBatchSize()));
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                sink.publish(batch.stream()
+                        .map(event -> OutboxMessage.of(event, tenant))
+                        .collect(Collectors.toList()));
+                outboxEventRepository.deleteAllByIdInBatch(batch.stream()
+                        .map(OutboxEvent::getId)
+                        .collect(Collectors.toList()));
+                published.increment(batch.size());
+
+                if (batch.size() < properties.getBatchSize()) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            log.warn("Could not relay the outbox of tenant {}, retrying next poll", tenant, e);
+        }
+    }
+
+}
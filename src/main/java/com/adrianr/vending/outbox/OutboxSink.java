@@ -0,0 +1,14 @@
+package com.adrianr.vending.outbox;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where {@link OutboxRelay} delivers events. A batch counts as delivered once this returns; if it throws, the whole
+ * batch is offered again on the next poll, so a sink may see an event more than once but never lose one.
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxMessage> messages) throws IOException;
+
+}
@@ -0,0 +1,37 @@
+package com.adrianr.vending.outbox;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.domain.OutboxEvent;
+import com.adrianr.vending.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Records every sale in the outbox inside the buy's own transaction, so the event exists exactly when the stock and
+ * deposit changes it describes do.
+ */
+public class OutboxWriter {
+
+    static final String PURCHASE = "purchase";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public OutboxWriter(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onSale(SaleEvent event) throws JsonProcessingException {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(PURCHASE)
+                .aggregateId(event.getProductId())
+                .payload(objectMapper.writeValueAsString(event))
+                .createdAt(event.getTimestamp())
+                .build());
+    }
+
+}
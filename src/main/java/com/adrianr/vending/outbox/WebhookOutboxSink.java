@@ -0,0 +1,53 @@
+package com.adrianr.vending.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Posts each batch as a JSON array. Any answer other than 2xx leaves the batch for the next poll.
+ */
+public class WebhookOutboxSink implements OutboxSink {
+
+    private final URI uri;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+
+    public WebhookOutboxSink(URI uri, Duration timeout, ObjectMapper objectMapper) {
+        this.uri = uri;
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> messages) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(messages)))
+                .build();
+
+        HttpResponse<Void> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted posting to " + uri);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(uri + " answered " + response.statusCode());
+        }
+    }
+
+}
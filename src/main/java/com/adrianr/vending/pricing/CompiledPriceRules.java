@@ -0,0 +1,135 @@
+package com.adrianr.vending.pricing;
+
+import com.adrianr.vending.domain.PriceRule;
+import com.adrianr.vending.domain.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One tenant's price rules, indexed by product and by seller with their windows reduced to numbers, so pricing a buy
+ * is two map lookups and a check of the few rules found. Rules already over when compiled are left out. Immutable;
+ * a change compiles a new one.
+ */
+final class CompiledPriceRules {
+
+    static final CompiledPriceRules EMPTY = new CompiledPriceRules(Map.of(), Map.of(), ZoneId.systemDefault());
+
+    private static final Rule[] NONE = new Rule[0];
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final Map<Integer, Rule[]> byProduct;
+    private final Map<Integer, Rule[]> bySeller;
+    private final ZoneId zone;
+
+    private CompiledPriceRules(Map<Integer, Rule[]> byProduct, Map<Integer, Rule[]> bySeller, ZoneId zone) {
+        this.byProduct = byProduct;
+        this.bySeller = bySeller;
+        this.zone = zone;
+    }
+
+    static CompiledPriceRules compile(List<PriceRule> rules, ZoneId zone, Instant now) {
+        Map<Integer, List<Rule>> byProduct = new HashMap<>();
+        Map<Integer, List<Rule>> bySeller = new HashMap<>();
+        for (PriceRule rule : rules) {
+            if (rule.getEndsAt() != null && !rule.getEndsAt().isAfter(now)) {
+                continue;
+            }
+            if (rule.getProductId() != null) {
+                byProduct.computeIfAbsent(rule.getProductId(), id -> new ArrayList<>()).add(new Rule(rule));
+            } else {
+                bySeller.computeIfAbsent(rule.getSellerId(), id -> new ArrayList<>()).add(new Rule(rule));
+            }
+        }
+        return new CompiledPriceRules(toArrays(byProduct), toArrays(bySeller), zone);
+    }
+
+    /**
+     * The lowest total any rule running at {@code at} gives, never more than the product's cost times
+     * {@code amount}. Rules do not stack.
+     */
+    BigDecimal totalPrice(Product product, int amount, Instant at) {
+        BigDecimal best = product.getCost().multiply(BigDecimal.valueOf(amount));
+        Rule[] productRules = byProduct.getOrDefault(product.getId(), NONE);
+        Rule[] sellerRules = bySeller.getOrDefault(product.getSellerId(), NONE);
+        if (productRules.length == 0 && sellerRules.length == 0) {
+            return best;
+        }
+
+        long epochMilli = at.toEpochMilli();
+        int secondOfDay = LocalTime.ofInstant(at, zone).toSecondOfDay();
+        for (Rule[] candidates : List.of(productRules, sellerRules)) {
+            for (Rule rule : candidates) {
+                if (rule.isRunning(epochMilli, secondOfDay)) {
+                    best = best.min(rule.totalPrice(product.getCost(), amount));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Map<Integer, Rule[]> toArrays(Map<Integer, List<Rule>> rules) {
+        Map<Integer, Rule[]> arrays = new HashMap<>(rules.size() * 2);
+        rules.forEach((id, list) -> arrays.put(id, list.toArray(NONE)));
+        return arrays;
+    }
+
+    private static final class Rule {
+
+        private final PriceRule rule;
+        private final long startsAt;
+        private final long endsAt;
+        private final int dailyFrom;
+        private final int dailyTo;
+
+        Rule(PriceRule rule) {
+            this.rule = rule;
+            this.startsAt = rule.getStartsAt() == null ? Long.MIN_VALUE : rule.getStartsAt().toEpochMilli();
+            this.endsAt = rule.getEndsAt() == null ? Long.MAX_VALUE : rule.getEndsAt().toEpochMilli();
+            this.dailyFrom = rule.getDailyFrom() == null ? -1 : rule.getDailyFrom().toSecondOfDay();
+            this.dailyTo = rule.getDailyTo() == null ? -1 : rule.getDailyTo().toSecondOfDay();
+        }
+
+        /**
+         * A daily window whose end comes before its start runs over midnight.
+         */
+        boolean isRunning(long epochMilli, int secondOfDay) {
+            if (epochMilli < startsAt || epochMilli >= endsAt) {
+                return false;
+            }
+            if (dailyFrom < 0) {
+                return true;
+            }
+            return dailyFrom <= dailyTo
+                    ? secondOfDay >= dailyFrom && secondOfDay < dailyTo
+                    : secondOfDay >= dailyFrom || secondOfDay < dailyTo;
+        }
+
+        BigDecimal totalPrice(BigDecimal cost, int amount) {
+            switch (rule.getRuleType()) {
+                case PERCENTAGE:
+                    return cost.multiply(BigDecimal.valueOf(amount))
+                            .multiply(BigDecimal.valueOf(100 - rule.getPercentOff()))
+                            .divide(HUNDRED, cost.scale(), RoundingMode.HALF_UP);
+                case BUY_N_GET_M:
+                    int group = rule.getBuyAmount() + rule.getFreeAmount();
+                    int free = amount / group * rule.getFreeAmount()
+                            + Math.max(0, amount % group - rule.getBuyAmount());
+                    return cost.multiply(BigDecimal.valueOf(amount - free));
+                case HAPPY_HOUR:
+                    return rule.getUnitPrice().multiply(BigDecimal.valueOf(amount));
+                default:
+                    throw new IllegalStateException("Unknown price rule type " + rule.getRuleType());
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.adrianr.vending.pricing;
+
+import com.adrianr.vending.config.PricingProperties;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.repository.PriceRuleRepository;
+import com.adrianr.vending.tenancy.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prices buys from price rules compiled in memory, so a buy pays no query for its price. Each tenant's rules are
+ * compiled at startup, again right after a rule changes on this node and every {@code reload-interval-ms} to pick up
+ * changes made elsewhere. Rules apply to the price at the moment of the buy, or of the offline sale or hold it
+ * settles.
+ */
+@Slf4j
+@Service
+public class PricingEngine {
+
+    private static final String NO_TENANT = "";
+
+    private final PriceRuleRepository priceRuleRepository;
+    private final PricingProperties properties;
+    private final Map<String, CompiledPriceRules> compiled = new ConcurrentHashMap<>();
+
+    public PricingEngine(PriceRuleRepository priceRuleRepository, PricingProperties properties) {
+        this.priceRuleRepository = priceRuleRepository;
+        this.properties = properties;
+    }
+
+    public BigDecimal totalPrice(Product product, int amount, Instant at) {
+        return compiled.getOrDefault(tenant(), CompiledPriceRules.EMPTY).totalPrice(product, amount, at);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${vending.pricing.reload-interval-ms:30000}",
+            initialDelayString = "${vending.pricing.reload-interval-ms:30000}")
+    public void reloadAll() {
+        TenantContext.forEachTenant(this::reload);
+    }
+
+    /**
+     * Recompiles the current tenant's rules once the current transaction commits, or right away outside of one.
+     */
+    public void reloadAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reload();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload();
+            }
+        });
+    }
+
+    private void reload() {
+        try {
+            compiled.put(tenant(), CompiledPriceRules.compile(priceRuleRepository.findAll(), properties.getZone(),
+                    Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("Could not reload the price rules of tenant {}, keeping the previous ones", tenant(), e);
+        }
+    }
+
+    private static String tenant() {
+        return TenantContext.current().orElse(NO_TENANT);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.BuySagaOutcome;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface BuySagaOutcomeRepository extends JpaRepository<BuySagaOutcome, String> {
+    /**
+     * Plain insert, failing on a duplicate saga id instead of merging into it.
+     */
+    @Modifying
+    @Query(value = "insert into buy_saga_outcomes(saga_id, debited, created_at) values (:sagaId, :debited, :createdAt)",
+            nativeQuery = true)
+    void insert(@Param("sagaId") String sagaId, @Param("debited") boolean debited,
+                @Param("createdAt") Instant createdAt);
+
+    @Modifying
+    @Query("delete from BuySagaOutcome o where o.sagaId = :sagaId")
+    int deleteBySagaId(@Param("sagaId") String sagaId);
+}
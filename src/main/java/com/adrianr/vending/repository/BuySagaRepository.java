@@ -0,0 +1,23 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.BuySaga;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface BuySagaRepository extends JpaRepository<BuySaga, String> {
+    List<BuySaga> findAllByCreatedAtBefore(Instant createdAt);
+
+    /**
+     * Returns 0 when the saga was already settled by someone else.
+     */
+    @Modifying
+    @Query("delete from BuySaga s where s.id = :id")
+    int settle(@Param("id") String id);
+}
@@ -0,0 +1,41 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.CatalogueChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface CatalogueChangeRepository extends JpaRepository<CatalogueChange, Integer> {
+    /**
+     * The last committed catalogue version. Versions are handed out under a row lock held until commit, so every
+     * change that commits later gets a higher one.
+     */
+    @Query(value = "select version from catalogue_version where id = 1", nativeQuery = true)
+    Integer findLatestVersion();
+
+    @Query("select distinct c.productId from CatalogueChange c where c.version > :cursor and c.version <= :latest")
+    List<Integer> findChangedProductIds(@Param("cursor") Integer cursor, @Param("latest") Integer latest);
+
+    @Modifying
+    @Query(value = "update catalogue_version set version = version + 1 where id = 1", nativeQuery = true)
+    void lockNextVersion();
+
+    /**
+     * Records a change to the product under the next catalogue version. Call it late in the transaction, since other
+     * catalogue changes wait for the version lock until this transaction ends.
+     */
+    @Transactional
+    default CatalogueChange record(Integer productId) {
+        lockNextVersion();
+        return save(CatalogueChange.builder()
+                .productId(productId)
+                .version(findLatestVersion())
+                .build());
+    }
+}
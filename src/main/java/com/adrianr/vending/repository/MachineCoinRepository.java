@@ -0,0 +1,25 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.MachineCoin;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+@Repository
+public interface MachineCoinRepository extends JpaRepository<MachineCoin, Integer> {
+    List<MachineCoin> findAllByMachineIdOrderByCoinDesc(Integer machineId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from MachineCoin c where c.machineId = :machineId order by c.coin desc")
+    List<MachineCoin> lockAllByMachineId(@Param("machineId") Integer machineId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update MachineCoin c set c.quantity = c.quantity + 1 where c.machineId = :machineId and c.coin = :coin")
+    int insertCoin(@Param("machineId") Integer machineId, @Param("coin") Integer coin);
+}
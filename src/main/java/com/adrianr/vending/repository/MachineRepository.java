@@ -0,0 +1,9 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.Machine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MachineRepository extends JpaRepository<Machine, Integer> {
+}
@@ -0,0 +1,47 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.MachineSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MachineSlotRepository extends JpaRepository<MachineSlot, Integer> {
+    List<MachineSlot> findAllByMachineId(Integer machineId);
+
+    Optional<MachineSlot> findByMachineIdAndProductId(Integer machineId, Integer productId);
+
+    /**
+     * Takes {@code amount} items out of a single slot, only if enough are left. Returns the number of updated rows,
+     * so 0 means the slot is missing or short on stock.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update MachineSlot s set s.amountAvailable = s.amountAvailable - :amount " +
+            "where s.machineId = :machineId and s.productId = :productId and s.amountAvailable >= :amount")
+    int dispense(@Param("machineId") Integer machineId,
+                 @Param("productId") Integer productId,
+                 @Param("amount") Integer amount);
+
+    /**
+     * Takes up to {@code amount} items out of a slot, stopping at zero. For sales that already happened physically.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "update machine_slots set amount_available = greatest(amount_available - :amount, 0) " +
+            "where machine_id = :machineId and product_id = :productId",
+            nativeQuery = true)
+    int drain(@Param("machineId") Integer machineId,
+              @Param("productId") Integer productId,
+              @Param("amount") Integer amount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update MachineSlot s set s.amountAvailable = s.amountAvailable + :amount " +
+            "where s.machineId = :machineId and s.productId = :productId")
+    int returnStock(@Param("machineId") Integer machineId,
+                    @Param("productId") Integer productId,
+                    @Param("amount") Integer amount);
+}
@@ -0,0 +1,13 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.MachineSyncEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MachineSyncEntryRepository extends JpaRepository<MachineSyncEntry, Integer> {
+    List<MachineSyncEntry> findAllByMachineIdAndTransactionIdIn(Integer machineId, Collection<String> transactionIds);
+}
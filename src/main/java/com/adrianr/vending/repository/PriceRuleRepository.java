@@ -0,0 +1,14 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.PriceRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PriceRuleRepository extends JpaRepository<PriceRule, Integer> {
+    List<PriceRule> findAllBySellerIdOrderById(Integer sellerId);
+
+    long deleteByIdAndSellerId(Integer id, Integer sellerId);
+}
@@ -2,9 +2,53 @@ package com.adrianr.vending.repository;
 
 import com.adrianr.vending.domain.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer> {
+    List<Product> findAllBySellerId(Integer sellerId);
+
     void deleteAllBySellerId(Integer sellerId);
+
+    /**
+     * Takes {@code amount} items out of stock, only if enough are left. Returns 0 when the product is missing or
+     * short on stock.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.amountAvailable = p.amountAvailable - :amount " +
+            "where p.id = :id and p.amountAvailable >= :amount")
+    int takeStock(@Param("id") Integer id, @Param("amount") Integer amount);
+
+    /**
+     * Reads the stock from the database, never from the persistence context.
+     */
+    @Query("select p.amountAvailable from Product p where p.id = :id")
+    Optional<Integer> findStock(@Param("id") Integer id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.amountAvailable = p.amountAvailable + :amount where p.id = :id")
+    int returnStock(@Param("id") Integer id, @Param("amount") Integer amount);
+
+    /**
+     * Changes name and cost only, leaving the stock to the buys that may be running against it.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.productName = :productName, p.cost = :cost where p.id = :id")
+    int updateListing(@Param("id") Integer id,
+                      @Param("productName") String productName,
+                      @Param("cost") BigDecimal cost);
+
+    @Modifying
+    @Query(value = "insert into products(id, product_name, seller_id, cost, amount_available) " +
+            "values (:#{#product.id}, :#{#product.productName}, :#{#product.sellerId}, :#{#product.cost}, " +
+            ":#{#product.amountAvailable})",
+            nativeQuery = true)
+    void insertWithId(@Param("product") Product product);
 }
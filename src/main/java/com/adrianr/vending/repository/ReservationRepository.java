@@ -0,0 +1,41 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.Reservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ReservationRepository extends JpaRepository<Reservation, String> {
+    /**
+     * Deletes the hold if it is still open, which is what settles it: only the caller that gets a 1 back may act on it.
+     */
+    @Modifying
+    @Query("delete from Reservation r where r.id = :id")
+    int settle(@Param("id") String id);
+
+    /**
+     * Settles the hold like {@link #settle(String)}, but only while it has not expired, so a commit racing the sweep
+     * cannot buy on a hold past its TTL.
+     */
+    @Modifying
+    @Query("delete from Reservation r where r.id = :id and r.expiresAt > :now")
+    int settleUnexpired(@Param("id") String id, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update Reservation r set r.leaseExpiresAt = :until where r.heldBy = :heldBy")
+    int renewLeases(@Param("heldBy") String heldBy, @Param("until") Instant until);
+
+    @Modifying
+    @Query("update Reservation r set r.heldBy = :heldBy, r.leaseExpiresAt = :until " +
+            "where r.id = :id and r.leaseExpiresAt < :now")
+    int claim(@Param("id") String id, @Param("heldBy") String heldBy, @Param("now") Instant now,
+              @Param("until") Instant until);
+
+    List<Reservation> findAllByLeaseExpiresAtBefore(Instant now);
+}
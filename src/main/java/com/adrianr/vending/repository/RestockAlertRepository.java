@@ -0,0 +1,16 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.RestockAlert;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RestockAlertRepository extends JpaRepository<RestockAlert, Integer> {
+    List<RestockAlert> findAllBySellerIdAndIdGreaterThanOrderById(Integer sellerId, Integer after);
+
+    boolean existsByProductIdAndMachineId(Integer productId, Integer machineId);
+
+    long deleteByIdAndSellerId(Integer id, Integer sellerId);
+}
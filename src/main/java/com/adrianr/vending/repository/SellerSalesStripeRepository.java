@@ -0,0 +1,24 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.SellerSalesStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface SellerSalesStripeRepository extends JpaRepository<SellerSalesStripe, SellerSalesStripe.Key> {
+    @Modifying
+    @Query("update SellerSalesStripe s set s.unitsSold = s.unitsSold + :units, s.revenue = s.revenue + :revenue, " +
+            "s.sales = s.sales + 1 where s.sellerId = :sellerId and s.stripe = :stripe")
+    int recordSale(@Param("sellerId") Integer sellerId, @Param("stripe") Integer stripe, @Param("units") Long units,
+                   @Param("revenue") BigDecimal revenue);
+
+    List<SellerSalesStripe> findAllBySellerId(Integer sellerId);
+
+    void deleteAllBySellerId(Integer sellerId);
+}
@@ -0,0 +1,17 @@
+package com.adrianr.vending.repository;
+
+import com.adrianr.vending.domain.SellerSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SellerSummaryRepository extends JpaRepository<SellerSummary, Integer> {
+    @Modifying
+    @Query("update SellerSummary s set s.productCount = s.productCount + :delta where s.sellerId = :sellerId")
+    int adjustProductCount(@Param("sellerId") Integer sellerId, @Param("delta") Integer delta);
+
+    void deleteAllBySellerId(Integer sellerId);
+}
@@ -2,11 +2,32 @@ package com.adrianr.vending.repository;
 
 import com.adrianr.vending.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByUsername(String username);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.deposit = u.deposit + :amount where u.id = :id")
+    int addToDeposit(@Param("id") Integer id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Takes {@code amount} off the deposit, only if it covers it. Returns 0 when the user is missing or short.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update User u set u.deposit = u.deposit - :amount where u.id = :id and u.deposit >= :amount")
+    int debit(@Param("id") Integer id, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "insert into users(id, username, password, deposit, role) " +
+            "values (:#{#user.id}, :#{#user.username}, :#{#user.password}, :#{#user.deposit}, :#{#user.role.name()})",
+            nativeQuery = true)
+    void insertWithId(@Param("user") User user);
 }
@@ -0,0 +1,61 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.analytics.SalesAnalytics;
+import com.adrianr.vending.rest.dto.AnalyticsSummaryDto;
+import com.adrianr.vending.rest.dto.TopProductDto;
+import com.adrianr.vending.service.SecurityService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Validated
+@RestController
+@RequestMapping("analytics")
+@PreAuthorize("hasRole('ROLE_SELLER')")
+public class AnalyticsController {
+
+    private final SalesAnalytics salesAnalytics;
+    private final SecurityService securityService;
+
+    public AnalyticsController(SalesAnalytics salesAnalytics, SecurityService securityService) {
+        this.salesAnalytics = salesAnalytics;
+        this.securityService = securityService;
+    }
+
+    @GetMapping("top-products")
+    public ResponseEntity<List<TopProductDto>> getTopProducts(
+            @RequestParam(defaultValue = "10") @Min(1) @Max(64) Integer limit) {
+        return ResponseEntity.ok(salesAnalytics.topProducts(securityService.getLoggedUserId(), limit));
+    }
+
+    /**
+     * Revenue over the window, keyed by seller id. A seller only ever sees their own figure.
+     */
+    @GetMapping("revenue")
+    public ResponseEntity<Map<Integer, BigDecimal>> getRevenue() {
+        Integer sellerId = securityService.getLoggedUserId();
+        return ResponseEntity.ok(Map.of(sellerId, salesAnalytics.revenueOfSeller(sellerId)));
+    }
+
+    @GetMapping("units-per-hour")
+    public ResponseEntity<Map<Instant, Long>> getUnitsPerHour() {
+        return ResponseEntity.ok(salesAnalytics.unitsPerHour(securityService.getLoggedUserId()));
+    }
+
+    @GetMapping("summary")
+    public ResponseEntity<AnalyticsSummaryDto> getSummary() {
+        return ResponseEntity.ok(salesAnalytics.summary(securityService.getLoggedUserId()));
+    }
+
+}
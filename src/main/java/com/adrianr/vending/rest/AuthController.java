@@ -0,0 +1,40 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.rest.dto.TokenDto;
+import com.adrianr.vending.service.SecurityService;
+import com.adrianr.vending.service.TokenService;
+import com.adrianr.vending.service.UserService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("auth")
+public class AuthController {
+
+    private final TokenService tokenService;
+    private final UserService userService;
+    private final SecurityService securityService;
+
+    public AuthController(TokenService tokenService, UserService userService, SecurityService securityService) {
+        this.tokenService = tokenService;
+        this.userService = userService;
+        this.securityService = securityService;
+    }
+
+    @PostMapping("token")
+    public ResponseEntity<TokenDto> issueToken() {
+        // A token must not be able to renew itself, or a stolen one would never expire.
+        if (securityService.isTokenAuthenticated()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Tokens are only issued for Basic credentials");
+        }
+        return ResponseEntity.ok(TokenDto.builder()
+                .token(tokenService.issue(userService.getUserById(securityService.getLoggedUserId())))
+                .expiresIn(tokenService.getTtlSeconds())
+                .build());
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.adrianr.vending.rest;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip}, so machines can upload large sync batches
+ * compressed. Inflated bodies are capped to keep a small upload from expanding without bound.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    static final long MAX_INFLATED_BYTES = 16L * 1024 * 1024;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(new GzipRequest(request), response);
+    }
+
+    private static class GzipRequest extends HttpServletRequestWrapper {
+
+        private ServletInputStream inputStream;
+
+        GzipRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new InflatingInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+    }
+
+    /**
+     * Inflates lazily, so blocking reads stream straight through the inflater. A non-blocking reader is served once
+     * the whole compressed body has arrived: it is collected without blocking, then inflated from memory, since
+     * {@link GZIPInputStream} would otherwise block the container thread waiting for input.
+     */
+    private static class InflatingInputStream extends ServletInputStream {
+
+        private final ServletInputStream compressed;
+        private InputStream inflated;
+        private long read;
+        private boolean finished;
+        private boolean collecting;
+
+        InflatingInputStream(ServletInputStream compressed) {
+            this.compressed = compressed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = inflated().read();
+            count(b == -1 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = inflated().read(buffer, offset, length);
+            count(n);
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return !collecting;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            collecting = true;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            compressed.setReadListener(new ReadListener() {
+
+                private final byte[] chunk = new byte[8192];
+
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (compressed.isReady()) {
+                        int n = compressed.read(chunk);
+                        if (n == -1) {
+                            return;
+                        }
+                        body.write(chunk, 0, n);
+                        if (body.size() > MAX_INFLATED_BYTES) {
+                            throw new IOException("Request body exceeds " + MAX_INFLATED_BYTES + " bytes");
+                        }
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() throws IOException {
+                    inflated = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()));
+                    collecting = false;
+                    readListener.onDataAvailable();
+                    if (finished) {
+                        readListener.onAllDataRead();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    readListener.onError(t);
+                }
+
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflated != null) {
+                inflated.close();
+            } else {
+                compressed.close();
+            }
+        }
+
+        private InputStream inflated() throws IOException {
+            if (collecting) {
+                throw new IllegalStateException("Request body is not ready, wait for onDataAvailable");
+            }
+            if (inflated == null) {
+                inflated = new GZIPInputStream(compressed);
+            }
+            return inflated;
+        }
+
+        private void count(int n) throws IOException {
+            if (n == -1) {
+                finished = true;
+                return;
+            }
+            read += n;
+            if (read > MAX_INFLATED_BYTES) {
+                throw new IOException("Inflated request body exceeds " + MAX_INFLATED_BYTES + " bytes");
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.config.RateLimitProperties;
+import com.adrianr.vending.service.RateLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Charges the caller's IP bucket ahead of authentication, so floods of guessed Basic credentials are turned away
+ * before they reach BCrypt. Runs for the rate limited paths and for every request carrying Basic credentials.
+ */
+public class IpRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String BASIC_PREFIX = "basic ";
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+
+    public IpRateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled()
+                || !hasBasicCredentials(request) && !RateLimitFilter.isLimitedPath(request, properties);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long wait = rateLimiter.acquireIp(request.getRemoteAddr());
+        if (wait > 0) {
+            RateLimitFilter.reject(response, wait);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static boolean hasBasicCredentials(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null && authorization.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length());
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.rest.dto.CreateMachineDto;
+import com.adrianr.vending.rest.dto.MachineDto;
+import com.adrianr.vending.rest.dto.SyncRequestDto;
+import com.adrianr.vending.rest.dto.SyncResponseDto;
+import com.adrianr.vending.service.MachineService;
+import com.adrianr.vending.service.MachineSyncService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import java.net.URI;
+
+@Validated
+@RestController
+@RequestMapping("machines")
+public class MachineController {
+
+    private final MachineService machineService;
+    private final MachineSyncService machineSyncService;
+
+    public MachineController(MachineService machineService, MachineSyncService machineSyncService) {
+        this.machineService = machineService;
+        this.machineSyncService = machineSyncService;
+    }
+
+    @GetMapping("{id}")
+    public ResponseEntity<MachineDto> getMachineById(@PathVariable Integer id) {
+        return ResponseEntity.ok(machineService.getMachine(id));
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<MachineDto> createMachine(@Valid @RequestBody CreateMachineDto machineDto) {
+        MachineDto machine = machineService.createMachine(machineDto.toMachine());
+
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
+                .buildAndExpand(machine.getId()).toUri();
+
+        return ResponseEntity.created(location).body(machine);
+    }
+
+    @PutMapping("{id}/slots/{productId}")
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<MachineDto> stockSlot(@PathVariable Integer id,
+                                                @PathVariable Integer productId,
+                                                @RequestParam @Min(0) Integer amount) {
+        return ResponseEntity.ok(machineService.stockSlot(id, productId, amount));
+    }
+
+    @PutMapping("{id}/coins/{coin:5|10|20|50|100}")
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<MachineDto> loadCoins(@PathVariable Integer id,
+                                                @PathVariable Integer coin,
+                                                @RequestParam @Min(0) Integer quantity) {
+        return ResponseEntity.ok(machineService.loadCoins(id, coin, quantity));
+    }
+
+    @PostMapping("{id}/sync")
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<SyncResponseDto> sync(@PathVariable Integer id, @Valid @RequestBody SyncRequestDto request) {
+        return ResponseEntity.ok(machineSyncService.sync(id, request));
+    }
+
+}
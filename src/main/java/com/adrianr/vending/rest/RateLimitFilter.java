@@ -0,0 +1,86 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.config.RateLimitProperties;
+import com.adrianr.vending.service.RateLimiter;
+import com.adrianr.vending.tenancy.TenantContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Per-user rate and concurrency limits, applied once the caller is authenticated. The IP limit is charged earlier by
+ * {@link IpRateLimitFilter}.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !isLimitedPath(request, properties);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Usernames repeat across tenants, and one tenant's user must not use up another's budget.
+        String username = TenantContext.current()
+                .map(tenant -> tenant + "/" + authentication.getName())
+                .orElse(authentication.getName());
+        long wait = rateLimiter.acquireUser(username);
+        if (wait > 0) {
+            reject(response, wait);
+            return;
+        }
+
+        if (!rateLimiter.enter(username)) {
+            reject(response, 0);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            rateLimiter.exit(username);
+        }
+    }
+
+    static boolean isLimitedPath(HttpServletRequest request, RateLimitProperties properties) {
+        String path = URL_PATH_HELPER.getPathWithinApplication(request);
+        return properties.getPaths().stream().anyMatch(pattern -> PATH_MATCHER.match(pattern, path));
+    }
+
+    static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.toRetryAfterSeconds(waitNanos)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":" + HttpStatus.TOO_MANY_REQUESTS.value()
+                + ",\"error\":\"" + HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase() + "\"}");
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.rest.dto.BuyResponseDto;
+import com.adrianr.vending.rest.dto.CreateReservationDto;
+import com.adrianr.vending.rest.dto.ReservationDto;
+import com.adrianr.vending.service.ReservationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.validation.Valid;
+import java.net.URI;
+
+@RestController
+@RequestMapping("reservations")
+@PreAuthorize("hasRole('ROLE_BUYER')")
+public class ReservationController {
+
+    private final ReservationService reservationService;
+
+    public ReservationController(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    @PostMapping
+    public ResponseEntity<ReservationDto> reserve(@Valid @RequestBody CreateReservationDto reservationDto) {
+        ReservationDto reservation = reservationService.reserve(reservationDto.getMachineId(),
+                reservationDto.getProductId(), reservationDto.getAmount());
+
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
+                .buildAndExpand(reservation.getId()).toUri();
+
+        return ResponseEntity.created(location).body(reservation);
+    }
+
+    @GetMapping("{id}")
+    public ResponseEntity<ReservationDto> getReservation(@PathVariable String id) {
+        return ResponseEntity.ok(reservationService.getReservation(id));
+    }
+
+    @PostMapping("{id}/commit")
+    public ResponseEntity<BuyResponseDto> commit(@PathVariable String id) {
+        return ResponseEntity.ok(reservationService.commit(id));
+    }
+
+    @PostMapping("{id}/cancel")
+    public ResponseEntity<ReservationDto> cancel(@PathVariable String id) {
+        return ResponseEntity.ok(reservationService.cancel(id));
+    }
+
+}
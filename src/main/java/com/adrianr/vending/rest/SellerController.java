@@ -0,0 +1,84 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.domain.PriceRule;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.RestockAlert;
+import com.adrianr.vending.domain.SellerSummary;
+import com.adrianr.vending.rest.dto.PriceRuleDto;
+import com.adrianr.vending.service.PriceRuleService;
+import com.adrianr.vending.service.RestockService;
+import com.adrianr.vending.service.SellerDashboardService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import java.util.List;
+
+@Validated
+@RestController
+@RequestMapping("sellers/me")
+@PreAuthorize("hasRole('ROLE_SELLER')")
+public class SellerController {
+
+    private final SellerDashboardService sellerDashboardService;
+    private final RestockService restockService;
+    private final PriceRuleService priceRuleService;
+
+    public SellerController(SellerDashboardService sellerDashboardService,
+                            RestockService restockService,
+                            PriceRuleService priceRuleService) {
+        this.sellerDashboardService = sellerDashboardService;
+        this.restockService = restockService;
+        this.priceRuleService = priceRuleService;
+    }
+
+    @GetMapping("products")
+    public ResponseEntity<List<Product>> getMyProducts() {
+        return ResponseEntity.ok(sellerDashboardService.getMyProducts());
+    }
+
+    @GetMapping("summary")
+    public ResponseEntity<SellerSummary> getMySummary() {
+        return ResponseEntity.ok(sellerDashboardService.getMySummary());
+    }
+
+    @GetMapping("restock-queue")
+    public ResponseEntity<List<RestockAlert>> getMyRestockQueue(
+            @RequestParam(defaultValue = "0") @Min(0) Integer after) {
+        return ResponseEntity.ok(restockService.getMyQueue(after));
+    }
+
+    @GetMapping(path = "restock-queue/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMyRestockQueue() {
+        return restockService.subscribe();
+    }
+
+    @DeleteMapping("restock-queue/{id}")
+    public ResponseEntity<HttpStatus> acknowledgeRestockAlert(@PathVariable Integer id) {
+        restockService.acknowledge(id);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("price-rules")
+    public ResponseEntity<List<PriceRule>> getMyPriceRules() {
+        return ResponseEntity.ok(priceRuleService.getMyRules());
+    }
+
+    @PostMapping("price-rules")
+    public ResponseEntity<PriceRule> createPriceRule(@Valid @RequestBody PriceRuleDto priceRuleDto) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(priceRuleService.createRule(priceRuleDto.toPriceRule()));
+    }
+
+    @DeleteMapping("price-rules/{id}")
+    public ResponseEntity<HttpStatus> deletePriceRule(@PathVariable Integer id) {
+        priceRuleService.deleteRule(id);
+        return ResponseEntity.ok().build();
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.config.SqlStatementCounter;
+import com.adrianr.vending.config.SqlStatementProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Records how many SQL statements each request ran, authentication included, as the
+ * {@code vending.http.sql.statements} summary per endpoint. A request that runs the same statement
+ * {@code repeat-threshold} times or more is logged and counted as a likely N+1.
+ * <p>
+ * With {@code expose-header} on, the count is also returned in {@value #STATEMENTS_HEADER}. That buffers the
+ * response body until the request is done, so it is meant for debugging and tests; event streams are left alone.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(prefix = "vending.sql-statements", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatementFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+
+    private final SqlStatementCounter counter;
+    private final SqlStatementProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatementFilter(SqlStatementCounter counter, SqlStatementProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.counter = counter;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper buffered = exposeHeader(request) ? new ContentCachingResponseWrapper(response)
+                : null;
+        SqlStatementCounter.Tally tally = counter.begin();
+        try {
+            filterChain.doFilter(request, buffered != null ? buffered : response);
+        } finally {
+            counter.end();
+            record(request, tally);
+            if (buffered != null) {
+                buffered.setHeader(STATEMENTS_HEADER, String.valueOf(tally.getTotal()));
+                buffered.copyBodyToResponse();
+            }
+        }
+    }
+
+    private boolean exposeHeader(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return properties.isExposeHeader()
+                && (accept == null || !accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE));
+    }
+
+    private void record(HttpServletRequest request, SqlStatementCounter.Tally tally) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        DistributionSummary.builder("vending.http.sql.statements")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(meterRegistry)
+                .record(tally.getTotal());
+
+        Map.Entry<String, Integer> repeated = tally.mostRepeated();
+        if (repeated.getValue() >= properties.getRepeatThreshold()) {
+            meterRegistry.counter("vending.http.sql.repeated", "method", request.getMethod(), "uri", uri).increment();
+            log.warn("{} {} ran the same statement {} times, likely an N+1: {}", request.getMethod(), uri,
+                    repeated.getValue(), repeated.getKey());
+        }
+    }
+
+}
@@ -42,7 +42,26 @@ public class VendingController {
 
     @PostMapping("reset")
     public ResponseEntity<ChangeDto> reset() {
-        return ResponseEntity.ok(ChangeDto.builder().change(vendingService.reset()).build());
+        return ResponseEntity.ok(vendingService.reset());
+    }
+
+    @PostMapping("machines/{machineId}/deposit/{amount:5|10|20|50|100}")
+    public ResponseEntity<UserDto> deposit(@PathVariable Integer machineId, @PathVariable Integer amount) {
+        User user = vendingService.deposit(machineId, amount);
+
+        return ResponseEntity.ok(UserDto.fromUser(user));
+    }
+
+    @PostMapping("machines/{machineId}/buy")
+    public ResponseEntity<BuyResponseDto> buy(@PathVariable Integer machineId,
+                                              @RequestParam Integer productId,
+                                              @RequestParam @Min(1) Integer amount) {
+        return ResponseEntity.ok(vendingService.buy(machineId, productId, amount));
+    }
+
+    @PostMapping("machines/{machineId}/reset")
+    public ResponseEntity<ChangeDto> reset(@PathVariable Integer machineId) {
+        return ResponseEntity.ok(vendingService.reset(machineId));
     }
 
 }
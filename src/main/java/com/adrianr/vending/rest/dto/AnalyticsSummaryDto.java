@@ -0,0 +1,18 @@
+package com.adrianr.vending.rest.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@Builder
+public class AnalyticsSummaryDto {
+
+    private Instant windowStart;
+    private Long units;
+    private BigDecimal revenue;
+    private Long distinctBuyers;
+
+}
@@ -1,9 +1,11 @@
 package com.adrianr.vending.rest.dto;
 
+import com.adrianr.vending.domain.Product;
 import lombok.Builder;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 @Data
 @Builder
@@ -14,4 +16,16 @@ public class BuyResponseDto {
     private Integer amount;
     private Integer change;
 
+    public static BuyResponseDto of(Product product, Integer amount, BigDecimal totalPrice, BigDecimal remainingDeposit) {
+        return BuyResponseDto.builder()
+                .productName(product.getProductName())
+                .amount(amount)
+                .totalPrice(totalPrice)
+                .change(remainingDeposit
+                        .divide(BigDecimal.valueOf(5), RoundingMode.DOWN)
+                        .setScale(0, RoundingMode.DOWN)
+                        .multiply(BigDecimal.valueOf(5)).intValue())
+                .build();
+    }
+
 }
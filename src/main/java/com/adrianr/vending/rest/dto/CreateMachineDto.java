@@ -0,0 +1,26 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.Machine;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateMachineDto {
+
+    @NotNull
+    private String location;
+
+    public Machine toMachine() {
+        return Machine.builder()
+                .location(location)
+                .build();
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.adrianr.vending.rest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateReservationDto {
+
+    @NotNull
+    private Integer productId;
+    @NotNull
+    @Min(1)
+    private Integer amount;
+    private Integer machineId;
+
+}
@@ -0,0 +1,38 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.Machine;
+import com.adrianr.vending.domain.MachineCoin;
+import com.adrianr.vending.domain.MachineSlot;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Data
+@Builder
+public class MachineDto {
+
+    private Integer id;
+    private String location;
+    private Integer ownerId;
+    private Map<Integer, Integer> slots;
+    private Map<Integer, Integer> coins;
+
+    public static MachineDto of(Machine machine, List<MachineSlot> slots, List<MachineCoin> coins) {
+        return MachineDto.builder()
+                .id(machine.getId())
+                .location(machine.getLocation())
+                .ownerId(machine.getOwnerId())
+                .slots(slots.stream()
+                        .collect(Collectors.toMap(MachineSlot::getProductId, MachineSlot::getAmountAvailable,
+                                (a, b) -> b, TreeMap::new)))
+                .coins(coins.stream()
+                        .collect(Collectors.toMap(MachineCoin::getCoin, MachineCoin::getQuantity,
+                                (a, b) -> b, TreeMap::new)))
+                .build();
+    }
+
+}
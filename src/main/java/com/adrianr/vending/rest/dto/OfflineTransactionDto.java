@@ -0,0 +1,40 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.OfflineTransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineTransactionDto {
+
+    @NotNull
+    @Size(max = 64)
+    private String id;
+    @NotNull
+    private Instant timestamp;
+    @NotNull
+    private OfflineTransactionType type;
+    @NotNull
+    private Integer userId;
+    private Integer productId;
+    @NotNull
+    @Min(1)
+    private Integer amount;
+    /**
+     * Bearer token the buyer presented at the machine, proving they authorised the transaction.
+     */
+    @NotNull
+    @Size(max = 2048)
+    private String authorization;
+
+}
@@ -0,0 +1,57 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.PriceRule;
+import com.adrianr.vending.domain.PriceRuleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceRuleDto {
+
+    private Integer productId;
+    @NotNull
+    private PriceRuleType ruleType;
+    @Min(1)
+    @Max(100)
+    private Integer percentOff;
+    @Min(0)
+    @Digits(integer = 9, fraction = 0)
+    private BigDecimal unitPrice;
+    @Min(1)
+    private Integer buyAmount;
+    @Min(1)
+    private Integer freeAmount;
+    private Instant startsAt;
+    private Instant endsAt;
+    private LocalTime dailyFrom;
+    private LocalTime dailyTo;
+
+    public PriceRule toPriceRule() {
+        return PriceRule.builder()
+                .productId(productId)
+                .ruleType(ruleType)
+                .percentOff(percentOff)
+                .unitPrice(unitPrice)
+                .buyAmount(buyAmount)
+                .freeAmount(freeAmount)
+                .startsAt(startsAt)
+                .endsAt(endsAt)
+                .dailyFrom(dailyFrom)
+                .dailyTo(dailyTo)
+                .build();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.Reservation;
+import com.adrianr.vending.domain.ReservationStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@Builder
+public class ReservationDto {
+
+    private String id;
+    private Integer productId;
+    private String productName;
+    private Integer machineId;
+    private Integer amount;
+    private BigDecimal totalPrice;
+    private Instant expiresAt;
+    private ReservationStatus status;
+
+    public static ReservationDto of(Reservation reservation, ReservationStatus status) {
+        return ReservationDto.builder()
+                .id(reservation.getId())
+                .productId(reservation.getProductId())
+                .productName(reservation.getProductName())
+                .machineId(reservation.getMachineId())
+                .amount(reservation.getAmount())
+                .totalPrice(reservation.getTotalPrice())
+                .expiresAt(reservation.getExpiresAt())
+                .status(status)
+                .build();
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.adrianr.vending.rest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncRequestDto {
+
+    @NotNull
+    @Min(0)
+    @Builder.Default
+    private Integer cursor = 0;
+    @Valid
+    @NotNull
+    @Size(max = 1000)
+    private List<OfflineTransactionDto> transactions;
+
+}
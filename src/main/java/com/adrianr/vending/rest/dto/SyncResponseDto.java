@@ -0,0 +1,20 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.Product;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class SyncResponseDto {
+
+    private Integer cursor;
+    private List<SyncResultDto> results;
+    private List<Product> changedProducts;
+    private List<Integer> deletedProductIds;
+    private Map<Integer, Integer> slots;
+
+}
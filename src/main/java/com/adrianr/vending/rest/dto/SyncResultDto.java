@@ -0,0 +1,15 @@
+package com.adrianr.vending.rest.dto;
+
+import com.adrianr.vending.domain.SyncStatus;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SyncResultDto {
+
+    private String id;
+    private SyncStatus status;
+    private String reason;
+
+}
@@ -0,0 +1,15 @@
+package com.adrianr.vending.rest.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TokenDto {
+
+    private String token;
+    @Builder.Default
+    private String tokenType = "Bearer";
+    private Long expiresIn;
+
+}
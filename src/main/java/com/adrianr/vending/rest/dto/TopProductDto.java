@@ -0,0 +1,14 @@
+package com.adrianr.vending.rest.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TopProductDto {
+
+    private Integer productId;
+    private String productName;
+    private Long units;
+
+}
@@ -0,0 +1,107 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.domain.Machine;
+import com.adrianr.vending.domain.MachineCoin;
+import com.adrianr.vending.domain.MachineSlot;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.repository.MachineCoinRepository;
+import com.adrianr.vending.repository.MachineRepository;
+import com.adrianr.vending.repository.MachineSlotRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.rest.dto.MachineDto;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class MachineService {
+
+    private final MachineRepository machineRepository;
+    private final MachineSlotRepository machineSlotRepository;
+    private final MachineCoinRepository machineCoinRepository;
+    private final ProductRepository productRepository;
+    private final SecurityService securityService;
+
+    public MachineService(MachineRepository machineRepository,
+                          MachineSlotRepository machineSlotRepository,
+                          MachineCoinRepository machineCoinRepository,
+                          ProductRepository productRepository,
+                          SecurityService securityService) {
+        this.machineRepository = machineRepository;
+        this.machineSlotRepository = machineSlotRepository;
+        this.machineCoinRepository = machineCoinRepository;
+        this.productRepository = productRepository;
+        this.securityService = securityService;
+    }
+
+    @Transactional(readOnly = true)
+    public MachineDto getMachine(Integer machineId) {
+        Machine machine = findMachine(machineId);
+
+        return MachineDto.of(machine,
+                machineSlotRepository.findAllByMachineId(machineId),
+                machineCoinRepository.findAllByMachineIdOrderByCoinDesc(machineId));
+    }
+
+    @Transactional
+    public MachineDto createMachine(Machine machine) {
+        machine.setOwnerId(securityService.getLoggedUserId());
+        Machine saved = machineRepository.save(machine);
+
+        var coins = machineCoinRepository.saveAll(VendingService.AVAILABLE_COINS.stream()
+                .map(coin -> MachineCoin.builder().machineId(saved.getId()).coin(coin).quantity(0).build())
+                .collect(Collectors.toList()));
+
+        return MachineDto.of(saved, List.of(), coins);
+    }
+
+    @Transactional
+    public MachineDto stockSlot(Integer machineId, Integer productId, Integer amount) {
+        findOwnedMachine(machineId);
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist"));
+        if (!securityService.getLoggedUserId().equals(product.getSellerId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+        }
+
+        MachineSlot slot = machineSlotRepository.findByMachineIdAndProductId(machineId, productId)
+                .orElseGet(() -> MachineSlot.builder().machineId(machineId).productId(productId).build());
+        slot.setAmountAvailable(amount);
+        machineSlotRepository.save(slot);
+
+        return getMachine(machineId);
+    }
+
+    @Transactional
+    public MachineDto loadCoins(Integer machineId, Integer coin, Integer quantity) {
+        MachineCoin machineCoin = machineCoinRepository.lockAllByMachineId(findOwnedMachine(machineId).getId()).stream()
+                .filter(candidate -> candidate.getCoin().equals(coin))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Coin is not accepted"));
+        machineCoin.setQuantity(quantity);
+        machineCoinRepository.save(machineCoin);
+
+        return getMachine(machineId);
+    }
+
+    /**
+     * Finds a machine the logged seller may manage, failing with 403 for anyone but its owner.
+     */
+    public Machine findOwnedMachine(Integer machineId) {
+        Machine machine = findMachine(machineId);
+        if (!securityService.getLoggedUserId().equals(machine.getOwnerId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Machine belongs to another seller");
+        }
+        return machine;
+    }
+
+    private Machine findMachine(Integer machineId) {
+        return machineRepository.findById(machineId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Machine id does not exist"));
+    }
+
+}
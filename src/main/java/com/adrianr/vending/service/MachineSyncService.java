@@ -0,0 +1,238 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.domain.*;
+import com.adrianr.vending.pricing.PricingEngine;
+import com.adrianr.vending.repository.*;
+import com.adrianr.vending.rest.dto.OfflineTransactionDto;
+import com.adrianr.vending.rest.dto.SyncRequestDto;
+import com.adrianr.vending.rest.dto.SyncResponseDto;
+import com.adrianr.vending.rest.dto.SyncResultDto;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles a batch of transactions a machine recorded while offline and hands back what changed in the catalogue
+ * since the machine's last cursor.
+ * <p>
+ * Transactions are applied in (timestamp, id) order so replaying the same batch always gives the same outcome.
+ * Money is checked against the server side balance at apply time: a deposit always lands (the coin is in the box)
+ * and a buy the balance cannot cover is rejected. Stock follows the machine, since the item has physically left
+ * the slot, so an accepted buy drains the slot down to zero at most. Transaction ids are logged per machine, so a
+ * batch re-sent after a lost response is reported as duplicates instead of being applied twice. Each transaction is
+ * applied and logged in a database transaction of its own, so a batch failing part way keeps what it applied logged.
+ * With sharding on that matters: a buyer's balance on another shard than the machine commits on its own, just before
+ * the transaction that logs it, and a batch rolled back as a whole would have it applied again on the retry.
+ * <p>
+ * Only the machine's owner may sync it, and each transaction must carry a bearer token of its buyer that was valid
+ * when the transaction happened; anything else is rejected before money moves. Coins the buyers still have pending
+ * are flushed before the first transaction is applied, so buys are checked against the full balance.
+ */
+@Service
+public class MachineSyncService {
+
+    private static final Comparator<OfflineTransactionDto> APPLY_ORDER =
+            Comparator.comparing(OfflineTransactionDto::getTimestamp).thenComparing(OfflineTransactionDto::getId);
+
+    private final MachineSlotRepository machineSlotRepository;
+    private final MachineCoinRepository machineCoinRepository;
+    private final MachineSyncEntryRepository machineSyncEntryRepository;
+    private final CatalogueChangeRepository catalogueChangeRepository;
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final DepositAccumulator depositAccumulator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PricingEngine pricingEngine;
+    private final MachineService machineService;
+    private final TokenService tokenService;
+    private final TransactionTemplate transactionTemplate;
+
+    public MachineSyncService(MachineSlotRepository machineSlotRepository,
+                              MachineCoinRepository machineCoinRepository,
+                              MachineSyncEntryRepository machineSyncEntryRepository,
+                              CatalogueChangeRepository catalogueChangeRepository,
+                              ProductRepository productRepository,
+                              UserRepository userRepository,
+                              DepositAccumulator depositAccumulator,
+                              ApplicationEventPublisher eventPublisher,
+                              PricingEngine pricingEngine,
+                              MachineService machineService,
+                              TokenService tokenService,
+                              PlatformTransactionManager transactionManager) {
+        this.machineSlotRepository = machineSlotRepository;
+        this.machineCoinRepository = machineCoinRepository;
+        this.machineSyncEntryRepository = machineSyncEntryRepository;
+        this.catalogueChangeRepository = catalogueChangeRepository;
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.depositAccumulator = depositAccumulator;
+        this.eventPublisher = eventPublisher;
+        this.pricingEngine = pricingEngine;
+        this.machineService = machineService;
+        this.tokenService = tokenService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public SyncResponseDto sync(Integer machineId, SyncRequestDto request) {
+        request.getTransactions().stream()
+                .map(OfflineTransactionDto::getUserId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(depositAccumulator::flush);
+        Integer latest = transactionTemplate.execute(transactionStatus -> {
+            machineService.findOwnedMachine(machineId);
+            return catalogueChangeRepository.findLatestVersion();
+        });
+
+        List<OfflineTransactionDto> transactions = new ArrayList<>(request.getTransactions());
+        transactions.sort(APPLY_ORDER);
+
+        Map<String, SyncStatus> seen = machineSyncEntryRepository.findAllByMachineIdAndTransactionIdIn(machineId,
+                        transactions.stream().map(OfflineTransactionDto::getId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(MachineSyncEntry::getTransactionId, MachineSyncEntry::getStatus));
+
+        List<SyncResultDto> results = new ArrayList<>(transactions.size());
+        for (OfflineTransactionDto transaction : transactions) {
+            if (seen.containsKey(transaction.getId())) {
+                results.add(result(transaction, SyncStatus.DUPLICATE, null));
+                continue;
+            }
+
+            SyncResultDto result = transactionTemplate.execute(
+                    transactionStatus -> applyAndLog(machineId, transaction));
+            seen.put(transaction.getId(), result.getStatus());
+            results.add(result);
+        }
+
+        return transactionTemplate.execute(transactionStatus -> delta(machineId, request.getCursor(), latest)
+                .results(results)
+                .build());
+    }
+
+    /**
+     * Claims the transaction id in the machine's log before any money moves, so the same batch synced twice at once
+     * fails on the claim rather than applying twice.
+     */
+    private SyncResultDto applyAndLog(Integer machineId, OfflineTransactionDto transaction) {
+        MachineSyncEntry entry = machineSyncEntryRepository.saveAndFlush(MachineSyncEntry.builder()
+                .machineId(machineId)
+                .transactionId(transaction.getId())
+                .status(SyncStatus.APPLIED)
+                .build());
+
+        Optional<String> rejection = apply(machineId, transaction);
+        rejection.ifPresent(reason -> entry.setStatus(SyncStatus.REJECTED));
+        return result(transaction, entry.getStatus(), rejection.orElse(null));
+    }
+
+    private Optional<String> apply(Integer machineId, OfflineTransactionDto transaction) {
+        if (!isAuthorisedByBuyer(transaction)) {
+            return Optional.of("Transaction is not authorised by the buyer");
+        }
+        switch (transaction.getType()) {
+            case DEPOSIT:
+                return deposit(machineId, transaction);
+            case BUY:
+                return buy(machineId, transaction);
+            default:
+                throw new IllegalArgumentException("Unsupported transaction type " + transaction.getType());
+        }
+    }
+
+    private Optional<String> deposit(Integer machineId, OfflineTransactionDto transaction) {
+        if (!VendingService.AVAILABLE_COINS.contains(transaction.getAmount())) {
+            return Optional.of("Coin is not accepted");
+        }
+        Optional<User> buyer = findBuyer(transaction.getUserId());
+        if (buyer.isEmpty()) {
+            return Optional.of("Buyer does not exist");
+        }
+
+        machineCoinRepository.insertCoin(machineId, transaction.getAmount());
+        userRepository.addToDeposit(buyer.get().getId(), BigDecimal.valueOf(transaction.getAmount()));
+        return Optional.empty();
+    }
+
+    private Optional<String> buy(Integer machineId, OfflineTransactionDto transaction) {
+        Optional<MachineSlot> slot = Optional.ofNullable(transaction.getProductId())
+                .flatMap(productId -> machineSlotRepository.findByMachineIdAndProductId(machineId, productId));
+        if (slot.isEmpty()) {
+            return Optional.of("Product is not stocked in this machine");
+        }
+        Optional<Product> product = productRepository.findById(transaction.getProductId());
+        if (product.isEmpty()) {
+            return Optional.of("Product id does not exist");
+        }
+        Optional<User> buyer = findBuyer(transaction.getUserId());
+        if (buyer.isEmpty()) {
+            return Optional.of("Buyer does not exist");
+        }
+
+        Integer userId = buyer.get().getId();
+        BigDecimal totalAmount = pricingEngine.totalPrice(product.get(), transaction.getAmount(),
+                transaction.getTimestamp());
+        if (userRepository.debit(userId, totalAmount) == 0) {
+            return Optional.of("Not enough funds to complete the order");
+        }
+        machineSlotRepository.drain(machineId, transaction.getProductId(), transaction.getAmount());
+
+        eventPublisher.publishEvent(SaleEvent.of(product.get(), machineId, userId, transaction.getAmount(),
+                totalAmount, transaction.getTimestamp()));
+        return Optional.empty();
+    }
+
+    private boolean isAuthorisedByBuyer(OfflineTransactionDto transaction) {
+        return tokenService.verifyAt(transaction.getAuthorization(), transaction.getTimestamp())
+                .filter(principal -> principal.getId().equals(transaction.getUserId()))
+                .isPresent();
+    }
+
+    private Optional<User> findBuyer(Integer userId) {
+        return userRepository.findById(userId)
+                .filter(user -> user.getRole() == UserRole.BUYER);
+    }
+
+    /**
+     * A cursor of 0, or one the server has never handed out, gets the full catalogue. Anything else only gets the
+     * products touched after it, with products that no longer exist reported by id.
+     */
+    private SyncResponseDto.SyncResponseDtoBuilder delta(Integer machineId, Integer cursor, Integer latest) {
+        List<Product> changedProducts = new ArrayList<>();
+        List<Integer> deletedProductIds = new ArrayList<>();
+
+        if (cursor == 0 || cursor > latest) {
+            changedProducts.addAll(productRepository.findAll());
+        } else {
+            for (Integer productId : catalogueChangeRepository.findChangedProductIds(cursor, latest)) {
+                productRepository.findById(productId)
+                        .ifPresentOrElse(changedProducts::add, () -> deletedProductIds.add(productId));
+            }
+        }
+        changedProducts.sort(Comparator.comparing(Product::getId));
+        Collections.sort(deletedProductIds);
+
+        return SyncResponseDto.builder()
+                .cursor(latest)
+                .changedProducts(changedProducts)
+                .deletedProductIds(deletedProductIds)
+                .slots(machineSlotRepository.findAllByMachineId(machineId).stream()
+                        .collect(Collectors.toMap(MachineSlot::getProductId, MachineSlot::getAmountAvailable,
+                                (a, b) -> b, TreeMap::new)));
+    }
+
+    private static SyncResultDto result(OfflineTransactionDto transaction, SyncStatus status, String reason) {
+        return SyncResultDto.builder()
+                .id(transaction.getId())
+                .status(status)
+                .reason(reason)
+                .build();
+    }
+
+}
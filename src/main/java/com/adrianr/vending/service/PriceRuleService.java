@@ -0,0 +1,94 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.domain.PriceRule;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.pricing.PricingEngine;
+import com.adrianr.vending.repository.PriceRuleRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Lets sellers manage promotions on their own products. Changes reach {@link PricingEngine} as soon as they commit.
+ */
+@Service
+public class PriceRuleService {
+
+    private final PriceRuleRepository priceRuleRepository;
+    private final ProductRepository productRepository;
+    private final SecurityService securityService;
+    private final PricingEngine pricingEngine;
+
+    public PriceRuleService(PriceRuleRepository priceRuleRepository,
+                            ProductRepository productRepository,
+                            SecurityService securityService,
+                            PricingEngine pricingEngine) {
+        this.priceRuleRepository = priceRuleRepository;
+        this.productRepository = productRepository;
+        this.securityService = securityService;
+        this.pricingEngine = pricingEngine;
+    }
+
+    @Transactional(readOnly = true)
+    public List<PriceRule> getMyRules() {
+        return priceRuleRepository.findAllBySellerIdOrderById(securityService.getLoggedUserId());
+    }
+
+    @Transactional
+    public PriceRule createRule(PriceRule rule) {
+        Integer sellerId = securityService.getLoggedUserId();
+        if (rule.getProductId() != null) {
+            Product product = productRepository.findById(rule.getProductId())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist"));
+            if (!sellerId.equals(product.getSellerId())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+            }
+        }
+        validate(rule);
+
+        rule.setSellerId(sellerId);
+        PriceRule saved = priceRuleRepository.save(rule);
+        pricingEngine.reloadAfterCommit();
+        return saved;
+    }
+
+    @Transactional
+    public void deleteRule(Integer id) {
+        if (priceRuleRepository.deleteByIdAndSellerId(id, securityService.getLoggedUserId()) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Price rule does not exist");
+        }
+        pricingEngine.reloadAfterCommit();
+    }
+
+    private static void validate(PriceRule rule) {
+        switch (rule.getRuleType()) {
+            case PERCENTAGE:
+                require(rule.getPercentOff() != null, "A percentage rule needs percentOff");
+                break;
+            case BUY_N_GET_M:
+                require(rule.getBuyAmount() != null && rule.getFreeAmount() != null,
+                        "A buy N get M rule needs buyAmount and freeAmount");
+                break;
+            case HAPPY_HOUR:
+                require(rule.getUnitPrice() != null && rule.getDailyFrom() != null,
+                        "A happy hour rule needs unitPrice, dailyFrom and dailyTo");
+                break;
+        }
+        require(isNull(rule.getDailyFrom()) == isNull(rule.getDailyTo()), "dailyFrom and dailyTo go together");
+        require(isNull(rule.getStartsAt()) || isNull(rule.getEndsAt()) || rule.getStartsAt().isBefore(rule.getEndsAt()),
+                "startsAt must be before endsAt");
+    }
+
+    private static void require(boolean condition, String reason) {
+        if (!condition) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+        }
+    }
+
+}
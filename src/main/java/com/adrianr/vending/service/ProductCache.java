@@ -0,0 +1,22 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.domain.Product;
+
+import java.util.Optional;
+
+/**
+ * Read-through cache of single products for {@link ProductService}. Entries may trail the stock by the cache's time to
+ * live, since buys do not evict them; listing changes and restocks do.
+ */
+public interface ProductCache {
+
+    Optional<Product> get(Integer productId);
+
+    void put(Product product);
+
+    /**
+     * Evicts the product once the current transaction commits, or right away outside of one.
+     */
+    void evict(Integer productId);
+
+}
@@ -1,9 +1,12 @@
 package com.adrianr.vending.service;
 
 import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.repository.CatalogueChangeRepository;
 import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.SellerSummaryRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
@@ -13,28 +16,59 @@ import java.util.Optional;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final CatalogueChangeRepository catalogueChangeRepository;
+    private final SellerSummaryRepository sellerSummaryRepository;
     private final SecurityService securityService;
+    private final Optional<ProductCache> productCache;
 
-    public ProductService(ProductRepository productRepository, SecurityService securityService) {
+    public ProductService(ProductRepository productRepository,
+                          CatalogueChangeRepository catalogueChangeRepository,
+                          SellerSummaryRepository sellerSummaryRepository,
+                          SecurityService securityService,
+                          Optional<ProductCache> productCache) {
         this.productRepository = productRepository;
+        this.catalogueChangeRepository = catalogueChangeRepository;
+        this.sellerSummaryRepository = sellerSummaryRepository;
         this.securityService = securityService;
+        this.productCache = productCache;
     }
 
+    @Transactional(readOnly = true)
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Product getProduct(Integer id) {
-        return productRepository.findById(id)
+        Optional<Product> cached = productCache.flatMap(cache -> cache.get(id));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+        productCache.ifPresent(cache -> cache.put(product));
+        return product;
     }
 
+    @Transactional
     public Product createProduct(Product product) {
         product.setSellerId(securityService.getLoggedUserId());
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        sellerSummaryRepository.adjustProductCount(saved.getSellerId(), 1);
+        recordChange(saved.getId());
+        return saved;
     }
 
+    /**
+     * An update without {@code amountAvailable} only changes name and cost, so it cannot overwrite stock taken by buys
+     * running at the same time. With it, as from the REST API, the stock is set outright.
+     * <p>
+     * The product itself is written last: with sharding on it lives on the seller's shard, whose transaction then only
+     * commits once everything kept on the directory shard has been written.
+     */
+    @Transactional
     public Product updateProduct(Product product) {
         Optional<Product> dbProduct = productRepository.findById(product.getId());
         if (dbProduct.isEmpty()) {
@@ -46,9 +80,18 @@ public class ProductService {
 
         product.setSellerId(securityService.getLoggedUserId());
 
+        recordChange(product.getId());
+        if (product.getAmountAvailable() == null) {
+            productRepository.updateListing(product.getId(), product.getProductName(), product.getCost());
+            return productRepository.findById(product.getId()).orElseThrow();
+        }
         return productRepository.save(product);
     }
 
+    /**
+     * Deletes the product after adjusting the seller's summary, for the same reason as {@link #updateProduct}.
+     */
+    @Transactional
     public void deleteProduct(Integer productId) {
         Optional<Product> dbProduct = productRepository.findById(productId);
         if (dbProduct.isEmpty()) {
@@ -58,7 +101,14 @@ public class ProductService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN);
         }
 
+        sellerSummaryRepository.adjustProductCount(dbProduct.get().getSellerId(), -1);
+        recordChange(productId);
         productRepository.deleteById(productId);
     }
 
+    private void recordChange(Integer productId) {
+        productCache.ifPresent(cache -> cache.evict(productId));
+        catalogueChangeRepository.record(productId);
+    }
+
 }
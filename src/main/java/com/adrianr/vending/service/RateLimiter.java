@@ -0,0 +1,102 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+@Service
+public class RateLimiter {
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+    private final Map<Rejection, Counter> rejections = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        for (Rejection rejection : Rejection.values()) {
+            rejections.put(rejection, Counter.builder("vending.rate-limit.rejections")
+                    .tag("reason", rejection.getTag())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return 0 if the request may proceed, otherwise the nanoseconds the caller should wait before retrying
+     */
+    public long acquireIp(String ip) {
+        return acquire(ipBuckets, ip, properties.getIp(), Rejection.IP);
+    }
+
+    public long acquireUser(String username) {
+        return acquire(userBuckets, username, properties.getUser(), Rejection.USER);
+    }
+
+    public boolean enter(String username) {
+        Integer count = inFlight.merge(username, 1, Integer::sum);
+        if (count > properties.getMaxConcurrentPerUser()) {
+            exit(username);
+            rejections.get(Rejection.CONCURRENCY).increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit(String username) {
+        inFlight.computeIfPresent(username, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    @Scheduled(fixedDelayString = "${vending.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long now = nanoClock.getAsLong();
+        userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        ipBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private long acquire(Map<String, TokenBucket> buckets, String key, RateLimitProperties.Bucket limits,
+                         Rejection rejection) {
+        long now = nanoClock.getAsLong();
+        long wait = buckets.computeIfAbsent(key,
+                        k -> new TokenBucket(limits.getCapacity(), limits.getRefillPerSecond(), now))
+                .tryAcquire(now);
+        if (wait > 0) {
+            rejections.get(rejection).increment();
+        }
+        return wait;
+    }
+
+    public static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private enum Rejection {
+
+        IP("ip"),
+        USER("user"),
+        CONCURRENCY("concurrency");
+
+        private final String tag;
+
+    }
+
+}
@@ -0,0 +1,368 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.config.ReservationProperties;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.Reservation;
+import com.adrianr.vending.domain.ReservationStatus;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.pricing.PricingEngine;
+import com.adrianr.vending.repository.MachineSlotRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.ReservationRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.BuyResponseDto;
+import com.adrianr.vending.rest.dto.ReservationDto;
+import com.adrianr.vending.tenancy.TenantContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Two-phase buys. Reserving takes the stock and the funds right away, with the same conditional updates a buy uses,
+ * so every other path already sees them as gone, and writes the hold to {@code RESERVATIONS} in the same
+ * transaction. Committing, cancelling and expiry each settle the hold by deleting its row in their own transaction;
+ * cancelling and expiry also put the stock and funds back with relative updates. Whoever deletes the row is the only
+ * one to act on it, so a hold is settled exactly once however many instances know about it.
+ * <p>
+ * Open holds are also kept in memory, with expiries in a delay queue so the sweep only ever looks at holds that are
+ * due. Expiry is left to the instance that placed a hold, which keeps renewing a lease on its row. When an instance
+ * stops renewing, because it crashed or shut down, the first instance to claim a lapsed row with a conditional update
+ * adopts the hold. Reading, committing and cancelling work on any instance: a hold held elsewhere is loaded from its
+ * row. Holds remember their tenant so expiry and leases work on the right tenant's data.
+ */
+@Slf4j
+@Service
+public class ReservationService {
+
+    private final ReservationProperties properties;
+    private final ReservationRepository reservationRepository;
+    private final ProductRepository productRepository;
+    private final MachineSlotRepository machineSlotRepository;
+    private final UserRepository userRepository;
+    private final SecurityService securityService;
+    private final DepositAccumulator depositAccumulator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PricingEngine pricingEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final DelayQueue<Hold> expiries = new DelayQueue<>();
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public ReservationService(ReservationProperties properties,
+                              ReservationRepository reservationRepository,
+                              ProductRepository productRepository,
+                              MachineSlotRepository machineSlotRepository,
+                              UserRepository userRepository,
+                              SecurityService securityService,
+                              DepositAccumulator depositAccumulator,
+                              ApplicationEventPublisher eventPublisher,
+                              PricingEngine pricingEngine,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.reservationRepository = reservationRepository;
+        this.productRepository = productRepository;
+        this.machineSlotRepository = machineSlotRepository;
+        this.userRepository = userRepository;
+        this.securityService = securityService;
+        this.depositAccumulator = depositAccumulator;
+        this.eventPublisher = eventPublisher;
+        this.pricingEngine = pricingEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("vending.reservations.held", Tags.empty(), holds);
+    }
+
+    public ReservationDto reserve(Integer machineId, Integer productId, Integer amount) {
+        Integer userId = securityService.getLoggedUserId();
+        depositAccumulator.flush(userId);
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist"));
+        BigDecimal totalPrice = pricingEngine.totalPrice(product, amount, Instant.now());
+
+        Instant now = Instant.now();
+        Reservation reservation = Reservation.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(userId)
+                .productId(productId)
+                .productName(product.getProductName())
+                .sellerId(product.getSellerId())
+                .machineId(machineId)
+                .amount(amount)
+                .totalPrice(totalPrice)
+                .expiresAt(now.plus(properties.getTtl()))
+                .heldBy(instanceId)
+                .leaseExpiresAt(now.plus(properties.getLease()))
+                .build();
+        transactionTemplate.executeWithoutResult(status -> {
+            takeStock(machineId, productId, amount);
+            // Stock and deposit can sit on different shards, so give the stock back explicitly rather than
+            // relying on the rollback alone.
+            if (userRepository.debit(userId, totalPrice) == 0) {
+                returnStock(machineId, productId, amount);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough funds to complete the order");
+            }
+            reservationRepository.save(reservation);
+        });
+
+        Hold hold = new Hold(reservation, TenantContext.current().orElse(null));
+        holds.put(reservation.getId(), hold);
+        expiries.add(hold);
+        return ReservationDto.of(hold.reservation, ReservationStatus.HELD);
+    }
+
+    public ReservationDto getReservation(String id) {
+        Hold hold = ownedHold(id);
+        return ReservationDto.of(hold.reservation, hold.status.get());
+    }
+
+    /**
+     * Turns the hold into a sale. A hold past its expiry is refused even before the sweep has returned it, whichever
+     * instance is asked.
+     */
+    public BuyResponseDto commit(String id) {
+        Hold hold = ownedHold(id);
+        if (!hold.reservation.getExpiresAt().isAfter(Instant.now()) || !hold.settle(ReservationStatus.COMMITTED)) {
+            throw noLongerHeld();
+        }
+
+        Reservation reservation = hold.reservation;
+        Product product = Product.builder()
+                .id(reservation.getProductId())
+                .productName(reservation.getProductName())
+                .sellerId(reservation.getSellerId())
+                .build();
+        Optional<BuyResponseDto> response;
+        try {
+            response = transactionTemplate.execute(status -> {
+                if (reservationRepository.settleUnexpired(id, Instant.now()) == 0) {
+                    return Optional.empty();
+                }
+                eventPublisher.publishEvent(SaleEvent.of(product, reservation.getMachineId(),
+                        reservation.getUserId(), reservation.getAmount(), reservation.getTotalPrice(), Instant.now()));
+                User user = depositAccumulator.withPending(userRepository.findById(reservation.getUserId())
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")));
+                return Optional.of(BuyResponseDto.of(product, reservation.getAmount(), reservation.getTotalPrice(),
+                        user.getDeposit()));
+            });
+        } catch (RuntimeException e) {
+            reopen(hold);
+            throw e;
+        }
+        holds.remove(id);
+        if (response.isEmpty()) {
+            throw noLongerHeld();
+        }
+        count(ReservationStatus.COMMITTED);
+        return response.get();
+    }
+
+    public ReservationDto cancel(String id) {
+        Hold hold = ownedHold(id);
+        if (!hold.settle(ReservationStatus.CANCELLED)) {
+            throw noLongerHeld();
+        }
+        boolean released;
+        try {
+            released = release(hold);
+        } catch (RuntimeException e) {
+            reopen(hold);
+            throw e;
+        }
+        holds.remove(id);
+        if (!released) {
+            throw noLongerHeld();
+        }
+        count(ReservationStatus.CANCELLED);
+        return ReservationDto.of(hold.reservation, ReservationStatus.CANCELLED);
+    }
+
+    @Scheduled(fixedDelayString = "${vending.reservation.sweep-interval-ms:250}")
+    public void expire() {
+        List<Hold> retry = new ArrayList<>();
+        for (Hold hold = expiries.poll(); hold != null; hold = expiries.poll()) {
+            if (!hold.settle(ReservationStatus.EXPIRED)) {
+                continue;
+            }
+            try {
+                if (release(hold)) {
+                    count(ReservationStatus.EXPIRED);
+                }
+                holds.remove(hold.reservation.getId());
+            } catch (RuntimeException e) {
+                log.warn("Could not release expired reservation {}, retrying next sweep", hold.reservation.getId(), e);
+                hold.reopen();
+                retry.add(hold);
+            }
+        }
+        expiries.addAll(retry);
+    }
+
+    /**
+     * Renews the lease on this instance's holds and adopts the holds whose lease has run out. On shutdown the leases
+     * are given up instead, so the holds are adopted on the next start rather than after the lease runs out.
+     */
+    @Scheduled(fixedDelayString = "${vending.reservation.lease-renew-interval-ms:1000}")
+    public void renewLeases() {
+        TenantContext.forEachTenant(() -> {
+            transactionTemplate.executeWithoutResult(status ->
+                    reservationRepository.renewLeases(instanceId, Instant.now().plus(properties.getLease())));
+            adoptLapsedHolds();
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        TenantContext.forEachTenant(this::adoptLapsedHolds);
+        if (!holds.isEmpty()) {
+            log.info("Restored {} open reservations", holds.size());
+        }
+    }
+
+    @PreDestroy
+    public void releaseLeases() {
+        TenantContext.forEachTenant(() -> transactionTemplate.executeWithoutResult(status ->
+                reservationRepository.renewLeases(instanceId, Instant.now())));
+    }
+
+    private void adoptLapsedHolds() {
+        String tenant = TenantContext.current().orElse(null);
+        Instant now = Instant.now();
+        for (Reservation reservation : reservationRepository.findAllByLeaseExpiresAtBefore(now)) {
+            Instant until = now.plus(properties.getLease());
+            Integer claimed = transactionTemplate.execute(status ->
+                    reservationRepository.claim(reservation.getId(), instanceId, now, until));
+            if (claimed != null && claimed == 1) {
+                reservation.setHeldBy(instanceId);
+                reservation.setLeaseExpiresAt(until);
+                Hold hold = new Hold(reservation, tenant);
+                holds.put(reservation.getId(), hold);
+                expiries.add(hold);
+            }
+        }
+    }
+
+    private void takeStock(Integer machineId, Integer productId, Integer amount) {
+        if (machineId == null) {
+            if (productRepository.takeStock(productId, amount) == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+            }
+        } else if (machineSlotRepository.dispense(machineId, productId, amount) == 0) {
+            if (machineSlotRepository.findByMachineIdAndProductId(machineId, productId).isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product is not stocked in this machine");
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+        }
+    }
+
+    private void returnStock(Integer machineId, Integer productId, Integer amount) {
+        if (machineId == null) {
+            productRepository.returnStock(productId, amount);
+        } else {
+            machineSlotRepository.returnStock(machineId, productId, amount);
+        }
+    }
+
+    /**
+     * @return false if the hold had already been settled elsewhere, in which case nothing is put back
+     */
+    private boolean release(Hold hold) {
+        Reservation reservation = hold.reservation;
+        return TenantContext.callAs(hold.tenant, () -> transactionTemplate.execute(status -> {
+            if (reservationRepository.settle(reservation.getId()) == 0) {
+                return false;
+            }
+            returnStock(reservation.getMachineId(), reservation.getProductId(), reservation.getAmount());
+            userRepository.addToDeposit(reservation.getUserId(), reservation.getTotalPrice());
+            return true;
+        }));
+    }
+
+    /**
+     * Puts a hold whose settling failed back in play. The sweep may have dropped it in the meantime, so it is queued
+     * again; a hold queued twice is only settled once.
+     */
+    private void reopen(Hold hold) {
+        hold.reopen();
+        expiries.add(hold);
+    }
+
+    private Hold ownedHold(String id) {
+        String tenant = TenantContext.current().orElse(null);
+        Hold hold = holds.get(id);
+        if (hold == null || !Objects.equals(hold.tenant, tenant)) {
+            hold = reservationRepository.findById(id)
+                    .map(reservation -> new Hold(reservation, tenant))
+                    .orElse(null);
+        }
+        if (hold == null || !hold.reservation.getUserId().equals(securityService.getLoggedUserId())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Reservation does not exist");
+        }
+        return hold;
+    }
+
+    private void count(ReservationStatus outcome) {
+        meterRegistry.counter("vending.reservations.settled", "outcome", outcome.name().toLowerCase()).increment();
+    }
+
+    private static ResponseStatusException noLongerHeld() {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Reservation is no longer held");
+    }
+
+    private static class Hold implements Delayed {
+
+        private final Reservation reservation;
+        private final String tenant;
+        private final AtomicReference<ReservationStatus> status = new AtomicReference<>(ReservationStatus.HELD);
+
+        Hold(Reservation reservation, String tenant) {
+            this.reservation = reservation;
+            this.tenant = tenant;
+        }
+
+        /**
+         * Commit, cancel and expiry race for the same hold; only the first one to settle it gets to act on it.
+         */
+        boolean settle(ReservationStatus outcome) {
+            return status.compareAndSet(ReservationStatus.HELD, outcome);
+        }
+
+        void reopen() {
+            status.set(ReservationStatus.HELD);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(reservation.getExpiresAt().toEpochMilli() - System.currentTimeMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return reservation.getExpiresAt().compareTo(((Hold) other).reservation.getExpiresAt());
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.config.RestockProperties;
+import com.adrianr.vending.domain.MachineSlot;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.RestockAlert;
+import com.adrianr.vending.repository.MachineSlotRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.RestockAlertRepository;
+import com.adrianr.vending.tenancy.TenantContext;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watches stock after buys and queues restock work for sellers.
+ * <p>
+ * A committed buy only marks its product (or machine slot) as dirty, so repeated buys of the same item between two
+ * checks collapse into one. The scheduled check reads the current stock of each dirty item and queues an alert
+ * when it is at or below the threshold and the item has no alert queued yet. Alerts stay in the table until the
+ * seller acknowledges them. Sellers can poll their queue, or stream it and get each check's new alerts as one batch.
+ * <p>
+ * Every node checks the items its own buys dirtied. In cluster mode each batch goes out on a Hazelcast topic, so a
+ * seller streaming from one node also gets the alerts raised on the others.
+ */
+@Slf4j
+@Service
+public class RestockService {
+
+    private static final String EVENT_NAME = "restock";
+    static final String TOPIC_NAME = "restock-alerts";
+
+    private final RestockProperties properties;
+    private final RestockAlertRepository restockAlertRepository;
+    private final ProductRepository productRepository;
+    private final MachineSlotRepository machineSlotRepository;
+    private final SecurityService securityService;
+    private final Set<StockKey> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<SellerKey, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Optional<ITopic<Batch>> topic;
+
+    public RestockService(RestockProperties properties,
+                          RestockAlertRepository restockAlertRepository,
+                          ProductRepository productRepository,
+                          MachineSlotRepository machineSlotRepository,
+                          SecurityService securityService,
+                          Optional<HazelcastInstance> hazelcastInstance) {
+        this.properties = properties;
+        this.restockAlertRepository = restockAlertRepository;
+        this.productRepository = productRepository;
+        this.machineSlotRepository = machineSlotRepository;
+        this.securityService = securityService;
+        this.topic = hazelcastInstance.map(hazelcast -> hazelcast.<Batch>getTopic(TOPIC_NAME));
+        this.topic.ifPresent(batches -> batches.addMessageListener(message -> deliver(message.getMessageObject())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSale(SaleEvent event) {
+        if (properties.isEnabled()) {
+            dirty.add(new StockKey(event.getTenant(), event.getProductId(), event.getMachineId()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${vending.restock.check-interval-ms:1000}")
+    public void check() {
+        Map<SellerKey, List<RestockAlert>> raised = new HashMap<>();
+        for (Iterator<StockKey> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            StockKey key = iterator.next();
+            iterator.remove();
+            try {
+                TenantContext.callAs(key.tenant, () -> checkStock(key)).ifPresent(alert -> raised
+                        .computeIfAbsent(new SellerKey(key.tenant, alert.getSellerId()), seller -> new ArrayList<>())
+                        .add(alert));
+            } catch (RuntimeException e) {
+                log.warn("Could not check stock of product {} in machine {}", key.productId, key.machineId, e);
+            }
+        }
+        raised.forEach((seller, alerts) -> publish(new Batch(seller, alerts)));
+    }
+
+    @Transactional(readOnly = true)
+    public List<RestockAlert> getMyQueue(Integer after) {
+        return restockAlertRepository.findAllBySellerIdAndIdGreaterThanOrderById(securityService.getLoggedUserId(),
+                after);
+    }
+
+    @Transactional
+    public void acknowledge(Integer id) {
+        if (restockAlertRepository.deleteByIdAndSellerId(id, securityService.getLoggedUserId()) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Restock alert does not exist");
+        }
+    }
+
+    /**
+     * Opens a stream that starts with the seller's current queue, if any, followed by each later batch.
+     */
+    public SseEmitter subscribe() {
+        Integer sellerId = securityService.getLoggedUserId();
+        List<RestockAlert> queued = getMyQueue(0);
+
+        SseEmitter emitter = new SseEmitter(properties.getStreamTimeout().toMillis());
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(
+                new SellerKey(TenantContext.current().orElse(null), sellerId), seller -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        if (!queued.isEmpty()) {
+            send(emitter, queued);
+        }
+        return emitter;
+    }
+
+    private Optional<RestockAlert> checkStock(StockKey key) {
+        Optional<Product> product = productRepository.findById(key.productId);
+        if (product.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<Integer> available = key.machineId == null
+                ? Optional.of(product.get().getAmountAvailable())
+                : machineSlotRepository.findByMachineIdAndProductId(key.machineId, key.productId)
+                        .map(MachineSlot::getAmountAvailable);
+        if (available.isEmpty() || available.get() > properties.getThreshold()
+                || restockAlertRepository.existsByProductIdAndMachineId(key.productId, key.machineId)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(restockAlertRepository.save(RestockAlert.builder()
+                .sellerId(product.get().getSellerId())
+                .productId(key.productId)
+                .machineId(key.machineId)
+                .amountAvailable(available.get())
+                .createdAt(Instant.now())
+                .build()));
+    }
+
+    private void publish(Batch batch) {
+        if (topic.isPresent()) {
+            topic.get().publish(batch);
+        } else {
+            deliver(batch);
+        }
+    }
+
+    private void deliver(Batch batch) {
+        subscribers.getOrDefault(batch.seller, List.of()).forEach(emitter -> send(emitter, batch.alerts));
+    }
+
+    private void send(SseEmitter emitter, List<RestockAlert> alerts) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(alerts));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class StockKey {
+
+        private final String tenant;
+        private final Integer productId;
+        private final Integer machineId;
+
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class SellerKey implements Serializable {
+
+        private final String tenant;
+        private final Integer sellerId;
+
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class Batch implements Serializable {
+
+        private final SellerKey seller;
+        private final List<RestockAlert> alerts;
+
+    }
+
+}
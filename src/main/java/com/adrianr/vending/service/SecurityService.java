@@ -19,12 +19,30 @@ public class SecurityService {
     }
 
     public Integer getLoggedUserId() {
-        log.info("Request from {}", getPrincipalUsername());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (log.isDebugEnabled()) {
+            log.debug("Request from {}", getPrincipalUsername());
+        }
+        if (principal instanceof VendingPrincipal) {
+            return ((VendingPrincipal) principal).getId();
+        }
+
         return userRepository.findByUsername(getPrincipalUsername())
                 .map(User::getId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
     }
 
+    /**
+     * Whether the caller presented a bearer token rather than their password.
+     */
+    public boolean isTokenAuthenticated() {
+        return SecurityContextHolder.getContext().getAuthentication().getPrincipal() instanceof VendingPrincipal;
+    }
+
+    public String getLoggedUsername() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
     private String getPrincipalUsername() {
         return ((org.springframework.security.core.userdetails.User)
                 SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
@@ -0,0 +1,83 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.SellerSalesStripe;
+import com.adrianr.vending.domain.SellerSummary;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.SellerSalesStripeRepository;
+import com.adrianr.vending.repository.SellerSummaryRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serves the logged in seller's own view. Every seller gets a summary row and a set of sales stripes when they sign
+ * up. Sales are added to one random stripe inside the buy's own transaction, so the figures are exactly as consistent
+ * as the stock and deposit they sit next to, while concurrent buys from one seller mostly lock different rows.
+ */
+@Service
+public class SellerDashboardService {
+
+    private final ProductRepository productRepository;
+    private final SellerSummaryRepository sellerSummaryRepository;
+    private final SellerSalesStripeRepository sellerSalesStripeRepository;
+    private final SecurityService securityService;
+
+    public SellerDashboardService(ProductRepository productRepository,
+                                  SellerSummaryRepository sellerSummaryRepository,
+                                  SellerSalesStripeRepository sellerSalesStripeRepository,
+                                  SecurityService securityService) {
+        this.productRepository = productRepository;
+        this.sellerSummaryRepository = sellerSummaryRepository;
+        this.sellerSalesStripeRepository = sellerSalesStripeRepository;
+        this.securityService = securityService;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Product> getMyProducts() {
+        return productRepository.findAllBySellerId(securityService.getLoggedUserId());
+    }
+
+    @Transactional(readOnly = true)
+    public SellerSummary getMySummary() {
+        return getSummary(securityService.getLoggedUserId());
+    }
+
+    @Transactional(readOnly = true)
+    public SellerSummary getSummary(Integer sellerId) {
+        SellerSummary summary = sellerSummaryRepository.findById(sellerId)
+                .orElseGet(() -> SellerSummary.empty(sellerId));
+        long unitsSold = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+        long sales = 0;
+        for (SellerSalesStripe stripe : sellerSalesStripeRepository.findAllBySellerId(sellerId)) {
+            unitsSold += stripe.getUnitsSold();
+            revenue = revenue.add(stripe.getRevenue());
+            sales += stripe.getSales();
+        }
+        summary.setUnitsSold(unitsSold);
+        summary.setRevenue(revenue);
+        summary.setSales(sales);
+        return summary;
+    }
+
+    /**
+     * A seller without the drawn stripe, such as one seeded straight into the database, falls back to stripe 0.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onSale(SaleEvent event) {
+        Long units = event.getAmount().longValue();
+        int stripe = ThreadLocalRandom.current().nextInt(SellerSalesStripe.STRIPES);
+        if (sellerSalesStripeRepository.recordSale(event.getSellerId(), stripe, units, event.getRevenue()) == 0
+                && stripe != 0) {
+            sellerSalesStripeRepository.recordSale(event.getSellerId(), 0, units, event.getRevenue());
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.config.TokenProperties;
+import com.adrianr.vending.tenancy.TenantContext;
+import com.hazelcast.core.HazelcastInstance;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Users whose tokens issued up to a point in time are no longer accepted. In cluster mode the list is a map shared by
+ * every node, so a user deleted on one node cannot keep using a token on another.
+ */
+@Service
+public class TokenRevocationList {
+
+    static final String MAP_NAME = "token-revocations";
+
+    private final TokenProperties properties;
+    private final ConcurrentMap<RevokedUser, Instant> revokedUsers;
+
+    public TokenRevocationList(TokenProperties properties, Optional<HazelcastInstance> hazelcastInstance) {
+        this.properties = properties;
+        this.revokedUsers = hazelcastInstance.<ConcurrentMap<RevokedUser, Instant>>map(
+                hazelcast -> hazelcast.getMap(MAP_NAME)).orElseGet(ConcurrentHashMap::new);
+    }
+
+    public void revokeUser(Integer userId) {
+        revokedUsers.put(RevokedUser.of(userId), Instant.now());
+    }
+
+    public boolean isRevoked(Integer userId, Instant issuedAt) {
+        Instant revokedAt = revokedUsers.get(RevokedUser.of(userId));
+        return revokedAt != null && !issuedAt.isAfter(revokedAt);
+    }
+
+    @Scheduled(fixedDelayString = "${vending.auth.token.revocation-eviction-interval-ms:60000}")
+    public void evictExpired() {
+        Instant oldestLiveToken = Instant.now().minus(properties.getTtl());
+        revokedUsers.forEach((user, revokedAt) -> {
+            if (revokedAt.isBefore(oldestLiveToken)) {
+                revokedUsers.remove(user, revokedAt);
+            }
+        });
+    }
+
+    /**
+     * User ids repeat across tenants, so a revocation only applies within the tenant it was made in.
+     */
+    @Data
+    @AllArgsConstructor
+    private static class RevokedUser implements Serializable {
+
+        private final String tenant;
+        private final Integer userId;
+
+        static RevokedUser of(Integer userId) {
+            return new RevokedUser(TenantContext.current().orElse(null), userId);
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.config.TokenProperties;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.tenancy.TenantContext;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Issues and verifies compact HS256 JWTs carrying the user id and role, and the tenant when there is one, so bearer
+ * requests are authenticated with one HMAC and no database access. A token is only accepted for the tenant it was
+ * issued under.
+ */
+@Slf4j
+@Service
+public class TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String HEADER = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final TokenProperties properties;
+    private final TokenRevocationList revocationList;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    @Autowired
+    public TokenService(TokenProperties properties, TokenRevocationList revocationList, ObjectMapper objectMapper) {
+        this(properties, revocationList, objectMapper, Clock.systemUTC());
+    }
+
+    TokenService(TokenProperties properties, TokenRevocationList revocationList, ObjectMapper objectMapper, Clock clock) {
+        this.properties = properties;
+        this.revocationList = revocationList;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.key = new SecretKeySpec(secret(properties), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public String issue(User user) {
+        Instant now = clock.instant();
+
+        ObjectNode claims = objectMapper.createObjectNode()
+                .put("iss", properties.getIssuer())
+                .put("sub", user.getUsername())
+                .put("uid", user.getId())
+                .put("role", user.getRole().getName())
+                .put("iat", now.getEpochSecond())
+                .put("exp", now.plus(properties.getTtl()).getEpochSecond());
+        TenantContext.current().ifPresent(tenant -> claims.put("tid", tenant));
+
+        String unsigned = HEADER + "." + encode(toBytes(claims));
+        return unsigned + "." + encode(sign(unsigned));
+    }
+
+    public Optional<VendingPrincipal> verify(String token) {
+        return verify(token, clock.instant(), false);
+    }
+
+    /**
+     * Verifies a token as of {@code at}, which must fall between its issue and its expiry. Used for transactions a
+     * machine recorded while offline, which are only synced after the buyer's token may have expired.
+     */
+    public Optional<VendingPrincipal> verifyAt(String token, Instant at) {
+        return verify(token, at, true);
+    }
+
+    private Optional<VendingPrincipal> verify(String token, Instant at, boolean issuedBeforeAt) {
+        int payloadStart = token.indexOf('.');
+        int signatureStart = token.lastIndexOf('.');
+        if (payloadStart < 0 || signatureStart <= payloadStart
+                || !HEADER.equals(token.substring(0, payloadStart))) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+            if (!MessageDigest.isEqual(signature, sign(token.substring(0, signatureStart)))) {
+                return Optional.empty();
+            }
+
+            JsonNode claims = objectMapper.readTree(
+                    Base64.getUrlDecoder().decode(token.substring(payloadStart + 1, signatureStart)));
+            Integer userId = claims.path("uid").asInt();
+            Instant issuedAt = Instant.ofEpochSecond(claims.path("iat").asLong());
+
+            if (!properties.getIssuer().equals(claims.path("iss").asText())
+                    || at.getEpochSecond() >= claims.path("exp").asLong()
+                    || issuedBeforeAt && at.isBefore(issuedAt)
+                    || !Objects.equals(TenantContext.current().orElse(null), claims.path("tid").textValue())
+                    || revocationList.isRevoked(userId, issuedAt)) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new VendingPrincipal(userId, claims.path("sub").asText(),
+                    AuthorityUtils.createAuthorityList("ROLE_" + claims.path("role").asText())));
+        } catch (IllegalArgumentException | IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public long getTtlSeconds() {
+        return properties.getTtl().toSeconds();
+    }
+
+    private byte[] sign(String unsigned) {
+        return macs.get().doFinal(unsigned.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] toBytes(JsonNode claims) {
+        try {
+            return objectMapper.writeValueAsBytes(claims);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] secret(TokenProperties properties) {
+        if (properties.getSecret() != null) {
+            return properties.getSecret().getBytes(StandardCharsets.UTF_8);
+        }
+
+        log.warn("No vending.auth.token.secret configured, tokens will not survive a restart");
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+}
@@ -1,17 +1,28 @@
 package com.adrianr.vending.service;
 
+import com.adrianr.vending.domain.SellerSalesStripe;
+import com.adrianr.vending.domain.SellerSummary;
 import com.adrianr.vending.domain.User;
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.repository.CatalogueChangeRepository;
 import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.SellerSalesStripeRepository;
+import com.adrianr.vending.repository.SellerSummaryRepository;
 import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.sharding.ShardRouter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.Objects.nonNull;
 
@@ -21,28 +32,58 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final CatalogueChangeRepository catalogueChangeRepository;
+    private final SellerSummaryRepository sellerSummaryRepository;
+    private final SellerSalesStripeRepository sellerSalesStripeRepository;
     private final PasswordEncoder passwordEncoder;
     private final SecurityService securityService;
+    private final TokenRevocationList tokenRevocationList;
+    private final DepositAccumulator depositAccumulator;
+    private final Optional<UserCache> userCache;
+    private final Optional<ProductCache> productCache;
+    private final Optional<ShardRouter> shardRouter;
 
     public UserService(UserRepository userRepository,
                        ProductRepository productRepository,
+                       CatalogueChangeRepository catalogueChangeRepository,
+                       SellerSummaryRepository sellerSummaryRepository,
+                       SellerSalesStripeRepository sellerSalesStripeRepository,
                        PasswordEncoder passwordEncoder,
-                       SecurityService securityService) {
+                       SecurityService securityService,
+                       TokenRevocationList tokenRevocationList,
+                       DepositAccumulator depositAccumulator,
+                       Optional<UserCache> userCache,
+                       Optional<ProductCache> productCache,
+                       Optional<ShardRouter> shardRouter) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
+        this.catalogueChangeRepository = catalogueChangeRepository;
+        this.sellerSummaryRepository = sellerSummaryRepository;
+        this.sellerSalesStripeRepository = sellerSalesStripeRepository;
         this.passwordEncoder = passwordEncoder;
         this.securityService = securityService;
+        this.tokenRevocationList = tokenRevocationList;
+        this.depositAccumulator = depositAccumulator;
+        this.userCache = userCache;
+        this.productCache = productCache;
+        this.shardRouter = shardRouter;
     }
 
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        return userRepository.findAll().stream()
+                .map(depositAccumulator::withPending)
+                .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public User getUserById(Integer id) {
         return userRepository.findById(id)
+                .map(depositAccumulator::withPending)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
     }
 
+    @Transactional
     public User createUser(User user) {
         if (userRepository.findByUsername(user.getUsername().toLowerCase()).isPresent()) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Username already exists");
@@ -52,9 +93,17 @@ public class UserService {
         user.setUsername(user.getUsername().toLowerCase());
         user.setPassword(passwordEncoder.encode(user.getPassword()));
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        if (saved.getRole() == UserRole.SELLER) {
+            sellerSummaryRepository.save(SellerSummary.empty(saved.getId()));
+            sellerSalesStripeRepository.saveAll(IntStream.range(0, SellerSalesStripe.STRIPES)
+                    .mapToObj(stripe -> SellerSalesStripe.empty(saved.getId(), stripe))
+                    .collect(Collectors.toList()));
+        }
+        return saved;
     }
 
+    @Transactional
     public User updateUser(String username, String password) {
         Optional<User> userByUsername = userRepository.findByUsername(username);
         if (userByUsername.isPresent() && !userByUsername.get().getId().equals(securityService.getLoggedUserId())) {
@@ -62,19 +111,51 @@ public class UserService {
         }
 
         User user = userRepository.getById(securityService.getLoggedUserId());
+        String previousUsername = securityService.getLoggedUsername();
+        userCache.ifPresent(cache -> {
+            cache.removeUserFromCache(previousUsername);
+            cache.removeUserFromCache(username.toLowerCase());
+        });
         user.setUsername(username.toLowerCase());
 
         if (nonNull(password)) {
             user.setPassword(passwordEncoder.encode(user.getPassword()));
         }
 
-        return userRepository.save(user);
+        return depositAccumulator.withPending(userRepository.save(user));
     }
 
+    /**
+     * With sharding on, the user and their products are deleted together on the user's shard as the last step. A
+     * failure up to and including it rolls everything back; only a failed commit of the directory shard afterwards can
+     * leave summary rows of a user who no longer exists.
+     */
+    @Transactional
     public void deleteUser() {
         Integer loggedUserId = securityService.getLoggedUserId();
 
-        productRepository.deleteAllBySellerId(loggedUserId);
-        userRepository.deleteById(loggedUserId);
+        productRepository.findAllBySellerId(loggedUserId).forEach(product -> {
+            productCache.ifPresent(cache -> cache.evict(product.getId()));
+            catalogueChangeRepository.record(product.getId());
+        });
+        sellerSummaryRepository.deleteAllBySellerId(loggedUserId);
+        sellerSalesStripeRepository.deleteAllBySellerId(loggedUserId);
+        onUserShard(loggedUserId, () -> {
+            productRepository.deleteAllBySellerId(loggedUserId);
+            userRepository.deleteById(loggedUserId);
+        });
+        tokenRevocationList.revokeUser(loggedUserId);
+        userCache.ifPresent(cache -> cache.removeUserFromCache(securityService.getLoggedUsername()));
+    }
+
+    private void onUserShard(Integer userId, Runnable action) {
+        if (shardRouter.isEmpty()) {
+            action.run();
+            return;
+        }
+        shardRouter.get().onShard(shardRouter.get().shardForUser(userId), () -> {
+            action.run();
+            return null;
+        });
     }
 }
@@ -0,0 +1,21 @@
+package com.adrianr.vending.service;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class VendingPrincipal extends User {
+
+    private final Integer id;
+
+    public VendingPrincipal(Integer id, String username, Collection<? extends GrantedAuthority> authorities) {
+        super(username, "", authorities);
+        this.id = id;
+    }
+
+}
@@ -1,97 +1,239 @@
 package com.adrianr.vending.service;
 
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.domain.MachineCoin;
+import com.adrianr.vending.domain.MachineSlot;
 import com.adrianr.vending.domain.Product;
 import com.adrianr.vending.domain.User;
+import com.adrianr.vending.pricing.PricingEngine;
+import com.adrianr.vending.repository.MachineCoinRepository;
+import com.adrianr.vending.repository.MachineSlotRepository;
 import com.adrianr.vending.repository.ProductRepository;
 import com.adrianr.vending.repository.UserRepository;
 import com.adrianr.vending.rest.dto.BuyResponseDto;
+import com.adrianr.vending.rest.dto.ChangeDto;
+import com.adrianr.vending.sharding.ShardedBuySaga;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static java.util.Arrays.asList;
 
 @Service
 public class VendingService {
 
-    private final List<Integer> availableCoins = asList(100, 50, 20, 10 ,5);
+    static final List<Integer> AVAILABLE_COINS = asList(100, 50, 20, 10 ,5);
 
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final MachineSlotRepository machineSlotRepository;
+    private final MachineCoinRepository machineCoinRepository;
     private final SecurityService securityService;
+    private final DepositAccumulator depositAccumulator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PricingEngine pricingEngine;
+    private final Optional<ShardedBuySaga> shardedBuySaga;
+    private final TransactionTemplate transactionTemplate;
 
     public VendingService(UserRepository userRepository,
                           ProductRepository productRepository,
-                          SecurityService securityService) {
+                          MachineSlotRepository machineSlotRepository,
+                          MachineCoinRepository machineCoinRepository,
+                          SecurityService securityService,
+                          DepositAccumulator depositAccumulator,
+                          ApplicationEventPublisher eventPublisher,
+                          PricingEngine pricingEngine,
+                          Optional<ShardedBuySaga> shardedBuySaga,
+                          PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
+        this.machineSlotRepository = machineSlotRepository;
+        this.machineCoinRepository = machineCoinRepository;
         this.securityService = securityService;
+        this.depositAccumulator = depositAccumulator;
+        this.eventPublisher = eventPublisher;
+        this.pricingEngine = pricingEngine;
+        this.shardedBuySaga = shardedBuySaga;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
+    @Transactional
     public User deposit(Integer amount) {
-        User user = userRepository.getById(securityService.getLoggedUserId());
-
-        user.setDeposit(user.getDeposit().add(BigDecimal.valueOf(amount)));
+        if (depositAccumulator.isEnabled()) {
+            Integer userId = securityService.getLoggedUserId();
+            depositAccumulator.add(userId, amount);
+            return depositAccumulator.withPending(userRepository.getById(userId));
+        }
 
-        return userRepository.save(user);
+        Integer userId = securityService.getLoggedUserId();
+        userRepository.addToDeposit(userId, BigDecimal.valueOf(amount));
+        return userRepository.getById(userId);
     }
 
     public BuyResponseDto buy(Integer productId, Integer amount) {
-        var productOptional = productRepository.findById(productId);
-        if (productOptional.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist");
-        }
-        Product product = productOptional.get();
-
-        if (product.getAmountAvailable() < amount) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
-        }
+        Integer userId = securityService.getLoggedUserId();
+        depositAccumulator.flush(userId);
+        return transactionTemplate.execute(status -> {
+            if (shardedBuySaga.isPresent()) {
+                return shardedBuySaga.get().buy(userId, productId, amount);
+            }
+
+            var productOptional = productRepository.findById(productId);
+            if (productOptional.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist");
+            }
+            Product product = productOptional.get();
+
+            if (product.getAmountAvailable() < amount) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+            }
+
+            BigDecimal totalAmount = pricingEngine.totalPrice(product, amount, Instant.now());
+            debit(userId, totalAmount);
+            if (productRepository.takeStock(productId, amount) == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+            }
+
+            User user = userRepository.getById(userId);
+            eventPublisher.publishEvent(SaleEvent.of(product, null, user.getId(), amount, totalAmount,
+                    Instant.now()));
+            return BuyResponseDto.of(product, amount, totalAmount, user.getDeposit());
+        });
+    }
 
-        User user = userRepository.getById(securityService.getLoggedUserId());
-        BigDecimal totalAmount = product.getCost().multiply(BigDecimal.valueOf(amount));
+    /**
+     * Pays the deposit back in coins. A remainder no coin covers stays on the user's deposit and is reported as the new
+     * deposit.
+     */
+    public ChangeDto reset() {
+        Integer userId = securityService.getLoggedUserId();
+        depositAccumulator.flush(userId);
+        return transactionTemplate.execute(status -> {
+            // Pays out the balance as read, in coins, and leaves anything deposited since then along with a remainder
+            // no coin covers. If a buy spent part of it in between, the debit misses and the balance is read again.
+            Map<Integer, Integer> change;
+            BigDecimal paidOut;
+            do {
+                change = calculateUserChange(userRepository.getById(userId).getDeposit());
+                paidOut = change.entrySet().stream()
+                        .map(coin -> BigDecimal.valueOf((long) coin.getKey() * coin.getValue()))
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+            } while (paidOut.signum() > 0 && userRepository.debit(userId, paidOut) == 0);
+
+            return ChangeDto.builder()
+                    .newDeposit(userRepository.getById(userId).getDeposit().intValue())
+                    .change(change)
+                    .build();
+        });
+    }
 
-        if (user.getDeposit().compareTo(totalAmount) < 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough funds to complete the order");
+    @Transactional
+    public User deposit(Integer machineId, Integer amount) {
+        if (machineCoinRepository.insertCoin(machineId, amount) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Machine id does not exist");
         }
 
-        product.setAmountAvailable(product.getAmountAvailable() - amount);
-        productRepository.save(product);
-
-        user.setDeposit(user.getDeposit().subtract(totalAmount));
-        userRepository.save(user);
-
-        return BuyResponseDto.builder()
-                .productName(product.getProductName())
-                .amount(amount)
-                .totalPrice(totalAmount)
-                .change(user.getDeposit()
-                        .divide(BigDecimal.valueOf(5), RoundingMode.DOWN)
-                        .setScale(0, RoundingMode.DOWN)
-                        .multiply(BigDecimal.valueOf(5)).intValue())
-                .build();
+        return deposit(amount);
     }
 
-    public Map<Integer, Integer> reset() {
-        User user = userRepository.getById(securityService.getLoggedUserId());
-
-        var change = calculateUserChange(user);
-        user.setDeposit(BigDecimal.ZERO);
-        userRepository.save(user);
+    /**
+     * Buys from a single machine's slot. Only the machine's slot row and the buyer's row are written, the global
+     * product row is just read for its name and cost.
+     */
+    public BuyResponseDto buy(Integer machineId, Integer productId, Integer amount) {
+        Integer userId = securityService.getLoggedUserId();
+        depositAccumulator.flush(userId);
+        return transactionTemplate.execute(status -> {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist"));
+
+            MachineSlot slot = machineSlotRepository.findByMachineIdAndProductId(machineId, productId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Product is not stocked in this machine"));
+            if (slot.getAmountAvailable() < amount) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+            }
+
+            BigDecimal totalAmount = pricingEngine.totalPrice(product, amount, Instant.now());
+            debit(userId, totalAmount);
+            if (machineSlotRepository.dispense(machineId, productId, amount) == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+            }
+
+            User user = userRepository.getById(userId);
+
+            eventPublisher.publishEvent(SaleEvent.of(product, machineId, user.getId(), amount, totalAmount,
+                    Instant.now()));
+            return BuyResponseDto.of(product, amount, totalAmount, user.getDeposit());
+        });
+    }
 
-        return change;
+    /**
+     * Pays the deposit back from the machine's coin float. Whatever the float cannot cover stays on the user's
+     * deposit and is reported as the new deposit.
+     */
+    public ChangeDto reset(Integer machineId) {
+        Integer userId = securityService.getLoggedUserId();
+        depositAccumulator.flush(userId);
+        return transactionTemplate.execute(status -> {
+            List<MachineCoin> coins = machineCoinRepository.lockAllByMachineId(machineId);
+            if (coins.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Machine id does not exist");
+            }
+
+            Map<Integer, Integer> change;
+            BigDecimal paidOut;
+            do {
+                BigDecimal deposit = userRepository.getById(userId).getDeposit();
+                change = new HashMap<>();
+                paidOut = BigDecimal.ZERO;
+                for (MachineCoin coin : coins) {
+                    BigDecimal coinValue = BigDecimal.valueOf(coin.getCoin());
+                    int count = Math.min(coin.getQuantity(), deposit.subtract(paidOut)
+                            .divide(coinValue, 0, RoundingMode.DOWN).intValue());
+                    change.put(coin.getCoin(), count);
+                    paidOut = paidOut.add(coinValue.multiply(BigDecimal.valueOf(count)));
+                }
+            } while (paidOut.signum() > 0 && userRepository.debit(userId, paidOut) == 0);
+
+            for (MachineCoin coin : coins) {
+                coin.setQuantity(coin.getQuantity() - change.get(coin.getCoin()));
+            }
+            machineCoinRepository.saveAll(coins);
+
+            return ChangeDto.builder()
+                    .newDeposit(userRepository.getById(userId).getDeposit().intValue())
+                    .change(change)
+                    .build();
+        });
     }
 
-    private Map<Integer, Integer> calculateUserChange(User user) {
-        BigDecimal deposit = user.getDeposit();
+    /**
+     * Takes {@code totalAmount} off the buyer's deposit in a single conditional update, so concurrent buys cannot both
+     * spend the same balance. Buys debit before taking stock, so a failed buy only rolls back a write on the buyer's
+     * own row rather than on a stock row every other buyer is contending for.
+     */
+    private void debit(Integer userId, BigDecimal totalAmount) {
+        if (userRepository.debit(userId, totalAmount) == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough funds to complete the order");
+        }
+    }
 
+    private Map<Integer, Integer> calculateUserChange(BigDecimal deposit) {
         Map<Integer, Integer> change = new HashMap<>();
-        for (Integer availableCoin : availableCoins) {
+        for (Integer availableCoin : AVAILABLE_COINS) {
             change.put(availableCoin, deposit.divide(BigDecimal.valueOf(availableCoin), 0, RoundingMode.DOWN).intValue());
             deposit = deposit.remainder(BigDecimal.valueOf(availableCoin));
         }
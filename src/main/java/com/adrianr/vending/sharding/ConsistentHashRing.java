@@ -0,0 +1,64 @@
+package com.adrianr.vending.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable ketama-style ring: every node is placed at {@code virtualNodes} points and a key belongs to the first
+ * point clockwise from its hash, so adding or removing a node only remaps the keys adjacent to its points.
+ */
+public class ConsistentHashRing<N> {
+
+    private final NavigableMap<Long, N> ring = new TreeMap<>();
+    private final List<N> nodes;
+
+    public ConsistentHashRing(Collection<N> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Hash ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Hash ring needs at least one virtual node per node");
+        }
+
+        this.nodes = List.copyOf(nodes);
+        for (N node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public N nodeFor(Object key) {
+        Map.Entry<Long, N> entry = ring.ceilingEntry(hash(String.valueOf(key)));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<N> getNodes() {
+        return nodes;
+    }
+
+    private static long hash(String value) {
+        byte[] digest = md5().digest(value.getBytes(StandardCharsets.UTF_8));
+
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
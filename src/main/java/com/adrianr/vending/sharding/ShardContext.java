@@ -0,0 +1,24 @@
+package com.adrianr.vending.sharding;
+
+import java.util.Optional;
+
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Optional<String> current() {
+        return Optional.ofNullable(CURRENT_SHARD.get());
+    }
+
+    static void set(String shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+
+}
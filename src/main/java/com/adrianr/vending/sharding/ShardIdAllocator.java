@@ -0,0 +1,52 @@
+package com.adrianr.vending.sharding;
+
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+
+/**
+ * Hands out ids that are unique across shards from sequences on the directory shard, so a row's shard can be
+ * derived from its id before it is inserted.
+ */
+public class ShardIdAllocator {
+
+    private static final String USER_SEQUENCE = "SHARD_USER_ID_SEQ";
+    private static final String PRODUCT_SEQUENCE = "SHARD_PRODUCT_ID_SEQ";
+
+    private final JdbcTemplate directory;
+    private final DatabaseDriver databaseDriver;
+
+    public ShardIdAllocator(DataSource directoryDataSource) {
+        this.directory = new JdbcTemplate(directoryDataSource);
+        this.databaseDriver = detectDriver(directoryDataSource);
+    }
+
+    public Integer nextUserId() {
+        return next(USER_SEQUENCE);
+    }
+
+    public Integer nextProductId() {
+        return next(PRODUCT_SEQUENCE);
+    }
+
+    private Integer next(String sequence) {
+        String sql = databaseDriver == DatabaseDriver.POSTGRESQL
+                ? "select nextval('" + sequence + "')"
+                : "select next value for " + sequence;
+
+        return directory.queryForObject(sql, Integer.class);
+    }
+
+    private static DatabaseDriver detectDriver(DataSource dataSource) {
+        try {
+            String url = JdbcUtils.extractDatabaseMetaData(dataSource, metaData -> metaData.getURL());
+            return DatabaseDriver.fromJdbcUrl(url);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Could not detect directory shard database", e);
+        }
+    }
+
+}
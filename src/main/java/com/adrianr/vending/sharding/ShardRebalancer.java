@@ -0,0 +1,146 @@
+package com.adrianr.vending.sharding;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Moves every user, together with the products they sell, to the shard the ring currently assigns them. Rows are
+ * copied to the target before they are deleted from the source, so an interrupted run can simply be repeated.
+ * <p>
+ * Only users and products are sharded. Everything else (seller summaries and sales stripes, machines and their slots,
+ * reservations, price rules, the catalogue change log, the outbox) stays on the directory shard whoever it belongs to,
+ * so there is nothing of it to move. Buy sagas are the exception: they sit on the product's shard and their outcome
+ * on the buyer's, and recovery finds them by where the ring puts those, so a user with a saga still open as buyer or
+ * seller is left where they are until it settles, and picked up by a later run.
+ */
+@Slf4j
+public class ShardRebalancer {
+
+    private final ConsistentHashRing<String> ring;
+    private final ShardRouter shardRouter;
+    private final Map<String, JdbcTemplate> shards = new TreeMap<>();
+    private final Map<String, TransactionTemplate> transactions = new TreeMap<>();
+
+    public ShardRebalancer(ConsistentHashRing<String> ring, ShardRouter shardRouter, Map<String, DataSource> shards) {
+        this.ring = ring;
+        this.shardRouter = shardRouter;
+        shards.forEach((name, dataSource) -> {
+            this.shards.put(name, new JdbcTemplate(dataSource));
+            this.transactions.put(name, new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        });
+    }
+
+    public RebalanceReport rebalance() {
+        int movedUsers = 0;
+        int movedProducts = 0;
+        int deferredUsers = 0;
+
+        for (String source : shards.keySet()) {
+            List<Integer> userIds = shards.get(source).queryForList("select id from users", Integer.class);
+            for (Integer userId : userIds) {
+                String target = ring.nodeFor(userId);
+                if (target.equals(source)) {
+                    continue;
+                }
+                if (hasOpenSagas(userId)) {
+                    log.info("User {} has buy sagas open, leaving them on {} for now", userId, source);
+                    deferredUsers++;
+                    continue;
+                }
+                Optional<Integer> products = move(userId, source, target);
+                if (products.isPresent()) {
+                    movedProducts += products.get();
+                    movedUsers++;
+                }
+            }
+        }
+
+        RebalanceReport report = RebalanceReport.builder()
+                .movedUsers(movedUsers)
+                .movedProducts(movedProducts)
+                .deferredUsers(deferredUsers)
+                .build();
+        log.info("Shard rebalance finished: {}", report);
+        return report;
+    }
+
+    private boolean hasOpenSagas(Integer userId) {
+        return shards.values().stream().anyMatch(shard -> shard.queryForObject(
+                "select count(*) from buy_sagas where buyer_id = ? "
+                        + "or product_id in (select id from products where seller_id = ?)",
+                Integer.class, userId, userId) > 0);
+    }
+
+    /**
+     * Reads the user and their products with row locks in the source transaction that deletes them, so a write
+     * reaching the source rows in between waits for the move instead of being lost with them. Returns the number of
+     * products moved, or nothing when the user was deleted before the lock was taken.
+     */
+    private Optional<Integer> move(Integer userId, String source, String target) {
+        JdbcTemplate from = shards.get(source);
+        JdbcTemplate to = shards.get(target);
+
+        List<Integer> productIds = transactions.get(source).execute(status -> {
+            List<Map<String, Object>> users = from.queryForList(
+                    "select id, username, password, deposit, role from users where id = ? for update", userId);
+            if (users.isEmpty()) {
+                return null;
+            }
+            Map<String, Object> user = users.get(0);
+            List<Map<String, Object>> products = from.queryForList(
+                    "select id, product_name, seller_id, cost, amount_available from products where seller_id = ? "
+                            + "for update", userId);
+
+            transactions.get(target).executeWithoutResult(targetStatus -> {
+                if (to.queryForObject("select count(*) from users where id = ?", Integer.class, userId) == 0) {
+                    to.update("insert into users(id, username, password, deposit, role) values (?, ?, ?, ?, ?)",
+                            user.get("id"), user.get("username"), user.get("password"), user.get("deposit"),
+                            user.get("role"));
+                }
+                for (Map<String, Object> product : products) {
+                    if (to.queryForObject("select count(*) from products where id = ?", Integer.class,
+                            product.get("id")) == 0) {
+                        to.update("insert into products(id, product_name, seller_id, cost, amount_available) "
+                                        + "values (?, ?, ?, ?, ?)",
+                                product.get("id"), product.get("product_name"), product.get("seller_id"),
+                                product.get("cost"), product.get("amount_available"));
+                    }
+                }
+            });
+
+            from.update("delete from products where seller_id = ?", userId);
+            from.update("delete from users where id = ?", userId);
+            return products.stream()
+                    .map(product -> ((Number) product.get("id")).intValue())
+                    .collect(Collectors.toList());
+        });
+        if (productIds == null) {
+            return Optional.empty();
+        }
+
+        productIds.forEach(productId -> shardRouter.productPlaced(productId, target));
+        return Optional.of(productIds.size());
+    }
+
+    @Data
+    @Builder
+    public static class RebalanceReport {
+
+        private int movedUsers;
+        private int movedProducts;
+        private int deferredUsers;
+
+    }
+
+}
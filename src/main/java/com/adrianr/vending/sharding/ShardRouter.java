@@ -0,0 +1,122 @@
+package com.adrianr.vending.sharding;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Maps users and products to shards and runs work bound to one. A transaction that is already open on the shard is
+ * joined, so the steps of one service method commit or roll back together; crossing to another shard opens a
+ * transaction of its own there, which commits before the caller's.
+ */
+public class ShardRouter {
+
+    private final ConsistentHashRing<String> ring;
+    private final String directoryShard;
+    private final TransactionTemplate joiningTransactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+    private final Map<Integer, String> productShards = new ConcurrentHashMap<>();
+
+    public ShardRouter(ConsistentHashRing<String> ring, String directoryShard,
+                       PlatformTransactionManager transactionManager) {
+        this.ring = ring;
+        this.directoryShard = directoryShard;
+        this.joiningTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public String shardForUser(Integer userId) {
+        return ring.nodeFor(userId);
+    }
+
+    public String shardForSeller(Integer sellerId) {
+        return ring.nodeFor(sellerId);
+    }
+
+    public List<String> getShards() {
+        return ring.getNodes();
+    }
+
+    public <T> T onShard(String shard, Supplier<T> action) {
+        boolean joinable = TransactionSynchronizationManager.isActualTransactionActive()
+                && shard.equals(ShardContext.current().orElse(directoryShard));
+        return onShard(shard, joinable ? joiningTransactionTemplate : newTransactionTemplate, action);
+    }
+
+    /**
+     * Runs {@code action} in a transaction of its own on the shard, committed when it returns even if the caller's
+     * transaction is open on the same shard. For protocols such as sagas whose steps must be durable one by one.
+     */
+    public <T> T onShardInNewTransaction(String shard, Supplier<T> action) {
+        return onShard(shard, newTransactionTemplate, action);
+    }
+
+    /**
+     * The shard holding everything that is not sharded, which a transaction opened outside any shard is bound to.
+     */
+    public String getDirectoryShard() {
+        return directoryShard;
+    }
+
+    public <T> List<T> onEachShard(Supplier<T> action) {
+        List<T> results = new ArrayList<>();
+        for (String shard : getShards()) {
+            results.add(onShard(shard, action));
+        }
+        return results;
+    }
+
+    public <T> Optional<T> findOnAnyShard(Supplier<T> action, Predicate<T> found) {
+        for (String shard : getShards()) {
+            T result = onShard(shard, action);
+            if (found.test(result)) {
+                return Optional.of(result);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public Optional<String> locateProduct(Integer productId, Predicate<String> existsOnShard) {
+        String cached = productShards.get(productId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        for (String shard : getShards()) {
+            if (existsOnShard.test(shard)) {
+                productShards.put(productId, shard);
+                return Optional.of(shard);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void productPlaced(Integer productId, String shard) {
+        productShards.put(productId, shard);
+    }
+
+    public void productRemoved(Integer productId) {
+        productShards.remove(productId);
+    }
+
+    private <T> T onShard(String shard, TransactionTemplate transactionTemplate, Supplier<T> action) {
+        Optional<String> previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } finally {
+            ShardContext.set(previous.orElse(null));
+        }
+    }
+
+}
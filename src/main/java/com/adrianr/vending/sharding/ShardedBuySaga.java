@@ -0,0 +1,165 @@
+package com.adrianr.vending.sharding;
+
+import com.adrianr.vending.analytics.SaleEvent;
+import com.adrianr.vending.domain.BuySaga;
+import com.adrianr.vending.domain.BuySagaOutcome;
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.pricing.PricingEngine;
+import com.adrianr.vending.repository.BuySagaOutcomeRepository;
+import com.adrianr.vending.repository.BuySagaRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.BuyResponseDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Buys across shards as two local transactions: the stock decrement on the seller's shard is committed first, together
+ * with a {@link BuySaga} record, and compensated if debiting the buyer on their shard fails. The debit writes a
+ * {@link BuySagaOutcome} on the buyer's shard, so a saga left behind by a crash or a failed compensation can be
+ * settled later by {@link #recover()} without guessing whether the buyer paid.
+ */
+@Slf4j
+public class ShardedBuySaga {
+
+    private final ShardRouter shardRouter;
+    private final UserRepository userRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PricingEngine pricingEngine;
+    private final BuySagaRepository sagaRepository;
+    private final BuySagaOutcomeRepository outcomeRepository;
+    private final Duration sagaTimeout;
+
+    public ShardedBuySaga(ShardRouter shardRouter, UserRepository userRepository, ProductRepository productRepository,
+                          ApplicationEventPublisher eventPublisher, PricingEngine pricingEngine,
+                          BuySagaRepository sagaRepository, BuySagaOutcomeRepository outcomeRepository,
+                          Duration sagaTimeout) {
+        this.shardRouter = shardRouter;
+        this.userRepository = userRepository;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.pricingEngine = pricingEngine;
+        this.sagaRepository = sagaRepository;
+        this.outcomeRepository = outcomeRepository;
+        this.sagaTimeout = sagaTimeout;
+    }
+
+    public BuyResponseDto buy(Integer buyerId, Integer productId, Integer amount) {
+        String productShard = shardRouter.locateProduct(productId,
+                        shard -> shardRouter.onShard(shard, () -> productRepository.existsById(productId)))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist"));
+
+        String sagaId = UUID.randomUUID().toString();
+        Product product = shardRouter.onShardInNewTransaction(productShard,
+                () -> takeStock(sagaId, buyerId, productId, amount));
+        BigDecimal totalAmount = pricingEngine.totalPrice(product, amount, Instant.now());
+
+        String buyerShard = shardRouter.shardForUser(buyerId);
+        User buyer;
+        try {
+            buyer = shardRouter.onShardInNewTransaction(buyerShard, () -> debit(sagaId, buyerId, totalAmount));
+        } catch (RuntimeException e) {
+            try {
+                settle(sagaId, productShard, buyerShard);
+            } catch (RuntimeException compensationFailure) {
+                log.warn("Compensation of buy {} failed, leaving it to recovery", sagaId, compensationFailure);
+                e.addSuppressed(compensationFailure);
+            }
+            throw e;
+        }
+
+        try {
+            settle(sagaId, productShard, buyerShard);
+        } catch (RuntimeException e) {
+            log.warn("Could not settle buy {}, leaving it to recovery", sagaId, e);
+        }
+
+        eventPublisher.publishEvent(SaleEvent.of(product, null, buyerId, amount, totalAmount, Instant.now()));
+        return BuyResponseDto.of(product, amount, totalAmount, buyer.getDeposit());
+    }
+
+    /**
+     * Settles the sagas older than the saga timeout that a crash or a failed compensation left behind on any shard.
+     */
+    @Scheduled(fixedDelayString = "${vending.sharding.saga-recovery-interval-ms:60000}")
+    public void recover() {
+        Instant cutoff = Instant.now().minus(sagaTimeout);
+        for (String shard : shardRouter.getShards()) {
+            for (BuySaga saga : shardRouter.onShard(shard, () -> sagaRepository.findAllByCreatedAtBefore(cutoff))) {
+                try {
+                    settle(saga.getId(), shard, shardRouter.shardForUser(saga.getBuyerId()));
+                } catch (RuntimeException e) {
+                    log.warn("Could not settle buy {}, retrying on the next pass", saga.getId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up whether the buyer was debited, recording that they were not when no debit exists so a late one can no
+     * longer commit, then closes the saga and returns the stock unless the buyer paid. Safe to repeat.
+     */
+    private void settle(String sagaId, String productShard, String buyerShard) {
+        boolean debited = shardRouter.onShardInNewTransaction(buyerShard, () -> outcomeRepository.findById(sagaId)
+                .map(BuySagaOutcome::getDebited)
+                .orElseGet(() -> {
+                    outcomeRepository.insert(sagaId, false, Instant.now());
+                    return false;
+                }));
+
+        shardRouter.onShardInNewTransaction(productShard, () -> {
+            sagaRepository.findById(sagaId).ifPresent(saga -> {
+                if (sagaRepository.settle(sagaId) == 1 && !debited) {
+                    returnStock(saga.getProductId(), saga.getAmount());
+                }
+            });
+            return null;
+        });
+        shardRouter.onShardInNewTransaction(buyerShard, () -> outcomeRepository.deleteBySagaId(sagaId));
+    }
+
+    private Product takeStock(String sagaId, Integer buyerId, Integer productId, Integer amount) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product id does not exist"));
+
+        if (productRepository.takeStock(productId, amount) == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Requested amount is greater than stock");
+        }
+        sagaRepository.save(BuySaga.builder()
+                .id(sagaId)
+                .productId(productId)
+                .buyerId(buyerId)
+                .amount(amount)
+                .createdAt(Instant.now())
+                .build());
+        return product;
+    }
+
+    private User debit(String sagaId, Integer buyerId, BigDecimal totalAmount) {
+        if (userRepository.debit(buyerId, totalAmount) == 0) {
+            if (!userRepository.existsById(buyerId)) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough funds to complete the order");
+        }
+        outcomeRepository.insert(sagaId, true, Instant.now());
+        return userRepository.findById(buyerId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+    }
+
+    private Integer returnStock(Integer productId, Integer amount) {
+        log.info("Compensating stock of product {} by {}", productId, amount);
+        return productRepository.returnStock(productId, amount);
+    }
+
+}
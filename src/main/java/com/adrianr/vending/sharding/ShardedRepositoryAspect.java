@@ -0,0 +1,165 @@
+package com.adrianr.vending.sharding;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.Hibernate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Places every {@link UserRepository} and {@link ProductRepository} call on the shard that owns its data: users by
+ * id, products by seller id. Calls made while a shard is already bound (sagas, rebalancing) pass straight through.
+ */
+@Aspect
+public class ShardedRepositoryAspect {
+
+    private final ShardRouter shardRouter;
+    private final ShardIdAllocator idAllocator;
+
+    public ShardedRepositoryAspect(ShardRouter shardRouter, ShardIdAllocator idAllocator) {
+        this.shardRouter = shardRouter;
+        this.idAllocator = idAllocator;
+    }
+
+    @Around("target(userRepository)")
+    public Object routeUserRepository(ProceedingJoinPoint joinPoint, UserRepository userRepository) throws Throwable {
+        if (ShardContext.current().isPresent()) {
+            return joinPoint.proceed();
+        }
+
+        Object[] args = joinPoint.getArgs();
+        switch (joinPoint.getSignature().getName()) {
+            case "findById":
+            case "getById":
+            case "existsById":
+            case "deleteById":
+            case "addToDeposit":
+            case "debit":
+                return onShard(shardRouter.shardForUser((Integer) args[0]), joinPoint);
+            case "save":
+                return saveUser(userRepository, (User) args[0], joinPoint);
+            case "findByUsername":
+                return shardRouter.findOnAnyShard(() -> proceed(joinPoint), result -> ((Optional<?>) result).isPresent())
+                        .orElse(Optional.empty());
+            case "findAll":
+            case "count":
+                return gather(joinPoint);
+            default:
+                throw notShardAware(joinPoint);
+        }
+    }
+
+    @Around("target(productRepository)")
+    public Object routeProductRepository(ProceedingJoinPoint joinPoint, ProductRepository productRepository)
+            throws Throwable {
+        if (ShardContext.current().isPresent()) {
+            return joinPoint.proceed();
+        }
+
+        Object[] args = joinPoint.getArgs();
+        switch (joinPoint.getSignature().getName()) {
+            case "findById":
+            case "findStock":
+            case "existsById":
+                return locateProduct(productRepository, (Integer) args[0])
+                        .map(shard -> onShard(shard, joinPoint))
+                        .orElseGet(() -> "existsById".equals(joinPoint.getSignature().getName())
+                                ? Boolean.FALSE : Optional.empty());
+            case "getById":
+                return onShard(locateProduct(productRepository, (Integer) args[0])
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found")),
+                        joinPoint);
+            case "deleteById":
+                locateProduct(productRepository, (Integer) args[0]).ifPresent(shard -> onShard(shard, joinPoint));
+                shardRouter.productRemoved((Integer) args[0]);
+                return null;
+            case "save":
+                return saveProduct(productRepository, (Product) args[0], joinPoint);
+            case "takeStock":
+            case "returnStock":
+            case "updateListing":
+                return locateProduct(productRepository, (Integer) args[0])
+                        .map(shard -> onShard(shard, joinPoint))
+                        .orElse(0);
+            case "findAllBySellerId":
+            case "deleteAllBySellerId":
+                return onShard(shardRouter.shardForSeller((Integer) args[0]), joinPoint);
+            case "findAll":
+            case "count":
+                return gather(joinPoint);
+            default:
+                throw notShardAware(joinPoint);
+        }
+    }
+
+    private Object saveUser(UserRepository userRepository, User user, ProceedingJoinPoint joinPoint) {
+        if (user.getId() != null) {
+            return onShard(shardRouter.shardForUser(user.getId()), joinPoint);
+        }
+
+        user.setId(idAllocator.nextUserId());
+        return shardRouter.onShard(shardRouter.shardForUser(user.getId()), () -> {
+            userRepository.insertWithId(user);
+            return user;
+        });
+    }
+
+    private Object saveProduct(ProductRepository productRepository, Product product, ProceedingJoinPoint joinPoint) {
+        String shard = shardRouter.shardForSeller(product.getSellerId());
+        if (product.getId() != null) {
+            return onShard(shard, joinPoint);
+        }
+
+        product.setId(idAllocator.nextProductId());
+        shardRouter.onShard(shard, () -> {
+            productRepository.insertWithId(product);
+            return product;
+        });
+        shardRouter.productPlaced(product.getId(), shard);
+        return product;
+    }
+
+    private Optional<String> locateProduct(ProductRepository productRepository, Integer productId) {
+        return shardRouter.locateProduct(productId,
+                shard -> shardRouter.onShard(shard, () -> productRepository.existsById(productId)));
+    }
+
+    private Object onShard(String shard, ProceedingJoinPoint joinPoint) {
+        return shardRouter.onShard(shard, () -> Hibernate.unproxy(proceed(joinPoint)));
+    }
+
+    private Object gather(ProceedingJoinPoint joinPoint) {
+        List<Object> results = shardRouter.onEachShard(() -> proceed(joinPoint));
+        if ("count".equals(joinPoint.getSignature().getName())) {
+            return results.stream().mapToLong(count -> (Long) count).sum();
+        }
+        return results.stream()
+                .flatMap(result -> ((Collection<?>) result).stream())
+                .collect(Collectors.toList());
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IllegalStateException notShardAware(ProceedingJoinPoint joinPoint) {
+        return new IllegalStateException(joinPoint.getSignature().toShortString() + " is not shard aware");
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.adrianr.vending.sharding;
+
+import com.adrianr.vending.repository.UserRepository;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+public class ShardedUserDetailsService implements UserDetailsService {
+
+    private final UserRepository userRepository;
+
+    public ShardedUserDetailsService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return userRepository.findByUsername(username)
+                .map(user -> new User(user.getUsername(), user.getPassword(),
+                        AuthorityUtils.createAuthorityList("ROLE_" + user.getRole().getName())))
+                .orElseThrow(() -> new UsernameNotFoundException(username));
+    }
+
+}
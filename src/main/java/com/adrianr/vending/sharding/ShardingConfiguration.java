@@ -0,0 +1,126 @@
+package com.adrianr.vending.sharding;
+
+import com.adrianr.vending.pricing.PricingEngine;
+import com.adrianr.vending.repository.BuySagaOutcomeRepository;
+import com.adrianr.vending.repository.BuySagaRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Configuration
+@ConditionalOnProperty(prefix = "vending.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfiguration implements DisposableBean {
+
+    private final ShardingProperties properties;
+    private final Map<String, DataSource> shardDataSources = new TreeMap<>();
+
+    public ShardingConfiguration(ShardingProperties properties) {
+        this.properties = properties;
+        properties.getShards().forEach((name, config) -> shardDataSources.put(name, createShard(name, config)));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.copyOf(shardDataSources));
+        routingDataSource.setDefaultTargetDataSource(shardDataSources.get(directoryShard()));
+        routingDataSource.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardedFlywayMigrationStrategy() {
+        return flyway -> shardDataSources.values().forEach(shard -> Flyway.configure()
+                .configuration(flyway.getConfiguration())
+                .dataSource(shard)
+                .load()
+                .migrate());
+    }
+
+    @Bean
+    public ConsistentHashRing<String> shardRing() {
+        return new ConsistentHashRing<>(shardDataSources.keySet(), properties.getVirtualNodes());
+    }
+
+    @Bean
+    public ShardRouter shardRouter(ConsistentHashRing<String> shardRing, PlatformTransactionManager transactionManager) {
+        return new ShardRouter(shardRing, directoryShard(), transactionManager);
+    }
+
+    @Bean
+    public ShardIdAllocator shardIdAllocator() {
+        return new ShardIdAllocator(shardDataSources.get(directoryShard()));
+    }
+
+    @Bean
+    public ShardedRepositoryAspect shardedRepositoryAspect(@Lazy ShardRouter shardRouter,
+                                                           @Lazy ShardIdAllocator shardIdAllocator) {
+        return new ShardedRepositoryAspect(shardRouter, shardIdAllocator);
+    }
+
+    @Bean
+    public ShardedBuySaga shardedBuySaga(ShardRouter shardRouter,
+                                         UserRepository userRepository,
+                                         ProductRepository productRepository,
+                                         ApplicationEventPublisher eventPublisher,
+                                         PricingEngine pricingEngine,
+                                         BuySagaRepository sagaRepository,
+                                         BuySagaOutcomeRepository outcomeRepository) {
+        return new ShardedBuySaga(shardRouter, userRepository, productRepository, eventPublisher, pricingEngine,
+                sagaRepository, outcomeRepository, properties.getSagaTimeout());
+    }
+
+    @Bean
+    public ShardedUserDetailsService shardedUserDetailsService(UserRepository userRepository) {
+        return new ShardedUserDetailsService(userRepository);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ConsistentHashRing<String> shardRing, ShardRouter shardRouter) {
+        return new ShardRebalancer(shardRing, shardRouter, shardDataSources);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "vending.sharding", name = "rebalance", havingValue = "true")
+    public ApplicationRunner shardRebalanceRunner(ShardRebalancer shardRebalancer) {
+        return args -> shardRebalancer.rebalance();
+    }
+
+    private String directoryShard() {
+        return properties.getDirectoryShard() != null
+                ? properties.getDirectoryShard()
+                : shardDataSources.keySet().iterator().next();
+    }
+
+    @Override
+    public void destroy() {
+        shardDataSources.values().forEach(shard -> ((HikariDataSource) shard).close());
+    }
+
+    private static DataSource createShard(String name, HikariConfig config) {
+        if (config.getPoolName() == null) {
+            config.setPoolName("vending-" + name);
+        }
+        return new HikariDataSource(config);
+    }
+
+}
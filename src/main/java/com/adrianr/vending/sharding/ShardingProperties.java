@@ -0,0 +1,26 @@
+package com.adrianr.vending.sharding;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Data
+@ConfigurationProperties("vending.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+    private int virtualNodes = 160;
+    private String directoryShard;
+    private boolean rebalance;
+    /**
+     * Age after which a cross-shard buy that is still open is taken to have been abandoned and is settled.
+     */
+    private Duration sagaTimeout = Duration.ofMinutes(1);
+    private long sagaRecoveryIntervalMs = 60000;
+    private Map<String, HikariConfig> shards = new TreeMap<>();
+
+}
@@ -0,0 +1,131 @@
+package com.adrianr.vending.tenancy;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.jdbc.DataSourceHealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One database per tenant, each behind its own Hikari pool, with every repository routed to the pool of the tenant
+ * bound by {@link TenantFilter}. Pools without an explicit size split {@code total-connections} evenly and keep a
+ * single idle connection, so dozens of tenants fit one JVM and a tenant that exhausts its pool only waits on itself.
+ * <p>
+ * Features that key in-memory state by user id alone (deposit coalescing), or route data themselves (sharding, read
+ * replicas), cannot be combined with tenancy and fail startup.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "vending.tenancy", name = "enabled", havingValue = "true")
+public class TenancyConfiguration implements DisposableBean {
+
+    private static final List<String> INCOMPATIBLE = List.of(
+            "vending.sharding.enabled",
+            "vending.datasource.replica.enabled",
+            "vending.deposit.coalescing.enabled");
+
+    private final TenancyProperties properties;
+    private final Map<String, HikariDataSource> tenantDataSources = new TreeMap<>();
+    private TenantRoutingDataSource routingDataSource;
+
+    public TenancyConfiguration(TenancyProperties properties, Environment environment, MeterRegistry meterRegistry) {
+        if (properties.getTenants().isEmpty()) {
+            throw new IllegalStateException("vending.tenancy.enabled needs at least one vending.tenancy.tenants entry");
+        }
+        INCOMPATIBLE.stream()
+                .filter(property -> environment.getProperty(property, Boolean.class, false))
+                .findFirst()
+                .ifPresent(property -> {
+                    throw new IllegalStateException(property + " cannot be combined with vending.tenancy.enabled");
+                });
+
+        this.properties = properties;
+        int fairShare = Math.max(2, properties.getTotalConnections() / properties.getTenants().size());
+        properties.getTenants().forEach((tenant, config) ->
+                tenantDataSources.put(tenant, createPool(tenant, config, fairShare, meterRegistry)));
+        TenantContext.setTenants(List.copyOf(tenantDataSources.keySet()));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        routingDataSource = new TenantRoutingDataSource(tenantDataSources.keySet().iterator().next());
+        routingDataSource.setTargetDataSources(Map.copyOf(tenantDataSources));
+        routingDataSource.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy tenantFlywayMigrationStrategy() {
+        return flyway -> tenantDataSources.values().forEach(tenant -> Flyway.configure()
+                .configuration(flyway.getConfiguration())
+                .dataSource(tenant)
+                .load()
+                .migrate());
+    }
+
+    /**
+     * Replaces the health check of the routed data source, which has no tenant to route to, with one per pool.
+     */
+    @Bean
+    public HealthContributor dbHealthContributor() {
+        Map<String, HealthIndicator> indicators = new TreeMap<>();
+        tenantDataSources.forEach((tenant, pool) -> indicators.put(tenant, new DataSourceHealthIndicator(pool)));
+        return CompositeHealthContributor.fromMap(indicators);
+    }
+
+    @Bean
+    public FilterRegistrationBean<TenantFilter> tenantFilter() {
+        FilterRegistrationBean<TenantFilter> registration = new FilterRegistrationBean<>(new TenantFilter(properties));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void requireTenant() {
+        routingDataSource.ready();
+    }
+
+    @Override
+    public void destroy() {
+        TenantContext.setTenants(List.of());
+        tenantDataSources.values().forEach(HikariDataSource::close);
+    }
+
+    private static HikariDataSource createPool(String tenant, HikariConfig config, int fairShare,
+                                               MeterRegistry meterRegistry) {
+        if (config.getPoolName() == null) {
+            config.setPoolName("vending-tenant-" + tenant);
+        }
+        if (config.getMaximumPoolSize() <= 0) {
+            config.setMaximumPoolSize(fairShare);
+        }
+        if (config.getMinimumIdle() < 0) {
+            config.setMinimumIdle(1);
+        }
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+
+}
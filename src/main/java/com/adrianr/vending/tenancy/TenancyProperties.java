@@ -0,0 +1,32 @@
+package com.adrianr.vending.tenancy;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@Data
+@ConfigurationProperties("vending.tenancy")
+public class TenancyProperties {
+
+    private boolean enabled;
+    private String header = "X-Tenant-Id";
+    /**
+     * Host name to tenant, for operators reached through their own domain. The header wins when both are present.
+     */
+    private Map<String, String> hosts = new TreeMap<>();
+    /**
+     * Connections shared by all tenant pools. A pool without an explicit {@code maximum-pool-size} gets an equal
+     * share of it.
+     */
+    private int totalConnections = 64;
+    /**
+     * Requests one tenant may have in flight at once; further ones are turned away instead of tying up worker
+     * threads that other tenants need.
+     */
+    private int maxConcurrentRequests = 32;
+    private Map<String, HikariConfig> tenants = new TreeMap<>();
+
+}
@@ -0,0 +1,73 @@
+package com.adrianr.vending.tenancy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * The tenant whose data the current thread works on. Requests get it from {@link TenantFilter}; work that outlives a
+ * request (scheduled jobs, queued events) has to remember the tenant it was started for and run under it again.
+ * Without tenancy no tenant is ever bound and {@link #tenants()} is empty.
+ */
+public final class TenantContext {
+
+    private static final ThreadLocal<String> CURRENT_TENANT = new ThreadLocal<>();
+    private static volatile List<String> tenants = List.of();
+
+    private TenantContext() {
+    }
+
+    public static Optional<String> current() {
+        return Optional.ofNullable(CURRENT_TENANT.get());
+    }
+
+    public static List<String> tenants() {
+        return tenants;
+    }
+
+    /**
+     * Runs {@code action} with {@code tenant} bound, or with none bound when it is null.
+     */
+    public static <T> T callAs(String tenant, Supplier<T> action) {
+        String previous = CURRENT_TENANT.get();
+        set(tenant);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    public static void runAs(String tenant, Runnable action) {
+        callAs(tenant, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code action} once per tenant with it bound, or once with none bound without tenancy.
+     */
+    public static void forEachTenant(Runnable action) {
+        List<String> all = tenants;
+        if (all.isEmpty()) {
+            action.run();
+            return;
+        }
+        all.forEach(tenant -> runAs(tenant, action));
+    }
+
+    static void setTenants(List<String> configured) {
+        tenants = Collections.unmodifiableList(List.copyOf(configured));
+    }
+
+    static void set(String tenant) {
+        if (tenant == null) {
+            CURRENT_TENANT.remove();
+        } else {
+            CURRENT_TENANT.set(tenant);
+        }
+    }
+
+}
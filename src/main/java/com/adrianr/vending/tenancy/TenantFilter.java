@@ -0,0 +1,91 @@
+package com.adrianr.vending.tenancy;
+
+import org.slf4j.MDC;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Binds the request's tenant, from the tenant header or else the host name, for the rest of the chain. Requests for
+ * no known tenant are rejected before they touch any data. Each tenant may only have
+ * {@code max-concurrent-requests} in flight, so one busy operator cannot hold every worker thread.
+ */
+public class TenantFilter extends OncePerRequestFilter {
+
+    static final String MDC_KEY = "tenant";
+
+    private final TenancyProperties properties;
+    private final Map<String, Semaphore> inFlight;
+
+    public TenantFilter(TenancyProperties properties) {
+        this.properties = properties;
+        this.inFlight = properties.getTenants().keySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(),
+                        tenant -> new Semaphore(properties.getMaxConcurrentRequests())));
+    }
+
+    /**
+     * Actuator endpoints report on the whole process, not on one tenant.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String tenant = resolve(request);
+        if (tenant == null) {
+            reject(response, HttpStatus.BAD_REQUEST, null);
+            return;
+        }
+
+        Semaphore permits = inFlight.get(tenant);
+        if (!permits.tryAcquire()) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, "1");
+            return;
+        }
+        TenantContext.set(tenant);
+        MDC.put(MDC_KEY, tenant);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_KEY);
+            TenantContext.set(null);
+            permits.release();
+        }
+    }
+
+    private String resolve(HttpServletRequest request) {
+        String tenant = request.getHeader(properties.getHeader());
+        if (tenant == null) {
+            tenant = properties.getHosts().get(request.getServerName());
+        }
+        return tenant != null && inFlight.containsKey(tenant) ? tenant : null;
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String retryAfter)
+            throws IOException {
+        response.setStatus(status.value());
+        if (retryAfter != null) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase()
+                + "\",\"message\":\"" + (status == HttpStatus.BAD_REQUEST ? "Unknown tenant" : "Tenant is busy")
+                + "\"}");
+    }
+
+}
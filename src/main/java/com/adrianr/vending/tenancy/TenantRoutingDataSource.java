@@ -0,0 +1,34 @@
+package com.adrianr.vending.tenancy;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes to the current tenant's pool. Until the application is ready, unbound access (Hibernate and Flyway
+ * bootstrap) goes to the bootstrap tenant; after that it fails, so a code path that forgot its tenant cannot quietly
+ * read or write another tenant's data.
+ */
+public class TenantRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final String bootstrapTenant;
+    private volatile boolean ready;
+
+    public TenantRoutingDataSource(String bootstrapTenant) {
+        this.bootstrapTenant = bootstrapTenant;
+        setLenientFallback(false);
+    }
+
+    void ready() {
+        ready = true;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TenantContext.current().orElseGet(() -> {
+            if (ready) {
+                throw new IllegalStateException("No tenant bound to this thread");
+            }
+            return bootstrapTenant;
+        });
+    }
+
+}
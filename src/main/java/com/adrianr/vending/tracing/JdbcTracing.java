@@ -0,0 +1,56 @@
+package com.adrianr.vending.tracing;
+
+import com.adrianr.vending.config.JdbcStatementProxy;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+/**
+ * Opens a {@code JDBC <verb>} span around each statement execution, carrying the SQL as {@code db.statement}.
+ * Executions outside a recording span only pay for the check.
+ */
+final class JdbcTracing {
+
+    private JdbcTracing() {
+    }
+
+    static JdbcStatementProxy.Listener listener(Tracer tracer) {
+        return (sql, method, execution) -> {
+            if (!Span.current().isRecording()) {
+                return execution.proceed();
+            }
+
+            Span span = tracer.spanBuilder("JDBC " + verb(sql, method))
+                    .setSpanKind(SpanKind.CLIENT)
+                    .setAttribute("db.statement", sql != null ? sql : "")
+                    .startSpan();
+            try (Scope ignored = span.makeCurrent()) {
+                return execution.proceed();
+            } catch (Throwable e) {
+                span.recordException(e);
+                span.setStatus(StatusCode.ERROR);
+                throw e;
+            } finally {
+                span.end();
+            }
+        };
+    }
+
+    private static String verb(String sql, Method method) {
+        if (sql == null) {
+            return method.getName().contains("Batch") ? "BATCH" : "STATEMENT";
+        }
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? "STATEMENT" : trimmed.substring(0, end).toUpperCase(Locale.ROOT);
+    }
+
+}
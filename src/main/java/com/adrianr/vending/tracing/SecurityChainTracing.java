@@ -0,0 +1,107 @@
+package com.adrianr.vending.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+
+import javax.servlet.*;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A span around the Spring Security filters. The chain is bracketed with two filters, the first opening the span and
+ * the last ending it once the request is let through, so the span covers authentication and authorization only.
+ * A request the chain rejects never reaches the last filter; the first one ends the span on the way out instead.
+ * <p>
+ * The filters go into each chain's own list rather than around the {@link FilterChainProxy}, whose type Spring
+ * Security's test support relies on.
+ */
+final class SecurityChainTracing {
+
+    private static final String SPAN_ATTRIBUTE = SecurityChainTracing.class.getName() + ".span";
+
+    private SecurityChainTracing() {
+    }
+
+    static void instrument(FilterChainProxy filterChainProxy, Tracer tracer) {
+        for (SecurityFilterChain chain : filterChainProxy.getFilterChains()) {
+            List<Filter> filters = chain.getFilters();
+            filters.add(0, new Start(tracer));
+            filters.add(new End());
+        }
+    }
+
+    private static class Start implements Filter {
+
+        private final Tracer tracer;
+
+        Start(Tracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            if (!Span.current().isRecording()) {
+                chain.doFilter(request, response);
+                return;
+            }
+
+            Span span = tracer.spanBuilder("security filter chain").startSpan();
+            OpenSpan open = new OpenSpan(span, span.makeCurrent());
+            request.setAttribute(SPAN_ATTRIBUTE, open);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                request.removeAttribute(SPAN_ATTRIBUTE);
+                if (open.end()) {
+                    span.setAttribute("security.rejected", true);
+                }
+            }
+        }
+
+    }
+
+    private static class End implements Filter {
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            Object open = request.getAttribute(SPAN_ATTRIBUTE);
+            if (open != null) {
+                ((OpenSpan) open).end();
+            }
+            chain.doFilter(request, response);
+        }
+
+    }
+
+    private static class OpenSpan {
+
+        private final Span span;
+        private final Scope scope;
+        private boolean ended;
+
+        OpenSpan(Span span, Scope scope) {
+            this.span = span;
+            this.scope = scope;
+        }
+
+        /**
+         * Returns whether this call ended the span, false if it had been ended already.
+         */
+        boolean end() {
+            if (ended) {
+                return false;
+            }
+            ended = true;
+            scope.close();
+            span.end();
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.adrianr.vending.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.repository.Repository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A span per service and repository call, named {@code Type.method}. Runs outside the transaction and sharding
+ * advice so their work is part of the span. Calls with no recording span around them are not traced.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingAspect {
+
+    private final Tracer tracer;
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    public TracingAspect(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("execution(public * com.adrianr.vending.service..*(..))")
+    public Object traceService(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!Span.current().isRecording()) {
+            return joinPoint.proceed();
+        }
+        return trace(joinPoint.getSignature().getDeclaringType().getSimpleName(), joinPoint);
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object traceRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!Span.current().isRecording()) {
+            return joinPoint.proceed();
+        }
+        return trace(repositoryNames.computeIfAbsent(joinPoint.getThis().getClass(), TracingAspect::repositoryName),
+                joinPoint);
+    }
+
+    private Object trace(String type, ProceedingJoinPoint joinPoint) throws Throwable {
+        Span span = tracer.spanBuilder(type + "." + joinPoint.getSignature().getName()).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Repository methods are mostly declared on Spring Data's interfaces, so name the span after the application's
+     * repository interface the proxy implements instead.
+     */
+    private static String repositoryName(Class<?> proxyClass) {
+        return Arrays.stream(proxyClass.getInterfaces())
+                .filter(Repository.class::isAssignableFrom)
+                .filter(type -> !type.getName().startsWith("org.springframework."))
+                .map(Class::getSimpleName)
+                .findFirst()
+                .orElse(proxyClass.getSimpleName());
+    }
+
+}
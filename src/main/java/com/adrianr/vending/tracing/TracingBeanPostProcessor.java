@@ -0,0 +1,41 @@
+package com.adrianr.vending.tracing;
+
+import com.adrianr.vending.config.JdbcStatementProxy;
+import io.opentelemetry.api.trace.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.security.web.FilterChainProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Instruments the two beans {@link TracingAspect} cannot advise: the Spring Security filter chain, and the
+ * application's {@code dataSource}, whose connections are wrapped to trace each statement.
+ */
+class TracingBeanPostProcessor implements BeanPostProcessor {
+
+    private static final String SECURITY_FILTER_CHAIN = "springSecurityFilterChain";
+    private static final String DATA_SOURCE = "dataSource";
+
+    private final ObjectProvider<Tracer> tracer;
+
+    TracingBeanPostProcessor(ObjectProvider<Tracer> tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (SECURITY_FILTER_CHAIN.equals(beanName) && bean instanceof FilterChainProxy) {
+            SecurityChainTracing.instrument((FilterChainProxy) bean, tracer.getObject());
+        }
+        if (DATA_SOURCE.equals(beanName) && bean instanceof DataSource) {
+            return tracedDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+
+    private DataSource tracedDataSource(DataSource dataSource) {
+        return JdbcStatementProxy.dataSource(dataSource, JdbcTracing.listener(tracer.getObject()));
+    }
+
+}
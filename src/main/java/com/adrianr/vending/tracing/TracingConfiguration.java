@@ -0,0 +1,84 @@
+package com.adrianr.vending.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+/**
+ * OpenTelemetry tracing for requests: a server span per request, a child for the security filter chain, one per
+ * service and repository call and one per JDBC statement. Spans are logged with {@code log-spans}; any other
+ * {@link SpanExporter} bean, an OTLP exporter for instance, is exported to as well.
+ * <p>
+ * Off by default. When on, only requests open spans; service, repository and JDBC calls outside a recorded request
+ * (schedulers, startup, unsampled requests) skip the tracer entirely.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "vending.tracing", name = "enabled", havingValue = "true")
+public class TracingConfiguration {
+
+    static final String INSTRUMENTATION_NAME = "com.adrianr.vending";
+
+    @Bean(destroyMethod = "close")
+    public SdkTracerProvider sdkTracerProvider(TracingProperties properties, ObjectProvider<SpanExporter> exporters) {
+        SdkTracerProviderBuilder builder = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(
+                        Attributes.of(stringKey("service.name"), properties.getServiceName()))))
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(properties.getSampleRatio())));
+        if (properties.isLogSpans()) {
+            builder.addSpanProcessor(BatchSpanProcessor.builder(new LoggingSpanExporter()).build());
+        }
+        exporters.orderedStream()
+                .forEach(exporter -> builder.addSpanProcessor(BatchSpanProcessor.builder(exporter).build()));
+        return builder.build();
+    }
+
+    @Bean
+    public OpenTelemetry openTelemetry(SdkTracerProvider tracerProvider) {
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    @Bean
+    public Tracer tracer(OpenTelemetry openTelemetry) {
+        return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    @Bean
+    public FilterRegistrationBean<TracingFilter> tracingFilter(OpenTelemetry openTelemetry, Tracer tracer) {
+        FilterRegistrationBean<TracingFilter> registration =
+                new FilterRegistrationBean<>(new TracingFilter(openTelemetry.getPropagators(), tracer));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public TracingAspect tracingAspect(Tracer tracer) {
+        return new TracingAspect(tracer);
+    }
+
+    @Bean
+    public static TracingBeanPostProcessor tracingBeanPostProcessor(ObjectProvider<Tracer> tracer) {
+        return new TracingBeanPostProcessor(tracer);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.adrianr.vending.tracing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("vending.tracing")
+public class TracingProperties {
+
+    private boolean enabled = false;
+    private String serviceName = "vending";
+    /**
+     * Fraction of new traces to record, 0 to 1. Requests carrying a {@code traceparent} follow the caller's decision.
+     */
+    private double sampleRatio = 1.0;
+    private boolean logSpans = true;
+
+}
@@ -0,0 +1,15 @@
+CREATE TABLE BUY_SAGAS (
+    id VARCHAR2(36) NOT NULL,
+    product_id INT NOT NULL,
+    buyer_id INT NOT NULL,
+    amount INT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE BUY_SAGA_OUTCOMES (
+    saga_id VARCHAR2(36) NOT NULL,
+    debited BOOLEAN NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (saga_id)
+);
@@ -0,0 +1,2 @@
+-- machines created before owners existed stay unmanaged until an owner is assigned
+ALTER TABLE MACHINES ADD COLUMN owner_id INT;
@@ -0,0 +1,7 @@
+-- Every open hold is written when it is placed and deleted when it settles. The instance holding it renews its lease;
+-- holds whose lease ran out, including every hold from before leases existed, are claimed by whichever instance gets
+-- to them first.
+ALTER TABLE RESERVATIONS ADD COLUMN held_by VARCHAR2(36) DEFAULT '' NOT NULL;
+ALTER TABLE RESERVATIONS ADD COLUMN lease_expires_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL;
+CREATE INDEX RESERVATIONS_HELD_BY_IDX ON RESERVATIONS(held_by);
+CREATE INDEX RESERVATIONS_LEASE_EXPIRES_AT_IDX ON RESERVATIONS(lease_expires_at);
@@ -0,0 +1,2 @@
+CREATE SEQUENCE SHARD_USER_ID_SEQ START WITH 1;
+CREATE SEQUENCE SHARD_PRODUCT_ID_SEQ START WITH 1;
@@ -0,0 +1,25 @@
+CREATE TABLE MACHINES (
+    id INT NOT NULL AUTO_INCREMENT,
+    location VARCHAR2(100) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE MACHINE_SLOTS (
+    id INT NOT NULL AUTO_INCREMENT,
+    machine_id INT NOT NULL,
+    product_id INT NOT NULL,
+    amount_available INT NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (machine_id, product_id),
+    FOREIGN KEY (machine_id) references MACHINES(id)
+);
+
+CREATE TABLE MACHINE_COINS (
+    id INT NOT NULL AUTO_INCREMENT,
+    machine_id INT NOT NULL,
+    coin INT NOT NULL,
+    quantity INT NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (machine_id, coin),
+    FOREIGN KEY (machine_id) references MACHINES(id)
+);
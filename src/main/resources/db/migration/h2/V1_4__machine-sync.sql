@@ -0,0 +1,15 @@
+CREATE TABLE CATALOGUE_CHANGES (
+    id INT NOT NULL AUTO_INCREMENT,
+    product_id INT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE MACHINE_SYNC_LOG (
+    id INT NOT NULL AUTO_INCREMENT,
+    machine_id INT NOT NULL,
+    transaction_id VARCHAR2(64) NOT NULL,
+    status VARCHAR2(20) NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (machine_id, transaction_id),
+    FOREIGN KEY (machine_id) references MACHINES(id)
+);
@@ -0,0 +1,11 @@
+CREATE TABLE RESTOCK_ALERTS (
+    id INT NOT NULL AUTO_INCREMENT,
+    seller_id INT NOT NULL,
+    product_id INT NOT NULL,
+    machine_id INT,
+    amount_available INT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX RESTOCK_ALERTS_SELLER_ID_IDX ON RESTOCK_ALERTS(seller_id, id);
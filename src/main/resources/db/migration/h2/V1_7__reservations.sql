@@ -0,0 +1,12 @@
+CREATE TABLE RESERVATIONS (
+    id VARCHAR2(36) NOT NULL,
+    user_id INT NOT NULL,
+    product_id INT NOT NULL,
+    product_name VARCHAR2(100) NOT NULL,
+    seller_id INT NOT NULL,
+    machine_id INT,
+    amount INT NOT NULL,
+    total_price BIGINT NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
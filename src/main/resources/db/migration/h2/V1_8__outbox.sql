@@ -0,0 +1,8 @@
+CREATE TABLE OUTBOX_EVENTS (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    event_type VARCHAR2(50) NOT NULL,
+    aggregate_id INT NOT NULL,
+    payload VARCHAR2(4000) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
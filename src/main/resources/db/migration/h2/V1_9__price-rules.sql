@@ -0,0 +1,17 @@
+CREATE TABLE PRICE_RULES (
+    id INT NOT NULL AUTO_INCREMENT,
+    seller_id INT NOT NULL,
+    product_id INT,
+    rule_type VARCHAR2(20) NOT NULL,
+    percent_off INT,
+    unit_price INT,
+    buy_amount INT,
+    free_amount INT,
+    starts_at TIMESTAMP,
+    ends_at TIMESTAMP,
+    daily_from TIME,
+    daily_to TIME,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX PRICE_RULES_SELLER_ID_IDX ON PRICE_RULES(seller_id);
@@ -0,0 +1,15 @@
+-- Every catalogue change takes the next version from this single row, whose lock is held until the change commits,
+-- so versions become visible in order and a machine's cursor can never skip a change that committed late.
+CREATE TABLE CATALOGUE_VERSION (
+    id INT NOT NULL,
+    version INT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO CATALOGUE_VERSION (id, version) SELECT 1, COALESCE(MAX(id), 0) FROM CATALOGUE_CHANGES;
+
+-- existing cursors are change ids, so the versions of past changes are their ids
+ALTER TABLE CATALOGUE_CHANGES ADD COLUMN version INT;
+UPDATE CATALOGUE_CHANGES SET version = id;
+ALTER TABLE CATALOGUE_CHANGES ALTER COLUMN version SET NOT NULL;
+CREATE INDEX CATALOGUE_CHANGES_VERSION ON CATALOGUE_CHANGES (version);
@@ -0,0 +1,21 @@
+-- Sales move off the single SELLER_SUMMARIES row into 16 counter rows per seller, so buys from one seller no longer
+-- queue on the same row lock. The totals so far land on stripe 0.
+CREATE TABLE SELLER_SALES_STRIPES (
+    seller_id INT NOT NULL,
+    stripe INT NOT NULL,
+    units_sold BIGINT NOT NULL,
+    revenue BIGINT NOT NULL,
+    sales BIGINT NOT NULL,
+    PRIMARY KEY (seller_id, stripe)
+);
+
+INSERT INTO SELLER_SALES_STRIPES(seller_id, stripe, units_sold, revenue, sales)
+SELECT s.seller_id, r.x,
+       CASE WHEN r.x = 0 THEN s.units_sold ELSE 0 END,
+       CASE WHEN r.x = 0 THEN s.revenue ELSE 0 END,
+       CASE WHEN r.x = 0 THEN s.sales ELSE 0 END
+FROM SELLER_SUMMARIES s CROSS JOIN generate_series(0, 15) AS r(x);
+
+ALTER TABLE SELLER_SUMMARIES DROP COLUMN units_sold;
+ALTER TABLE SELLER_SUMMARIES DROP COLUMN revenue;
+ALTER TABLE SELLER_SUMMARIES DROP COLUMN sales;
@@ -0,0 +1,9 @@
+CREATE TABLE PRODUCTS (
+                       id SERIAL NOT NULL,
+                       product_name VARCHAR(100) NOT NULL,
+                       seller_id INT NOT NULL,
+                       cost INT NOT NULL,
+                       amount_available INT NOT NULL,
+                       PRIMARY KEY (id),
+                       FOREIGN KEY (seller_id) references USERS(id)
+);
@@ -0,0 +1,15 @@
+CREATE TABLE CATALOGUE_CHANGES (
+    id SERIAL NOT NULL,
+    product_id INT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE MACHINE_SYNC_LOG (
+    id SERIAL NOT NULL,
+    machine_id INT NOT NULL,
+    transaction_id VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (machine_id, transaction_id),
+    FOREIGN KEY (machine_id) references MACHINES(id)
+);
@@ -0,0 +1,15 @@
+CREATE INDEX PRODUCTS_SELLER_ID_IDX ON PRODUCTS(seller_id);
+
+CREATE TABLE SELLER_SUMMARIES (
+    seller_id INT NOT NULL,
+    product_count INT NOT NULL,
+    units_sold BIGINT NOT NULL,
+    revenue BIGINT NOT NULL,
+    sales BIGINT NOT NULL,
+    PRIMARY KEY (seller_id)
+);
+
+INSERT INTO SELLER_SUMMARIES(seller_id, product_count, units_sold, revenue, sales)
+SELECT u.id, (SELECT COUNT(*) FROM PRODUCTS p WHERE p.seller_id = u.id), 0, 0, 0
+FROM USERS u
+WHERE u.role = 'SELLER';
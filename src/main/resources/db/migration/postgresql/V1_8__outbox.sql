@@ -0,0 +1,8 @@
+CREATE TABLE OUTBOX_EVENTS (
+    id BIGSERIAL NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id INT NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id)
+);
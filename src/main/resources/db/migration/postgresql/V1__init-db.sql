@@ -0,0 +1,9 @@
+CREATE TABLE USERS (
+    id SERIAL NOT NULL,
+    username VARCHAR(100) NOT NULL,
+    password VARCHAR(256) NOT NULL,
+    deposit BIGINT NOT NULL,
+    role VARCHAR(50) NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (username)
+);
@@ -0,0 +1,139 @@
+package com.adrianr.vending;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.service.VendingService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("benchmark")
+class PersistenceProfileBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int WARMUP_BUYS_PER_THREAD = 200;
+    private static final int BUYS_PER_THREAD = 2_000;
+
+    @Test
+    void compareBuyThroughputBetweenPersistenceProfiles(@TempDir Path dataDir) throws Exception {
+        double h2Throughput;
+        try (ConfigurableApplicationContext context = start(null,
+                "--spring.datasource.url=jdbc:h2:file:" + dataDir.resolve("vending")
+                        + ";MV_STORE=TRUE;CACHE_SIZE=65536;WRITE_DELAY=100;LOCK_TIMEOUT=5000;DB_CLOSE_ON_EXIT=FALSE")) {
+            h2Throughput = measureBuyThroughput(context);
+        }
+
+        double postgresThroughput;
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start();
+             ConfigurableApplicationContext context = start("postgres",
+                     "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                     "--spring.datasource.username=postgres",
+                     "--spring.datasource.password=postgres")) {
+            postgresThroughput = measureBuyThroughput(context);
+        }
+
+        System.out.printf("buy throughput (%d threads): h2=%.0f ops/s, postgres=%.0f ops/s%n",
+                THREADS, h2Throughput, postgresThroughput);
+
+        assertTrue(h2Throughput > 0);
+        assertTrue(postgresThroughput > 0);
+    }
+
+    private ConfigurableApplicationContext start(String profile, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--spring.flyway.locations=classpath:db/migration/{vendor}");
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(VendingApplication.class)
+                .web(WebApplicationType.NONE);
+        if (profile != null) {
+            application.profiles(profile);
+        }
+        return application.run(arguments.toArray(String[]::new));
+    }
+
+    private double measureBuyThroughput(ConfigurableApplicationContext context) throws Exception {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        VendingService vendingService = context.getBean(VendingService.class);
+
+        User seller = userRepository.save(User.builder()
+                .username("benchmark-seller")
+                .password("benchmark")
+                .role(UserRole.SELLER)
+                .deposit(BigDecimal.ZERO)
+                .build());
+
+        List<Integer> productIds = new ArrayList<>();
+        List<String> buyers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            productIds.add(productRepository.save(Product.builder()
+                    .productName("Benchmark Product " + i)
+                    .sellerId(seller.getId())
+                    .cost(BigDecimal.ONE)
+                    .amountAvailable(WARMUP_BUYS_PER_THREAD + BUYS_PER_THREAD)
+                    .build()).getId());
+            buyers.add(userRepository.save(User.builder()
+                    .username("benchmark-buyer-" + i)
+                    .password("benchmark")
+                    .role(UserRole.BUYER)
+                    .deposit(BigDecimal.valueOf(WARMUP_BUYS_PER_THREAD + BUYS_PER_THREAD))
+                    .build()).getUsername());
+        }
+
+        runBuys(vendingService, productIds, buyers, WARMUP_BUYS_PER_THREAD);
+
+        long start = System.nanoTime();
+        runBuys(vendingService, productIds, buyers, BUYS_PER_THREAD);
+        long elapsed = System.nanoTime() - start;
+
+        return THREADS * BUYS_PER_THREAD / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void runBuys(VendingService vendingService, List<Integer> productIds, List<String> buyers, int buysPerThread)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Integer productId = productIds.get(i);
+                String buyer = buyers.get(i);
+                futures.add(executor.submit(() -> {
+                    SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                            new org.springframework.security.core.userdetails.User(buyer, "", AuthorityUtils.NO_AUTHORITIES),
+                            null, AuthorityUtils.NO_AUTHORITIES));
+                    for (int j = 0; j < buysPerThread; j++) {
+                        vendingService.buy(productId, 1);
+                    }
+                    SecurityContextHolder.clearContext();
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.adrianr.vending;
+
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(PostgresProfileIntegrationTest.StopPostgres.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("postgres")
+@DirtiesContext
+class PostgresProfileIntegrationTest {
+
+    private static final String BUYER_USERNAME = "buyer";
+    private static final String BUYER_ROLE = "BUYER";
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQL10Dialect");
+    }
+
+    @Test
+    void givenPostgresProfile_whenCallingGetAllProducts_ThenExpectSeededProducts() throws Exception {
+        mockMvc.perform(get("/products"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(productRepository.count()));
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenPostgresProfileAndBalance_whenCallingBuy_thenExpectStockAndDepositUpdated() throws Exception {
+        Integer initialAmount = productRepository.findById(2).orElseThrow().getAmountAvailable();
+        BigDecimal initialDeposit = userRepository.findById(8).orElseThrow().getDeposit();
+
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(5))
+                .andExpect(jsonPath("$.productName").value("Pepsi"));
+
+        assertEquals(initialDeposit.subtract(BigDecimal.valueOf(5)), userRepository.findById(8).orElseThrow().getDeposit());
+        assertEquals(initialAmount - 1, productRepository.findById(2).orElseThrow().getAmountAvailable());
+    }
+
+    /**
+     * Stops the database once the context is closed, so its schedulers and shutdown hooks never run against a stopped
+     * server. Registered ahead of {@code @SpringBootTest}, so it runs after the Spring extension's own callback.
+     */
+    static class StopPostgres implements AfterAllCallback {
+
+        @Override
+        public void afterAll(ExtensionContext context) throws IOException {
+            postgres.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.adrianr.vending;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.service.TokenService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@code GET /products} and {@code GET /users} over real sockets against the default server setup and the
+ * {@code throughput} profile on Tomcat and Undertow, and prints latency percentiles for each.
+ */
+@Tag("benchmark")
+class ServerThroughputBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int PRODUCTS = 300;
+    private static final int WARMUP_REQUESTS_PER_THREAD = 200;
+    private static final int REQUESTS_PER_THREAD = 1_000;
+
+    @Test
+    void compareLatencyPercentilesBetweenServerConfigurations() throws Exception {
+        System.out.printf("%-20s %8s %10s %10s %10s %10s %10s %12s%n",
+                "configuration", "proto", "req/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "avg bytes");
+
+        report("tomcat-default", run("default"));
+        report("tomcat-throughput", run("throughput"));
+        report("undertow-throughput", run("throughput", "--vending.server.connector=undertow"));
+    }
+
+    private Result run(String profile, String... args) throws Exception {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--server.port=0");
+        arguments.add("--spring.datasource.url=jdbc:h2:mem:" + profile + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        arguments.add("--spring.flyway.locations=classpath:db/migration/{vendor}");
+        arguments.add("--vending.rate-limit.enabled=false");
+        arguments.add("--logging.level.root=WARN");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(VendingApplication.class)
+                .profiles(profile)
+                .run(arguments.toArray(String[]::new))) {
+            String token = seed(context);
+            String baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort()
+                    + context.getEnvironment().getProperty("server.servlet.context-path", "");
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .executor(Executors.newFixedThreadPool(THREADS))
+                    .build();
+            List<HttpRequest> requests = List.of(
+                    request(baseUrl, "/products", token),
+                    request(baseUrl, "/users", token));
+
+            drive(client, requests, WARMUP_REQUESTS_PER_THREAD, new AtomicLong());
+
+            AtomicLong bytes = new AtomicLong();
+            long start = System.nanoTime();
+            long[] latencies = drive(client, requests, REQUESTS_PER_THREAD, bytes);
+            long elapsed = System.nanoTime() - start;
+
+            HttpClient.Version version = client.send(requests.get(0), HttpResponse.BodyHandlers.discarding()).version();
+            return new Result(version, latencies, elapsed, bytes.get());
+        }
+    }
+
+    private String seed(ConfigurableApplicationContext context) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+
+        User seller = userRepository.save(User.builder()
+                .username("benchmark-seller")
+                .password("benchmark")
+                .role(UserRole.SELLER)
+                .deposit(BigDecimal.ZERO)
+                .build());
+        for (int i = 0; i < PRODUCTS; i++) {
+            productRepository.save(Product.builder()
+                    .productName("Benchmark Product " + i)
+                    .sellerId(seller.getId())
+                    .cost(BigDecimal.valueOf(5 + i % 20))
+                    .amountAvailable(100)
+                    .build());
+        }
+        return context.getBean(TokenService.class).issue(seller);
+    }
+
+    private HttpRequest request(String baseUrl, String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Accept-Encoding", "gzip")
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private long[] drive(HttpClient client, List<HttpRequest> requests, int requestsPerThread, AtomicLong bytes)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int offset = i;
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[requestsPerThread];
+                    for (int j = 0; j < requestsPerThread; j++) {
+                        HttpRequest request = requests.get((offset + j) % requests.size());
+                        long start = System.nanoTime();
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        latencies[j] = System.nanoTime() - start;
+                        assertEquals(200, response.statusCode());
+                        bytes.addAndGet(response.body().length);
+                    }
+                    return latencies;
+                }));
+            }
+
+            long[] all = new long[THREADS * requestsPerThread];
+            for (int i = 0; i < THREADS; i++) {
+                System.arraycopy(futures.get(i).get(), 0, all, i * requestsPerThread, requestsPerThread);
+            }
+            Arrays.sort(all);
+            return all;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void report(String configuration, Result result) {
+        long[] latencies = result.latencies;
+        System.out.printf("%-20s %8s %10.0f %10.0f %10.0f %10.0f %10.0f %12d%n",
+                configuration,
+                result.version == HttpClient.Version.HTTP_2 ? "h2c" : "http/1.1",
+                latencies.length / (result.elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)),
+                percentile(latencies, 50), percentile(latencies, 90),
+                percentile(latencies, 99), percentile(latencies, 99.9),
+                result.bytes / latencies.length);
+
+        assertTrue(latencies.length > 0);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000d;
+    }
+
+    private static class Result {
+
+        private final HttpClient.Version version;
+        private final long[] latencies;
+        private final long elapsedNanos;
+        private final long bytes;
+
+        Result(HttpClient.Version version, long[] latencies, long elapsedNanos, long bytes) {
+            this.version = version;
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
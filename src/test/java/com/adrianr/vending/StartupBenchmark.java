@@ -0,0 +1,173 @@
+package com.adrianr.vending;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts the app in a fresh JVM per run and measures the time from process launch to the first successful
+ * {@code GET /products}, plus resident memory right after it. Compares the default eager startup, the
+ * {@code fast-startup} profile, and {@code fast-startup} on top of a dynamic AppCDS archive.
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int RUNS = 3;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    @Test
+    void compareTimeToFirstRequestAndRss(@TempDir Path workDir) throws Exception {
+        String classpath = applicationClasspath(workDir);
+        Path archive = workDir.resolve("vending.jsa");
+
+        Process training = launch(classpath, List.of("-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=off"),
+                "fast-startup", freePort(), "--vending.startup.training-run=true");
+        assertTrue(training.waitFor() == 0 && Files.exists(archive), "AppCDS training run failed");
+
+        System.out.printf("%-24s %14s %10s%n", "configuration", "first req ms", "rss MB");
+        report("eager", classpath, List.of(), "");
+        report("lazy", classpath, List.of(), "fast-startup");
+        report("lazy+appcds", classpath, List.of("-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off"),
+                "fast-startup");
+    }
+
+    private void report(String configuration, String classpath, List<String> jvmOptions, String profiles)
+            throws Exception {
+        long[] millis = new long[RUNS];
+        long[] rssKb = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            int port = freePort();
+            long start = System.nanoTime();
+            Process process = launch(classpath, jvmOptions, profiles, port);
+            try {
+                awaitFirstRequest(process, port, start);
+                millis[i] = (System.nanoTime() - start) / 1_000_000;
+                rssKb[i] = rssKb(process);
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        Arrays.sort(millis);
+        Arrays.sort(rssKb);
+
+        System.out.printf("%-24s %14d %10d%n", configuration, millis[RUNS / 2], rssKb[RUNS / 2] / 1024);
+    }
+
+    private Process launch(String classpath, List<String> jvmOptions, String profiles, int port, String... args)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(VendingApplication.class.getName());
+        if (!profiles.isEmpty()) {
+            command.add("--spring.profiles.active=" + profiles);
+        }
+        command.add("--spring.datasource.url=jdbc:h2:mem:startup");
+        command.add("--server.port=" + port);
+        command.add("--logging.level.root=WARN");
+        command.addAll(List.of(args));
+
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private void awaitFirstRequest(Process process, int port, long start) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/vending/products")).GET().build();
+        while (System.nanoTime() - start < STARTUP_TIMEOUT.toNanos()) {
+            assertTrue(process.isAlive(), "application exited during startup");
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("application did not serve a request within " + STARTUP_TIMEOUT);
+    }
+
+    private static long rssKb(Process process) throws IOException {
+        Path status = Paths.get("/proc", String.valueOf(process.pid()), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst()
+                    .orElse(-1L);
+        }
+    }
+
+    /**
+     * CDS only archives classes loaded from jars, so main classes are packed into a jar (with directory entries, which
+     * Flyway's location scanning needs) and test-only directories are left out. That also means the app runs with its production {@code application.properties}.
+     */
+    private static String applicationClasspath(Path workDir) throws IOException {
+        String testClasspath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        List<String> entries = new ArrayList<>();
+        for (String entry : testClasspath.split(File.pathSeparator)) {
+            Path path = Paths.get(entry);
+            if (Files.isDirectory(path) && path.endsWith("classes")) {
+                entries.add(0, jar(path, workDir.resolve("vending-classes.jar")).toString());
+            } else if (entry.endsWith(".jar")) {
+                entries.add(entry);
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static Path jar(Path classes, Path target) throws IOException {
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(target));
+             Stream<Path> files = Files.walk(classes)) {
+            for (Path file : files.filter(file -> !file.equals(classes)).collect(Collectors.toList())) {
+                String name = classes.relativize(file).toString().replace(File.separatorChar, '/');
+                if (Files.isDirectory(file)) {
+                    jar.putNextEntry(new JarEntry(name + "/"));
+                } else {
+                    jar.putNextEntry(new JarEntry(name));
+                    Files.copy(file, jar);
+                }
+                jar.closeEntry();
+            }
+        }
+        return target;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
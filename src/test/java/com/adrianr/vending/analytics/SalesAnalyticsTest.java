@@ -0,0 +1,151 @@
+package com.adrianr.vending.analytics;
+
+import com.adrianr.vending.config.AnalyticsProperties;
+import com.adrianr.vending.rest.dto.AnalyticsSummaryDto;
+import com.adrianr.vending.rest.dto.TopProductDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesAnalyticsTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    private final AtomicLong clock = new AtomicLong(Instant.parse("2021-10-01T12:30:00Z").toEpochMilli());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SalesAnalytics salesAnalytics;
+
+    @BeforeEach
+    void setUp() {
+        AnalyticsProperties properties = new AnalyticsProperties();
+        properties.setTopCandidates(8);
+        salesAnalytics = new SalesAnalytics(properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void givenManyProducts_whenFewSellMost_ThenExpectThemOnTopWithoutUndercounting() {
+        for (int productId = 1; productId <= 5_000; productId++) {
+            sale(productId, 1, productId % 200, 1);
+        }
+        for (int i = 0; i < 300; i++) {
+            sale(7, 1, i, 3);
+            sale(42, 1, i, 2);
+            sale(4_242, 1, i, 1);
+        }
+        salesAnalytics.drain();
+
+        List<TopProductDto> top = salesAnalytics.topProducts(1, 3);
+
+        assertEquals(List.of(7, 42, 4_242), top.stream().map(TopProductDto::getProductId).collect(Collectors.toList()));
+        assertTrue(top.get(0).getUnits() >= 901);
+        assertTrue(top.get(1).getUnits() >= 601);
+        assertTrue(top.get(2).getUnits() >= 301);
+    }
+
+    @Test
+    void givenManyBuyers_whenEstimatingDistinctBuyers_ThenExpectWithinFewPercent() {
+        for (int buyerId = 0; buyerId < 50_000; buyerId++) {
+            sale(1, 1, buyerId, 1);
+            sale(2, 1, buyerId, 1);
+            if (buyerId % 1_000 == 0) {
+                salesAnalytics.drain();
+            }
+        }
+        salesAnalytics.drain();
+
+        long distinct = salesAnalytics.summary(1).getDistinctBuyers();
+
+        assertTrue(Math.abs(distinct - 50_000) < 50_000 * 0.05, "estimate was " + distinct);
+        assertEquals(100_000, salesAnalytics.summary(1).getUnits());
+    }
+
+    @Test
+    void givenSalesOfTwoSellers_whenReading_ThenExpectEachSellerToSeeOnlyTheirOwn() {
+        sale(1, 9, 8, 2);
+        sale(2, 10, 8, 5);
+        sale(2, 10, 7, 1);
+        salesAnalytics.drain();
+
+        AnalyticsSummaryDto summary = salesAnalytics.summary(9);
+        assertEquals(2, summary.getUnits());
+        assertEquals(BigDecimal.valueOf(2), summary.getRevenue());
+        assertEquals(1, summary.getDistinctBuyers());
+        assertEquals(List.of(1), salesAnalytics.topProducts(9, 10).stream()
+                .map(TopProductDto::getProductId)
+                .collect(Collectors.toList()));
+        assertEquals(2L, salesAnalytics.unitsPerHour(9).get(Instant.parse("2021-10-01T12:00:00Z")));
+        assertEquals(6, salesAnalytics.summary(10).getUnits());
+        assertEquals(2, salesAnalytics.summary(10).getDistinctBuyers());
+    }
+
+    @Test
+    void givenFullQueue_whenSaleArrives_ThenExpectItDroppedAndCounted() {
+        for (int i = 0; i <= 10_000; i++) {
+            sale(1, 1, i, 1);
+        }
+        salesAnalytics.drain();
+
+        assertEquals(10_000, salesAnalytics.summary(1).getUnits());
+        assertEquals(1.0, meterRegistry.get("vending.analytics.dropped").counter().count());
+    }
+
+    @Test
+    void givenSalesAcrossHours_whenWindowSlides_ThenExpectOldHoursDropped() {
+        sale(1, 9, 8, 2);
+        sale(2, 10, 8, 1);
+        salesAnalytics.drain();
+        clock.addAndGet(HOUR);
+        sale(1, 9, 8, 4);
+        salesAnalytics.drain();
+
+        assertEquals(BigDecimal.valueOf(6), salesAnalytics.revenueOfSeller(9));
+        assertEquals(BigDecimal.valueOf(1), salesAnalytics.revenueOfSeller(10));
+        Map<Instant, Long> unitsPerHour = salesAnalytics.unitsPerHour(9);
+        assertEquals(24, unitsPerHour.size());
+        assertEquals(2L, unitsPerHour.get(Instant.parse("2021-10-01T12:00:00Z")));
+        assertEquals(4L, unitsPerHour.get(Instant.parse("2021-10-01T13:00:00Z")));
+
+        clock.addAndGet(23 * HOUR);
+
+        assertEquals(BigDecimal.valueOf(4), salesAnalytics.revenueOfSeller(9));
+        assertEquals(BigDecimal.ZERO, salesAnalytics.revenueOfSeller(10));
+        assertEquals(4, salesAnalytics.summary(9).getUnits());
+    }
+
+    @Test
+    void givenSaleOlderThanWindow_whenDraining_ThenExpectItCountedAsLate() {
+        salesAnalytics.onSale(event(1, 9, 8, 1, Instant.ofEpochMilli(clock.get() - 25 * HOUR)));
+        salesAnalytics.drain();
+
+        assertEquals(0, salesAnalytics.summary(9).getUnits());
+        assertEquals(1.0, meterRegistry.get("vending.analytics.late").counter().count());
+    }
+
+    private void sale(int productId, int sellerId, int buyerId, int amount) {
+        salesAnalytics.onSale(event(productId, sellerId, buyerId, amount, Instant.ofEpochMilli(clock.get())));
+    }
+
+    private static SaleEvent event(int productId, int sellerId, int buyerId, int amount, Instant timestamp) {
+        return SaleEvent.builder()
+                .productId(productId)
+                .productName("Product " + productId)
+                .sellerId(sellerId)
+                .buyerId(buyerId)
+                .amount(amount)
+                .revenue(BigDecimal.valueOf(amount))
+                .timestamp(timestamp)
+                .build();
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.adrianr.vending.catalogue;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.repository.CatalogueChangeRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "vending.catalogue.snapshot.enabled=true",
+        "vending.catalogue.snapshot.debounce-ms=3600000",
+        "vending.catalogue.snapshot.max-age=1h"
+})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@DirtiesContext
+class CatalogueSnapshotIntegrationTest {
+
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CatalogueSnapshot catalogueSnapshot;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CatalogueChangeRepository catalogueChangeRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void givenSnapshot_whenGettingProducts_ThenExpectControllerJsonWithoutQueries() throws Exception {
+        DistributionSummary statements = meterRegistry.summary("vending.http.sql.statements",
+                "method", "GET", "uri", CatalogueSnapshotFilter.PATH);
+        long requestsBefore = statements.count();
+        double statementsBefore = statements.totalAmount();
+
+        HttpResponse<byte[]> response = getProducts("application/json", null);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(productRepository.findAll())),
+                objectMapper.readTree(response.body()));
+        assertEquals("nosniff", response.headers().firstValue("X-Content-Type-Options").orElse(null));
+        // recorded once the filter chain unwinds, which can be just after the client has the response
+        for (int i = 0; i < 100 && statements.count() == requestsBefore; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(requestsBefore + 1, statements.count());
+        assertEquals(statementsBefore, statements.totalAmount());
+    }
+
+    @Test
+    void givenGzipAccepted_whenGettingProducts_ThenExpectPrecompressedSnapshot() throws Exception {
+        HttpResponse<byte[]> plain = getProducts(null, null);
+        HttpResponse<byte[]> compressed = getProducts(null, "gzip, deflate");
+
+        assertEquals("gzip", compressed.headers().firstValue("Content-Encoding").orElse(null));
+        assertTrue(compressed.body().length < plain.body().length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.body()))) {
+            assertEquals(objectMapper.readTree(plain.body()), objectMapper.readTree(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void givenCatalogueChange_whenRefreshed_ThenExpectChangeServed() throws Exception {
+        Product product = productRepository.save(Product.builder()
+                .productName("Snapshot Soda")
+                .sellerId(9)
+                .cost(BigDecimal.valueOf(4))
+                .amountAvailable(8)
+                .build());
+        catalogueChangeRepository.record(product.getId());
+
+        assertFalse(new String(getProducts(null, null).body()).contains("Snapshot Soda"));
+
+        catalogueSnapshot.refresh();
+
+        assertTrue(new String(getProducts(null, null).body()).contains("Snapshot Soda"));
+    }
+
+    @Test
+    void givenCborAccepted_whenGettingProducts_ThenExpectControllerToAnswer() throws Exception {
+        HttpResponse<byte[]> response = getProducts("application/cbor", null);
+
+        assertEquals(200, response.statusCode());
+        assertEquals("application/cbor", response.headers().firstValue("Content-Type").orElse(null));
+    }
+
+    private HttpResponse<byte[]> getProducts(String accept, String acceptEncoding) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/products"));
+        if (accept != null) {
+            request.header("Accept", accept);
+        }
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.adrianr.vending.cluster;
+
+import com.adrianr.vending.VendingApplication;
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.rest.dto.CreateUserDto;
+import com.adrianr.vending.rest.dto.ProductDto;
+import com.adrianr.vending.service.TokenRevocationList;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Three nodes in one JVM, each with its own web server and Hazelcast member joined over TCP on localhost, sharing one
+ * database the way separate processes would. Three is what the default CP subsystem needs for its stock counters.
+ */
+class ClusterIntegrationTest {
+
+    private static final String DATABASE_URL = "jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1";
+    private static final String PASSWORD = "cluster-password";
+    private static final String MEMBERS = "127.0.0.1:5801,127.0.0.1:5802,127.0.0.1:5803";
+
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+    private static ConfigurableApplicationContext third;
+
+    @BeforeAll
+    static void startNodes() {
+        first = startNode(true, MEMBERS);
+        second = startNode(false, MEMBERS);
+        third = startNode(false, MEMBERS);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (third != null) {
+            third.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+        if (first != null) {
+            first.close();
+        }
+    }
+
+    @Test
+    void givenThreeNodes_whenStarted_ThenExpectOneClusterBackedByRaft() throws Exception {
+        assertEquals(3, hazelcast(first).getCluster().getMembers().size());
+        assertEquals(3, hazelcast(third).getCluster().getMembers().size());
+        assertEquals(3, hazelcast(second).getCPSubsystem().getCPSubsystemManagementService().getCPMembers()
+                .toCompletableFuture().get(1, TimeUnit.MINUTES).size());
+    }
+
+    @Test
+    void givenFewerMembersThanCpMembers_whenStarting_ThenExpectStartupRefused() {
+        Throwable failure = assertThrows(Exception.class, () -> startNode(false, "127.0.0.1:5901"));
+        while (failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+
+        assertTrue(failure instanceof IllegalStateException);
+        assertTrue(failure.getMessage().startsWith("vending.cluster.cp-member-count=3"), failure.getMessage());
+    }
+
+    @Test
+    void givenProductCachedOnOneNode_whenUpdatedOnTheOther_ThenExpectFreshProductEverywhere() throws Exception {
+        createUser(first, "cluster-seller", UserRole.SELLER);
+        int productId = createProduct(first, "cluster-seller", "Cluster Cola", 20).get("id").asInt();
+
+        assertEquals("Cluster Cola", send(second, "GET", "/products/" + productId, null, null)
+                .get("productName").asText());
+        assertTrue(hazelcast(first).getMap(HazelcastProductCache.MAP_NAME).containsKey(String.valueOf(productId)));
+
+        send(first, "PUT", "/products/" + productId, "cluster-seller", ProductDto.builder()
+                .productName("Cluster Lemonade")
+                .cost(BigDecimal.valueOf(5))
+                .amountAvailable(20)
+                .build());
+
+        assertEquals("Cluster Lemonade", send(second, "GET", "/products/" + productId, null, null)
+                .get("productName").asText());
+    }
+
+    @Test
+    void givenUserAuthenticatedOnOneNode_whenDeletedOnTheOther_ThenExpectCredentialsEvictedEverywhere()
+            throws Exception {
+        createUser(first, "cluster-leaver", UserRole.BUYER);
+        send(first, "POST", "/deposit/5", "cluster-leaver", null);
+        assertTrue(hazelcast(second).getMap(HazelcastUserCache.MAP_NAME).containsKey("cluster-leaver"));
+
+        send(second, "DELETE", "/users", "cluster-leaver", null);
+
+        assertFalse(hazelcast(first).getMap(HazelcastUserCache.MAP_NAME).containsKey("cluster-leaver"));
+        assertEquals(401, request(first, "POST", "/deposit/5", "cluster-leaver", null).statusCode());
+    }
+
+    @Test
+    void givenUserRevokedOnOneNode_whenCheckedOnTheOther_ThenExpectRevokedEverywhere() {
+        Instant issuedAt = Instant.now().minusSeconds(1);
+        first.getBean(TokenRevocationList.class).revokeUser(4711);
+
+        assertTrue(second.getBean(TokenRevocationList.class).isRevoked(4711, issuedAt));
+    }
+
+    @Test
+    void givenBuyersOnBothNodes_whenRacingForScarceStock_ThenExpectExactlyTheStockSold() throws Exception {
+        int stock = 20;
+        createUser(first, "cluster-stocker", UserRole.SELLER);
+        int productId = createProduct(first, "cluster-stocker", "Cluster Chips", stock).get("id").asInt();
+
+        List<Callable<Void>> buyers = new ArrayList<>();
+        AtomicInteger sold = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            String buyer = "cluster-buyer-" + i;
+            ConfigurableApplicationContext node = i % 2 == 0 ? first : second;
+            createUser(node, buyer, UserRole.BUYER);
+            send(node, "POST", "/deposit/100", buyer, null);
+            buyers.add(() -> {
+                for (int attempt = 0; attempt < stock / 2; attempt++) {
+                    int status = request(node, "POST", "/buy?productId=" + productId + "&amount=1", buyer, null)
+                            .statusCode();
+                    if (status == 200) {
+                        sold.incrementAndGet();
+                    } else {
+                        assertEquals(400, status);
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(buyers.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(buyers)) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(stock, sold.get());
+        assertEquals(0, stockOf(productId));
+        assertEquals(1, first.getBean(ClusterStockAspect.class).counter(productId).get());
+    }
+
+    private static int stockOf(int productId) throws Exception {
+        for (JsonNode product : send(first, "GET", "/products", null, null)) {
+            if (product.get("id").asInt() == productId) {
+                return product.get("amountAvailable").asInt();
+            }
+        }
+        throw new AssertionError("product " + productId + " not found");
+    }
+
+    private static ConfigurableApplicationContext startNode(boolean migrate, String members) {
+        return new SpringApplicationBuilder(VendingApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + DATABASE_URL,
+                "--spring.datasource.username=sa",
+                "--spring.flyway.enabled=" + migrate,
+                "--vending.rate-limit.enabled=false",
+                "--vending.cluster.enabled=true",
+                "--vending.cluster.name=cluster-test",
+                "--vending.cluster.port=5801",
+                "--vending.cluster.members=" + members);
+    }
+
+    private static HazelcastInstance hazelcast(ConfigurableApplicationContext node) {
+        return node.getBean(HazelcastInstance.class);
+    }
+
+    private static void createUser(ConfigurableApplicationContext node, String username, UserRole role)
+            throws Exception {
+        send(node, "POST", "/users", null, CreateUserDto.builder()
+                .username(username)
+                .password(PASSWORD)
+                .role(role)
+                .build());
+    }
+
+    private static JsonNode createProduct(ConfigurableApplicationContext node, String seller, String name, int stock)
+            throws Exception {
+        return send(node, "POST", "/products", seller, ProductDto.builder()
+                .productName(name)
+                .cost(BigDecimal.valueOf(5))
+                .amountAvailable(stock)
+                .build());
+    }
+
+    private static JsonNode send(ConfigurableApplicationContext node, String method, String path, String username,
+                                 Object body) throws Exception {
+        HttpResponse<String> response = request(node, method, path, username, body);
+        assertTrue(response.statusCode() / 100 == 2,
+                () -> method + " " + path + " answered " + response.statusCode() + ": " + response.body());
+        return response.body().isEmpty() ? OBJECT_MAPPER.createObjectNode() : OBJECT_MAPPER.readTree(response.body());
+    }
+
+    private static HttpResponse<String> request(ConfigurableApplicationContext node, String method, String path,
+                                                String username, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:"
+                        + node.getEnvironment().getProperty("local.server.port") + path))
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body)));
+        if (username != null) {
+            request.header("Authorization", "Basic " + Base64.getEncoder()
+                    .encodeToString((username + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8)));
+        }
+        return HTTP.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+}
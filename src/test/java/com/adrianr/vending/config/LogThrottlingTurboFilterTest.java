@@ -0,0 +1,76 @@
+package com.adrianr.vending.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LogThrottlingTurboFilterTest {
+
+    private final LoggerContext loggerContext = new LoggerContext();
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void givenZeroSampleRatio_whenLogging_ThenExpectInfoDroppedAndWarningsKept() {
+        LogThrottlingTurboFilter filter = filter(Map.of("com.adrianr.vending.service", 0.0), Map.of());
+        Logger logger = loggerContext.getLogger("com.adrianr.vending.service.SecurityService");
+
+        assertEquals(FilterReply.DENY, decide(filter, logger, Level.INFO));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, logger, Level.WARN));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, loggerContext.getLogger("com.adrianr.vending.rest.X"),
+                Level.INFO));
+        assertEquals(1, filter.getSampledOut());
+    }
+
+    @Test
+    void givenRateLimit_whenLoggingBeyondIt_ThenExpectDroppedUntilRefilled() {
+        LogThrottlingTurboFilter filter = filter(Map.of(), Map.of("com.adrianr.vending", 2.0));
+        Logger logger = loggerContext.getLogger("com.adrianr.vending.service.VendingService");
+        Logger sibling = loggerContext.getLogger("com.adrianr.vending.rest.VendingController");
+
+        assertEquals(FilterReply.NEUTRAL, decide(filter, logger, Level.INFO));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, sibling, Level.INFO));
+        assertEquals(FilterReply.DENY, decide(filter, logger, Level.INFO));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, logger, Level.INFO));
+        assertEquals(1, filter.getRateLimited());
+    }
+
+    @Test
+    void givenDisabledLevelOrEnabledCheck_whenDeciding_ThenExpectNoTokenTaken() {
+        LogThrottlingTurboFilter filter = filter(Map.of(), Map.of("com.adrianr.vending", 1.0));
+        Logger logger = loggerContext.getLogger("com.adrianr.vending.service.VendingService");
+        logger.setLevel(Level.INFO);
+
+        assertEquals(FilterReply.NEUTRAL, decide(filter, logger, Level.DEBUG));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.INFO, null, null, null));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, logger, Level.INFO));
+        assertEquals(FilterReply.DENY, decide(filter, logger, Level.INFO));
+    }
+
+    @Test
+    void givenNoRules_whenCreated_ThenExpectNothingToInstall() {
+        assertFalse(filter(Map.of(), Map.of()).hasRules());
+    }
+
+    private LogThrottlingTurboFilter filter(Map<String, Double> sampleRatio, Map<String, Double> maxPerSecond) {
+        LoggingProperties properties = new LoggingProperties();
+        properties.setSampleRatio(sampleRatio);
+        properties.setMaxPerSecond(maxPerSecond);
+        return new LogThrottlingTurboFilter(properties, clock::get);
+    }
+
+    private static FilterReply decide(LogThrottlingTurboFilter filter, Logger logger, Level level) {
+        return filter.decide(null, logger, level, "message {}", new Object[]{1}, null);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.adrianr.vending.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadWriteRoutingIntegrationTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "vending.datasource.replica.enabled=true",
+        "vending.datasource.replica.jdbc-url=" + ReadWriteRoutingIntegrationTest.REPLICA_URL,
+        "vending.datasource.replica.username=sa"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ReadWriteRoutingIntegrationTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_PRODUCT_NAME = "Replica Cola";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private static JdbcTemplate primary;
+    private static JdbcTemplate replica;
+
+    @BeforeAll
+    static void prepareReplica() {
+        DriverManagerDataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure()
+                .dataSource(replicaDataSource)
+                .locations("classpath:db/migration/h2", "classpath:db/test-migration")
+                .load()
+                .migrate();
+
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.update("update products set product_name = ? where id = 1", REPLICA_PRODUCT_NAME);
+
+        primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    }
+
+    @Test
+    void givenReplicaEnabled_whenCallingGetProductById_ThenExpectReadFromReplica() throws Exception {
+        mockMvc.perform(get("/products/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productName").value(REPLICA_PRODUCT_NAME));
+    }
+
+    @Test
+    @WithMockUser(roles = "BUYER", username = "test-buyer")
+    void givenReplicaEnabled_whenCallingDeposit_ThenExpectWriteToPrimaryOnly() throws Exception {
+        Integer replicaDeposit = replica.queryForObject("select deposit from users where id = 11", Integer.class);
+        Integer primaryDeposit = primary.queryForObject("select deposit from users where id = 11", Integer.class);
+
+        mockMvc.perform(post("/deposit/5"))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        assertEquals(primaryDeposit + 5, primary.queryForObject("select deposit from users where id = 11", Integer.class));
+        assertEquals(replicaDeposit, replica.queryForObject("select deposit from users where id = 11", Integer.class));
+    }
+
+}
@@ -0,0 +1,344 @@
+package com.adrianr.vending.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a weighted mix of {@link Operation}s against the REST API over real sockets and records latency per
+ * operation in HdrHistograms.
+ * <p>
+ * Everything goes through the public API, seeding included (a seller with products and a pool of buyers, each with
+ * a bearer token), so the same run works against an instance started by the benchmark or one already running
+ * elsewhere. Latencies are measured per request from the client's side and only after the warm-up. Closing the
+ * generator stops the HTTP client's threads.
+ */
+class LoadGenerator implements AutoCloseable {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int[] COINS = {5, 10, 20, 50, 100};
+    private static final String PASSWORD = "load-test";
+
+    private final String baseUrl;
+    private final Settings settings;
+    private final ExecutorService clientExecutor;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong signups = new AtomicLong();
+    private final List<String> buyerTokens = new ArrayList<>();
+    private final List<Integer> productIds = new ArrayList<>();
+
+    LoadGenerator(String baseUrl, Settings settings) {
+        this.baseUrl = baseUrl;
+        this.settings = settings;
+        this.clientExecutor = Executors.newFixedThreadPool(settings.threads);
+        this.client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    void seed() throws IOException, InterruptedException {
+        String sellerToken = signUpAndToken("load-seller-" + runId, "SELLER");
+        for (int i = 0; i < settings.products; i++) {
+            Map<String, Object> product = Map.of(
+                    "productName", "Load Product " + i,
+                    "cost", COINS[i % COINS.length],
+                    "amountAvailable", 1_000_000);
+            HttpResponse<String> response = send(json("/products", product)
+                    .header("Authorization", "Bearer " + sellerToken));
+            expect(response, 201);
+            productIds.add(objectMapper.readTree(response.body()).get("id").asInt());
+        }
+        for (int i = 0; i < settings.buyers; i++) {
+            buyerTokens.add(signUpAndToken("load-buyer-" + runId + "-" + i, "BUYER"));
+        }
+    }
+
+    Report run() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(settings.threads);
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup.toNanos();
+        long until = measureFrom + settings.duration.toNanos();
+        try {
+            List<Future<Report>> futures = new ArrayList<>();
+            for (int i = 0; i < settings.threads; i++) {
+                futures.add(workers.submit(() -> drive(measureFrom, until)));
+            }
+            Report report = new Report(settings.duration);
+            for (Future<Report> future : futures) {
+                report.add(future.get());
+            }
+            return report;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        clientExecutor.shutdownNow();
+    }
+
+    private Report drive(long measureFrom, long until) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Report report = new Report(settings.duration);
+        long now;
+        while ((now = System.nanoTime()) < until) {
+            Operation operation = settings.pick(random);
+            int status = execute(operation, random);
+            long end = System.nanoTime();
+            if (now >= measureFrom) {
+                report.record(operation, status, TimeUnit.NANOSECONDS.toMicros(end - now));
+            }
+        }
+        return report;
+    }
+
+    /**
+     * @return the response status, or -1 if the request did not get a response
+     */
+    private int execute(Operation operation, ThreadLocalRandom random) {
+        String buyer = "Bearer " + buyerTokens.get(random.nextInt(buyerTokens.size()));
+        try {
+            switch (operation) {
+                case BROWSE:
+                    return send(get(random.nextInt(4) == 0
+                            ? "/products/" + productIds.get(random.nextInt(productIds.size()))
+                            : "/products")).statusCode();
+                case DEPOSIT:
+                    return send(post("/deposit/" + COINS[random.nextInt(COINS.length)]).header("Authorization", buyer))
+                            .statusCode();
+                case BUY:
+                    return send(post("/buy?productId=" + productIds.get(random.nextInt(productIds.size()))
+                            + "&amount=1").header("Authorization", buyer)).statusCode();
+                case RESET:
+                    return send(post("/reset").header("Authorization", buyer)).statusCode();
+                case SIGNUP:
+                    return send(json("/users", Map.of(
+                            "username", "load-signup-" + runId + "-" + signups.incrementAndGet(),
+                            "password", PASSWORD,
+                            "role", "BUYER"))).statusCode();
+                default:
+                    throw new IllegalArgumentException("Unsupported operation " + operation);
+            }
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private String signUpAndToken(String username, String role) throws IOException, InterruptedException {
+        expect(send(json("/users", Map.of("username", username, "password", PASSWORD, "role", role))), 201);
+
+        String credentials = Base64.getEncoder()
+                .encodeToString((username + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+        HttpResponse<String> response = send(post("/auth/token").header("Authorization", "Basic " + credentials));
+        expect(response, 200);
+        return objectMapper.readTree(response.body()).get("token").asText();
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+    }
+
+    private HttpRequest.Builder post(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).POST(HttpRequest.BodyPublishers.noBody());
+    }
+
+    private HttpRequest.Builder json(String path, Object body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void expect(HttpResponse<String> response, int status) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException("Seeding " + response.request().uri() + " failed with "
+                    + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    /**
+     * Read from {@code load.*} system properties, e.g.
+     * {@code -Dload.threads=32 -Dload.duration=PT1M -Dload.mix=browse=50,buy=50}. Operations left out of the mix
+     * are not run.
+     */
+    static class Settings {
+
+        final int threads;
+        final Duration warmup;
+        final Duration duration;
+        final int buyers;
+        final int products;
+        final Optional<Path> histogramDirectory;
+        private final Map<Operation, Integer> mix;
+        private final int totalWeight;
+
+        Settings(int threads, Duration warmup, Duration duration, int buyers, int products,
+                 Optional<Path> histogramDirectory, Map<Operation, Integer> mix) {
+            this.threads = threads;
+            this.warmup = warmup;
+            this.duration = duration;
+            this.buyers = buyers;
+            this.products = products;
+            this.histogramDirectory = histogramDirectory;
+            this.mix = mix;
+            this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+            if (totalWeight <= 0) {
+                throw new IllegalArgumentException("The operation mix needs at least one positive weight");
+            }
+        }
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("load.threads", 16),
+                    Duration.parse(System.getProperty("load.warmup", "PT5S")),
+                    Duration.parse(System.getProperty("load.duration", "PT20S")),
+                    Integer.getInteger("load.buyers", 64),
+                    Integer.getInteger("load.products", 100),
+                    Optional.ofNullable(System.getProperty("load.histogram-dir")).map(Paths::get),
+                    parseMix(System.getProperty("load.mix")));
+        }
+
+        static Map<Operation, Integer> parseMix(String mix) {
+            Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+            if (mix == null || mix.isBlank()) {
+                for (Operation operation : Operation.values()) {
+                    weights.put(operation, operation.getDefaultWeight());
+                }
+                return weights;
+            }
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.split("=");
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+            }
+            return weights;
+        }
+
+        Operation pick(Random random) {
+            int roll = random.nextInt(totalWeight);
+            for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+                roll -= entry.getValue();
+                if (roll < 0) {
+                    return entry.getKey();
+                }
+            }
+            throw new IllegalStateException("Unreachable");
+        }
+
+    }
+
+    /**
+     * Per operation latency histogram plus outcome counts: 2xx is ok, 4xx is a rejection the API is expected to give
+     * under this traffic (not enough funds, rate limited), anything else is an error.
+     */
+    static class Report {
+
+        private final Duration duration;
+        private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, long[]> outcomes = new EnumMap<>(Operation.class);
+
+        Report(Duration duration) {
+            this.duration = duration;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new Histogram(HIGHEST_TRACKABLE_MICROS, 3));
+                outcomes.put(operation, new long[3]);
+            }
+        }
+
+        void record(Operation operation, int status, long micros) {
+            latencies.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            outcomes.get(operation)[status >= 200 && status < 300 ? 0 : status >= 400 && status < 500 ? 1 : 2]++;
+        }
+
+        void add(Report other) {
+            for (Operation operation : Operation.values()) {
+                latencies.get(operation).add(other.latencies.get(operation));
+                long[] counts = outcomes.get(operation);
+                long[] otherCounts = other.outcomes.get(operation);
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += otherCounts[i];
+                }
+            }
+        }
+
+        long errors() {
+            return outcomes.values().stream().mapToLong(counts -> counts[2]).sum();
+        }
+
+        long requests() {
+            return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        }
+
+        void print(PrintStream out) {
+            out.printf("%-8s %9s %9s %9s %7s %9s %9s %9s %9s %9s %9s%n", "op", "requests", "ok", "rejected",
+                    "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            Histogram all = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+            long[] totals = new long[3];
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() > 0) {
+                    print(out, operation.name().toLowerCase(), histogram, outcomes.get(operation));
+                    all.add(histogram);
+                    for (int i = 0; i < totals.length; i++) {
+                        totals[i] += outcomes.get(operation)[i];
+                    }
+                }
+            }
+            print(out, "all", all, totals);
+        }
+
+        void writeHistograms(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() > 0) {
+                    try (PrintStream out = new PrintStream(
+                            Files.newOutputStream(directory.resolve(operation.name().toLowerCase() + ".hgrm")))) {
+                        histogram.outputPercentileDistribution(out, 1_000.0);
+                    }
+                }
+            }
+        }
+
+        private void print(PrintStream out, String name, Histogram histogram, long[] counts) {
+            out.printf("%-8s %9d %9d %9d %7d %9.0f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+                    histogram.getTotalCount(), counts[0], counts[1], counts[2],
+                    histogram.getTotalCount() / (duration.toMillis() / 1_000d),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1_000d);
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1_000d;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.adrianr.vending.load;
+
+import com.adrianr.vending.VendingApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link LoadGenerator} against a fresh instance on a random port, or against {@code -Dload.target} when set:
+ * <pre>
+ * mvn -Pbenchmark test -Dtest=LoadGeneratorBenchmark -Dload.threads=32 -Dload.duration=PT1M
+ * mvn -Pbenchmark test -Dtest=LoadGeneratorBenchmark -Dload.target=http://staging:8080/api/vending
+ * </pre>
+ * Rate limiting is switched off on the local instance, so rejections there are only business ones (funds, stock).
+ */
+@Tag("benchmark")
+class LoadGeneratorBenchmark {
+
+    @Test
+    void replayVendingTraffic() throws Exception {
+        LoadGenerator.Settings settings = LoadGenerator.Settings.fromSystemProperties();
+        String target = System.getProperty("load.target");
+        if (target != null) {
+            run(target, settings);
+            return;
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(VendingApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.flyway.locations=classpath:db/migration/{vendor}",
+                        "--vending.rate-limit.enabled=false",
+                        "--logging.level.root=WARN")) {
+            run("http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort()
+                    + context.getEnvironment().getProperty("server.servlet.context-path", ""), settings);
+        }
+    }
+
+    private void run(String baseUrl, LoadGenerator.Settings settings) throws Exception {
+        LoadGenerator.Report report;
+        try (LoadGenerator generator = new LoadGenerator(baseUrl, settings)) {
+            generator.seed();
+            report = generator.run();
+        }
+
+        System.out.printf("%d threads, %s warm-up, %s measured against %s%n",
+                settings.threads, settings.warmup, settings.duration, baseUrl);
+        report.print(System.out);
+        if (settings.histogramDirectory.isPresent()) {
+            Path directory = settings.histogramDirectory.get();
+            report.writeHistograms(directory);
+            System.out.println("Percentile distributions written to " + directory.toAbsolutePath());
+        }
+
+        assertTrue(report.requests() > 0);
+        assertEquals(0, report.errors(), "requests failed with 5xx or without a response");
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.adrianr.vending.load;
+
+/**
+ * What a simulated client does in one step. Default weights roughly follow a busy machine: mostly browsing and
+ * coins, fewer buys, the odd reset and a trickle of sign-ups.
+ */
+enum Operation {
+
+    BROWSE(35),
+    DEPOSIT(30),
+    BUY(20),
+    RESET(10),
+    SIGNUP(5);
+
+    private final int defaultWeight;
+
+    Operation(int defaultWeight) {
+        this.defaultWeight = defaultWeight;
+    }
+
+    int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+}
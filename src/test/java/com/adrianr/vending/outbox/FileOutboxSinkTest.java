@@ -0,0 +1,48 @@
+package com.adrianr.vending.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileOutboxSinkTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void givenTwoBatches_whenPublished_ThenExpectOneJsonLinePerMessageInOrder(@TempDir Path directory)
+            throws Exception {
+        Path file = directory.resolve("outbox").resolve("events.jsonl");
+        FileOutboxSink sink = new FileOutboxSink(file, objectMapper);
+
+        sink.publish(List.of(message(1L), message(2L)));
+        sink.publish(List.of(message(3L)));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            JsonNode line = objectMapper.readTree(lines.get(i));
+            assertEquals(i + 1, line.get("id").asLong());
+            assertEquals(7, line.get("payload").get("productId").asInt());
+        }
+    }
+
+    private static OutboxMessage message(Long id) {
+        return OutboxMessage.builder()
+                .id(id)
+                .type(OutboxWriter.PURCHASE)
+                .aggregateId(7)
+                .createdAt(Instant.now())
+                .payload("{\"productId\":7}")
+                .build();
+    }
+
+}
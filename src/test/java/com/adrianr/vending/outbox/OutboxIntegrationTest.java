@@ -0,0 +1,144 @@
+package com.adrianr.vending.outbox;
+
+import com.adrianr.vending.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "vending.outbox.enabled=true",
+        "vending.outbox.sink=webhook",
+        "vending.outbox.poll-interval-ms=3600000",
+        "vending.rate-limit.enabled=false"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@DirtiesContext
+class OutboxIntegrationTest {
+
+    private static final String BUYER_USERNAME = "buyer";
+    private static final String BUYER_ROLE = "BUYER";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static HttpServer webhook;
+    private static final List<JsonNode> received = new CopyOnWriteArrayList<>();
+    private static volatile int webhookStatus = 200;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @DynamicPropertySource
+    static void webhookProperties(DynamicPropertyRegistry registry) throws IOException {
+        webhook = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        webhook.createContext("/purchases", exchange -> {
+            if (webhookStatus == 200) {
+                OBJECT_MAPPER.readTree(exchange.getRequestBody()).forEach(received::add);
+            }
+            exchange.sendResponseHeaders(webhookStatus, -1);
+            exchange.close();
+        });
+        webhook.start();
+
+        registry.add("vending.outbox.webhook-url",
+                () -> "http://localhost:" + webhook.getAddress().getPort() + "/purchases");
+    }
+
+    @AfterAll
+    static void stopWebhook() {
+        webhook.stop(0);
+    }
+
+    @BeforeEach
+    void resetWebhook() {
+        outboxRelay.relay();
+        received.clear();
+        webhookStatus = 200;
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuy_whenRelayed_ThenExpectPurchaseDeliveredOnce() throws Exception {
+        buyOne();
+
+        outboxRelay.relay();
+        outboxRelay.relay();
+
+        assertEquals(1, received.size());
+        JsonNode purchase = received.get(0);
+        assertEquals(OutboxWriter.PURCHASE, purchase.get("type").asText());
+        assertEquals(2, purchase.get("aggregateId").asInt());
+        assertEquals(1, purchase.get("payload").get("amount").asInt());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenWebhookDown_whenRelayed_ThenExpectPurchaseKeptUntilDelivered() throws Exception {
+        buyOne();
+        webhookStatus = 503;
+
+        outboxRelay.relay();
+
+        assertTrue(received.isEmpty());
+        assertEquals(1, outboxEventRepository.count());
+
+        webhookStatus = 200;
+        outboxRelay.relay();
+
+        assertEquals(1, received.size());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenFailedBuy_whenRelayed_ThenExpectNothingPublished() throws Exception {
+        mockMvc.perform(post("/deposit/10")).andExpect(status().isOk());
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1000"))
+                .andExpect(status().isBadRequest());
+
+        outboxRelay.relay();
+
+        assertTrue(received.isEmpty());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    private void buyOne() throws Exception {
+        mockMvc.perform(post("/deposit/10")).andExpect(status().isOk());
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1"))
+                .andExpect(status().isOk());
+    }
+
+}
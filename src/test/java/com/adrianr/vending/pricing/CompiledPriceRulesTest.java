@@ -0,0 +1,96 @@
+package com.adrianr.vending.pricing;
+
+import com.adrianr.vending.domain.PriceRule;
+import com.adrianr.vending.domain.PriceRuleType;
+import com.adrianr.vending.domain.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledPriceRulesTest {
+
+    private static final Instant NOON = Instant.parse("2021-10-01T12:00:00Z");
+    private static final Product COLA = Product.builder()
+            .id(1)
+            .sellerId(9)
+            .cost(BigDecimal.valueOf(12))
+            .build();
+
+    @Test
+    void givenNoRules_whenPricing_ThenExpectCostTimesAmount() {
+        assertPrice(36, CompiledPriceRules.EMPTY, 3, NOON);
+    }
+
+    @Test
+    void givenPercentageRule_whenPricing_ThenExpectDiscountRoundedToCostScale() {
+        CompiledPriceRules rules = compile(rule(PriceRuleType.PERCENTAGE).productId(1).percentOff(15).build());
+
+        assertPrice(10, rules, 1, NOON);
+        assertPrice(31, rules, 3, NOON);
+    }
+
+    @Test
+    void givenBuyTwoGetOneRule_whenPricing_ThenExpectEveryThirdItemFree() {
+        CompiledPriceRules rules = compile(rule(PriceRuleType.BUY_N_GET_M).productId(1)
+                .buyAmount(2)
+                .freeAmount(1)
+                .build());
+
+        assertPrice(24, rules, 2, NOON);
+        assertPrice(24, rules, 3, NOON);
+        assertPrice(48, rules, 5, NOON);
+        assertPrice(48, rules, 6, NOON);
+    }
+
+    @Test
+    void givenHappyHourOverMidnightOnSeller_whenPricing_ThenExpectPriceOnlyInsideWindow() {
+        CompiledPriceRules rules = compile(rule(PriceRuleType.HAPPY_HOUR)
+                .unitPrice(BigDecimal.valueOf(5))
+                .dailyFrom(LocalTime.of(22, 0))
+                .dailyTo(LocalTime.of(2, 0))
+                .build());
+
+        assertPrice(10, rules, 2, Instant.parse("2021-10-01T23:30:00Z"));
+        assertPrice(10, rules, 2, Instant.parse("2021-10-02T01:59:00Z"));
+        assertPrice(24, rules, 2, Instant.parse("2021-10-02T02:00:00Z"));
+        assertPrice(24, rules, 2, NOON);
+    }
+
+    @Test
+    void givenRulesOutsideTheirDatesAndOverlappingRules_whenPricing_ThenExpectBestRunningRule() {
+        CompiledPriceRules rules = compile(
+                rule(PriceRuleType.PERCENTAGE).productId(1).percentOff(10).build(),
+                rule(PriceRuleType.PERCENTAGE).productId(1).percentOff(50)
+                        .startsAt(NOON.plusSeconds(3600))
+                        .build(),
+                rule(PriceRuleType.PERCENTAGE).percentOff(25)
+                        .endsAt(NOON.plusSeconds(60))
+                        .build(),
+                rule(PriceRuleType.PERCENTAGE).productId(2).percentOff(90).build());
+
+        assertPrice(9, rules, 1, NOON);
+        assertPrice(6, rules, 1, NOON.plusSeconds(3600));
+    }
+
+    private static PriceRule.PriceRuleBuilder rule(PriceRuleType type) {
+        return PriceRule.builder()
+                .sellerId(9)
+                .ruleType(type);
+    }
+
+    private static CompiledPriceRules compile(PriceRule... rules) {
+        return CompiledPriceRules.compile(List.of(rules), ZoneOffset.UTC, NOON.minusSeconds(60));
+    }
+
+    private static void assertPrice(long expected, CompiledPriceRules rules, int amount, Instant at) {
+        assertEquals(0, BigDecimal.valueOf(expected).compareTo(rules.totalPrice(COLA, amount, at)),
+                () -> "price of " + amount + " at " + at + " was " + rules.totalPrice(COLA, amount, at));
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.analytics.SalesAnalytics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "vending.analytics.drain-interval-ms=3600000")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class AnalyticsControllerIntegrationTest {
+
+    private static final String SELLER_ROLE = "SELLER";
+    private static final String BUYER_ROLE = "BUYER";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SalesAnalytics salesAnalytics;
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE)
+    void givenBuyerRole_whenGettingAnalytics_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(get("/analytics/summary"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DirtiesContext
+    void givenCommittedAndRejectedBuys_whenGettingAnalytics_ThenExpectOnlyCommittedSalesAggregated() throws Exception {
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "3")
+                        .with(user("buyer").roles(BUYER_ROLE)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1")
+                        .with(user("buyer").roles(BUYER_ROLE)))
+                .andExpect(status().isBadRequest());
+        salesAnalytics.drain();
+
+        mockMvc.perform(get("/analytics/top-products").queryParam("limit", "5").with(user("seller").roles(SELLER_ROLE)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].productId").value(2))
+                .andExpect(jsonPath("$[0].productName").value("Pepsi"))
+                .andExpect(jsonPath("$[0].units").value(3));
+        mockMvc.perform(get("/analytics/revenue").with(user("seller").roles(SELLER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.9").value(15));
+        mockMvc.perform(get("/analytics/revenue").with(user("test-seller").roles(SELLER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.10").value(0))
+                .andExpect(jsonPath("$.9").doesNotExist());
+        mockMvc.perform(get("/analytics/summary").with(user("seller").roles(SELLER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.units").value(3))
+                .andExpect(jsonPath("$.distinctBuyers").value(1));
+        mockMvc.perform(get("/analytics/summary").with(user("test-seller").roles(SELLER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.units").value(0))
+                .andExpect(jsonPath("$.revenue").value(0))
+                .andExpect(jsonPath("$.distinctBuyers").value(0));
+        mockMvc.perform(get("/analytics/top-products").with(user("test-seller").roles(SELLER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.rest.dto.CreateUserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class AuthControllerIntegrationTest {
+
+    private static final String PASSWORD = "token-password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void givenNoAuth_whenCallingIssueToken_ThenExpectUnauthorizedResponseStatus() throws Exception {
+        mockMvc.perform(post("/auth/token"))
+                .andDo(print())
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBasicAuth_whenCallingIssueToken_ThenExpectBearerTokenUsableOnVendingEndpoints() throws Exception {
+        createUser("token-buyer");
+        String token = issueToken("token-buyer");
+
+        mockMvc.perform(post("/deposit/5").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("token-buyer"))
+                .andExpect(jsonPath("$.deposit").value(5));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBearerToken_whenCallingIssueToken_ThenExpectUnauthorizedResponseStatus() throws Exception {
+        createUser("token-refresher");
+        String token = issueToken("token-refresher");
+
+        mockMvc.perform(post("/auth/token").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andDo(print())
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void givenInvalidBearerToken_whenCallingDeposit_ThenExpectUnauthorizedResponseStatus() throws Exception {
+        mockMvc.perform(post("/deposit/5").header(HttpHeaders.AUTHORIZATION, "Bearer invalid.token.value"))
+                .andDo(print())
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\""));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenDeletedUser_whenUsingPreviouslyIssuedToken_ThenExpectUnauthorizedResponseStatus() throws Exception {
+        createUser("token-deleted");
+        String token = issueToken("token-deleted");
+
+        mockMvc.perform(delete("/users").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/deposit/5").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andDo(print())
+                .andExpect(status().isUnauthorized());
+    }
+
+    private void createUser(String username) throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CreateUserDto.builder()
+                                .username(username)
+                                .password(PASSWORD)
+                                .role(UserRole.BUYER)
+                                .build())))
+                .andExpect(status().isCreated());
+    }
+
+    private String issueToken(String username) throws Exception {
+        String response = mockMvc.perform(post("/auth/token").with(httpBasic(username, PASSWORD)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andExpect(jsonPath("$.expiresIn").value(900))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.adrianr.vending.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class CorrelationIdFilterIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void givenRequestId_whenRequesting_ThenExpectItEchoed() throws Exception {
+        mockMvc.perform(get("/products/1").header(CorrelationIdFilter.REQUEST_ID_HEADER, "edge-1234"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CorrelationIdFilter.REQUEST_ID_HEADER, "edge-1234"));
+    }
+
+    @Test
+    void givenMalformedOrMissingRequestId_whenRequesting_ThenExpectOneGenerated() throws Exception {
+        String generated = mockMvc.perform(get("/products/1")
+                        .header(CorrelationIdFilter.REQUEST_ID_HEADER, "not valid\r\nX-Injected: 1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(CorrelationIdFilter.REQUEST_ID_HEADER);
+        assertDoesNotThrow(() -> UUID.fromString(generated));
+
+        mockMvc.perform(get("/products/1"))
+                .andExpect(header().exists(CorrelationIdFilter.REQUEST_ID_HEADER));
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.adrianr.vending.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GzipRequestFilterTest {
+
+    private static final String BODY = "{\"transactions\":[]}";
+
+    @Test
+    void givenGzipBody_whenReadBlocking_ThenExpectInflatedBody() throws Exception {
+        ServletRequest filtered = filter(new MockHttpServletRequest());
+
+        assertEquals(BODY, new String(filtered.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(-1, filtered.getContentLength());
+    }
+
+    @Test
+    void givenGzipBody_whenReadWithReadListener_ThenExpectInflatedBodyDeliveredOnceAllDataArrived() throws Exception {
+        ServletInputStream in = filter(new NonBlockingRequest()).getInputStream();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        AtomicBoolean allDataRead = new AtomicBoolean();
+
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                byte[] chunk = new byte[4];
+                int n;
+                while (in.isReady() && (n = in.read(chunk)) != -1) {
+                    received.write(chunk, 0, n);
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                allDataRead.set(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+        });
+
+        assertTrue(allDataRead.get());
+        assertTrue(in.isFinished());
+        assertEquals(BODY, received.toString(StandardCharsets.UTF_8));
+    }
+
+    private static ServletRequest filter(MockHttpServletRequest request) throws Exception {
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(gzip(BODY.getBytes(StandardCharsets.UTF_8)));
+        AtomicReference<ServletRequest> filtered = new AtomicReference<>();
+
+        new GzipRequestFilter().doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> filtered.set(req));
+        return filtered.get();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Delivers its body to a read listener in small chunks, the way a container does for non-blocking reads.
+     */
+    private static class NonBlockingRequest extends MockHttpServletRequest {
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream body = new ByteArrayInputStream(getContentAsByteArray());
+            return new ServletInputStream() {
+
+                private boolean ready;
+
+                @Override
+                public int read() {
+                    return body.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    ready = false;
+                    return body.read(buffer, offset, Math.min(length, 3));
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return body.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return ready;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        while (!isFinished()) {
+                            ready = true;
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,429 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.domain.OfflineTransactionType;
+import com.adrianr.vending.repository.CatalogueChangeRepository;
+import com.adrianr.vending.repository.MachineCoinRepository;
+import com.adrianr.vending.repository.MachineSlotRepository;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.CreateMachineDto;
+import com.adrianr.vending.rest.dto.OfflineTransactionDto;
+import com.adrianr.vending.rest.dto.ProductDto;
+import com.adrianr.vending.rest.dto.SyncRequestDto;
+import com.adrianr.vending.service.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class MachineControllerIntegrationTest {
+
+    private static final String BUYER_ROLE = "BUYER";
+    private static final String BUYER_USERNAME = "buyer";
+    private static final String SELLER_ROLE = "SELLER";
+    private static final String SELLER_USERNAME = "seller";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MachineSlotRepository machineSlotRepository;
+
+    @Autowired
+    private MachineCoinRepository machineCoinRepository;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private CatalogueChangeRepository catalogueChangeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @WithMockUser
+    void givenNonExistingMachineId_whenCallingGetMachine_ThenExpectNotFoundResponseStatus() throws Exception {
+        mockMvc.perform(get("/machines/-1"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser
+    void givenExistingMachineId_whenCallingGetMachine_ThenExpectSlotsAndCoinFloat() throws Exception {
+        mockMvc.perform(get("/machines/1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.location").value("Lobby"))
+                .andExpect(jsonPath("$.slots.['1']").value(2))
+                .andExpect(jsonPath("$.coins.['10']").value(1))
+                .andExpect(jsonPath("$.coins.['5']").value(1));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenSeller_whenCreatingMachineAndStockingOwnProduct_ThenExpectEmptyFloatAndStockedSlot() throws Exception {
+        String response = mockMvc.perform(post("/machines")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CreateMachineDto.builder().location("Gym").build())))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.location").value("Gym"))
+                .andExpect(jsonPath("$.ownerId").value(9))
+                .andExpect(jsonPath("$.coins.['100']").value(0))
+                .andExpect(jsonPath("$.coins.['5']").value(0))
+                .andReturn().getResponse().getContentAsString();
+        int machineId = objectMapper.readTree(response).get("id").asInt();
+
+        mockMvc.perform(put("/machines/" + machineId + "/slots/1").queryParam("amount", "4"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.slots.['1']").value(4));
+
+        mockMvc.perform(put("/machines/" + machineId + "/coins/20").queryParam("quantity", "10"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.coins.['20']").value(10));
+    }
+
+    @Test
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenSeller_whenStockingAnotherSellersProduct_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(put("/machines/1/slots/4").queryParam("amount", "4"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = SELLER_ROLE, username = "test-seller")
+    void givenSeller_whenStockingOrLoadingAnotherSellersMachine_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(put("/machines/1/slots/4").queryParam("amount", "4"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(put("/machines/1/coins/20").queryParam("quantity", "10"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DirtiesContext
+    @Transactional
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuyer_whenDepositingAtMachine_ThenExpectCoinAddedToMachineFloat() throws Exception {
+        mockMvc.perform(post("/machines/1/deposit/10"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deposit").value(25));
+
+        assertEquals(2, machineCoinRepository.getById(4).getQuantity());
+        assertEquals(0, machineCoinRepository.getById(9).getQuantity());
+    }
+
+    @Test
+    @DirtiesContext
+    @Transactional
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuyer_whenBuyingAtMachine_ThenExpectOnlyThatMachinesSlotDecremented() throws Exception {
+        Integer globalAmount = productRepository.getById(1).getAmountAvailable();
+
+        mockMvc.perform(post("/machines/1/buy")
+                        .queryParam("productId", "1")
+                        .queryParam("amount", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(12))
+                .andExpect(jsonPath("$.productName").value("Coca Cola"))
+                .andExpect(jsonPath("$.change").value(0));
+
+        assertEquals(1, machineSlotRepository.getById(1).getAmountAvailable());
+        assertEquals(5, machineSlotRepository.getById(2).getAmountAvailable());
+        assertEquals(globalAmount, productRepository.getById(1).getAmountAvailable());
+        assertEquals(BigDecimal.valueOf(3), userRepository.getById(8).getDeposit());
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuyer_whenBuyingMoreThanMachineSlotHolds_ThenExpectBadRequestResponseStatus() throws Exception {
+        mockMvc.perform(post("/machines/1/buy")
+                        .queryParam("productId", "1")
+                        .queryParam("amount", "3"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuyer_whenBuyingProductNotStockedInMachine_ThenExpectNotFoundResponseStatus() throws Exception {
+        mockMvc.perform(post("/machines/1/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DirtiesContext
+    @Transactional
+    @WithMockUser(roles = BUYER_ROLE, username = "test-buyer")
+    void givenBuyer_whenResettingAtMachine_ThenExpectChangeLimitedByCoinFloat() throws Exception {
+        mockMvc.perform(post("/machines/1/reset"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.newDeposit").value(110))
+                .andExpect(jsonPath("$.change.['100']").value(0))
+                .andExpect(jsonPath("$.change.['10']").value(1))
+                .andExpect(jsonPath("$.change.['5']").value(1));
+
+        assertEquals(BigDecimal.valueOf(110), userRepository.getById(11).getDeposit());
+        assertEquals(0, machineCoinRepository.getById(4).getQuantity());
+        assertEquals(0, machineCoinRepository.getById(5).getQuantity());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenGzippedOfflineBatch_whenSyncing_ThenExpectTimestampOrderAndIdempotentReplay() throws Exception {
+        String buyerToken = tokenService.issue(userRepository.findById(8).orElseThrow());
+        String sellerToken = tokenService.issue(userRepository.findById(9).orElseThrow());
+        Instant start = Instant.now();
+        byte[] batch = gzip(objectMapper.writeValueAsBytes(SyncRequestDto.builder()
+                .transactions(List.of(
+                        offline("t2", start.plusSeconds(1), OfflineTransactionType.BUY, 8, 1, 1, buyerToken),
+                        offline("t4", start.plusSeconds(3), OfflineTransactionType.DEPOSIT, 9, null, 10, sellerToken),
+                        offline("t1", start, OfflineTransactionType.DEPOSIT, 8, null, 10, buyerToken),
+                        offline("t3", start.plusSeconds(2), OfflineTransactionType.BUY, 8, 1, 2, buyerToken)))
+                .build()));
+
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(batch))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(0))
+                .andExpect(jsonPath("$.results[*].id").value(contains("t1", "t2", "t3", "t4")))
+                .andExpect(jsonPath("$.results[*].status")
+                        .value(contains("APPLIED", "APPLIED", "REJECTED", "REJECTED")))
+                .andExpect(jsonPath("$.changedProducts.length()").value(4))
+                .andExpect(jsonPath("$.slots.['1']").value(1));
+
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(batch))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[*].status")
+                        .value(everyItem(is("DUPLICATE"))));
+
+        assertEquals(BigDecimal.valueOf(13), userRepository.findById(8).orElseThrow().getDeposit());
+        assertEquals(2, machineCoinRepository.findById(4).orElseThrow().getQuantity());
+        assertEquals(1, machineSlotRepository.findById(1).orElseThrow().getAmountAvailable());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenTransactionsWithoutBuyersToken_whenSyncing_ThenExpectRejectedAndNoMoneyMoved() throws Exception {
+        String otherUsersToken = tokenService.issue(userRepository.findById(11).orElseThrow());
+        Instant start = Instant.now();
+
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder()
+                                .transactions(List.of(
+                                        offline("forged", start, OfflineTransactionType.DEPOSIT, 8, null, 100,
+                                                "not-a-token"),
+                                        offline("borrowed", start.plusSeconds(1), OfflineTransactionType.BUY, 8, 1, 1,
+                                                otherUsersToken),
+                                        offline("backdated", start.minusSeconds(3600), OfflineTransactionType.BUY, 8,
+                                                1, 1, tokenService.issue(userRepository.findById(8).orElseThrow()))))
+                                .build())))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[*].status").value(everyItem(is("REJECTED"))));
+
+        assertEquals(BigDecimal.valueOf(15), userRepository.findById(8).orElseThrow().getDeposit());
+        assertEquals(2, machineSlotRepository.findById(1).orElseThrow().getAmountAvailable());
+    }
+
+    @Test
+    @WithMockUser(roles = SELLER_ROLE, username = "test-seller")
+    void givenSellerNotOwningMachine_whenSyncing_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder().transactions(List.of()).build())))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenCatalogueChanges_whenSyncingFromCursor_ThenExpectOnlyDelta() throws Exception {
+        updateProduct(2, "Pepsi Max");
+        String response = mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder().transactions(List.of()).build())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        int cursor = objectMapper.readTree(response).get("cursor").asInt();
+
+        updateProduct(2, "Pepsi Zero");
+        mockMvc.perform(delete("/products/3")).andExpect(status().isOk());
+
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder()
+                                .cursor(cursor)
+                                .transactions(List.of())
+                                .build())))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(cursor + 2))
+                .andExpect(jsonPath("$.changedProducts.length()").value(1))
+                .andExpect(jsonPath("$.changedProducts[0].productName").value("Pepsi Zero"))
+                .andExpect(jsonPath("$.deletedProductIds").value(contains(3)));
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuyer_whenSyncing_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder().transactions(List.of()).build())))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenChangeCommittingAfterALaterOne_whenSyncingFromCursor_ThenExpectNeitherSkipped() throws Exception {
+        updateProduct(1, "Coca Cola Zero");
+        CountDownLatch firstRecorded = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    catalogueChangeRepository.record(2);
+                    firstRecorded.countDown();
+                    await(releaseFirst);
+                }));
+        firstRecorded.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> catalogueChangeRepository.record(3)));
+        Thread.sleep(200);
+
+        int cursor = syncCursor(0);
+        releaseFirst.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder()
+                                .cursor(cursor)
+                                .transactions(List.of())
+                                .build())))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(cursor + 2))
+                .andExpect(jsonPath("$.changedProducts[*].id").value(contains(2, 3)));
+    }
+
+    private int syncCursor(int cursor) throws Exception {
+        String response = mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(SyncRequestDto.builder()
+                                .cursor(cursor)
+                                .transactions(List.of())
+                                .build())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("cursor").asInt();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void updateProduct(Integer id, String productName) throws Exception {
+        mockMvc.perform(put("/products/" + id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ProductDto.builder()
+                                .productName(productName)
+                                .cost(BigDecimal.valueOf(5))
+                                .amountAvailable(5)
+                                .build())))
+                .andExpect(status().isOk());
+    }
+
+    private static OfflineTransactionDto offline(String id, Instant timestamp, OfflineTransactionType type,
+                                                 Integer userId, Integer productId, Integer amount,
+                                                 String authorization) {
+        return OfflineTransactionDto.builder()
+                .id(id)
+                .timestamp(timestamp)
+                .type(type)
+                .userId(userId)
+                .productId(productId)
+                .amount(amount)
+                .authorization(authorization)
+                .build();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+}
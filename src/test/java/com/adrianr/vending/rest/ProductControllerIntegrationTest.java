@@ -3,7 +3,9 @@ package com.adrianr.vending.rest;
 import com.adrianr.vending.domain.Product;
 import com.adrianr.vending.repository.ProductRepository;
 import com.adrianr.vending.rest.dto.ProductDto;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
@@ -324,4 +326,17 @@ class ProductControllerIntegrationTest {
         assertTrue(productRepository.findById(1).isEmpty());
     }
 
+    @Test
+    void givenCborAccept_whenCallingGetProductById_ThenExpectCborBody() throws Exception {
+        byte[] body = mockMvc.perform(get("/products/1").accept(MediaType.APPLICATION_CBOR))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode product = new CBORMapper().readTree(body);
+        assertEquals("Coca Cola", product.get("productName").asText());
+        assertEquals(9, product.get("sellerId").asInt());
+    }
+
 }
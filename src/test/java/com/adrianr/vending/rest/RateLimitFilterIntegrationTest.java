@@ -0,0 +1,70 @@
+package com.adrianr.vending.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "vending.rate-limit.user.capacity=2",
+        "vending.rate-limit.user.refill-per-second=0.1",
+        "vending.rate-limit.ip.capacity=10",
+        "vending.rate-limit.ip.refill-per-second=0.1"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@DirtiesContext
+class RateLimitFilterIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @WithMockUser(roles = "BUYER", username = "test-buyer")
+    void givenUserOverLimit_whenCallingReset_ThenExpectTooManyRequestsWithRetryAfter() throws Exception {
+        mockMvc.perform(post("/reset")).andExpect(status().isOk());
+        mockMvc.perform(post("/reset")).andExpect(status().isOk());
+
+        mockMvc.perform(post("/reset"))
+                .andDo(print())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"))
+                .andExpect(jsonPath("$.status").value(429));
+    }
+
+    @Test
+    @WithMockUser(roles = "SELLER", username = "seller")
+    void givenUserOverLimit_whenCallingNonVendingEndpoint_ThenExpectNotRateLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/products")).andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void givenFloodOfBadBasicCredentials_whenCallingAnyEndpoint_ThenExpectIpLimitedBeforeAuthentication()
+            throws Exception {
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(get("/users").with(httpBasic("buyer", "guess-" + i)));
+        }
+
+        mockMvc.perform(get("/users").with(httpBasic("buyer", "one-more-guess")))
+                .andDo(print())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.status").value(429));
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.config.ReservationProperties;
+import com.adrianr.vending.domain.Reservation;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.ReservationRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.CreateReservationDto;
+import com.adrianr.vending.service.ReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "vending.reservation.sweep-interval-ms=3600000",
+        "vending.reservation.lease-renew-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class ReservationControllerIntegrationTest {
+
+    private static final String BUYER_USERNAME = "buyer";
+    private static final String BUYER_ROLE = "BUYER";
+    private static final int BUYER_ID = 8;
+    private static final int PRODUCT_ID = 2;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationProperties reservationProperties;
+
+    @Test
+    @WithMockUser(roles = "SELLER")
+    void givenSellerRole_whenReserving_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(reserve(PRODUCT_ID, 1))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenReservation_whenCommitting_ThenExpectHoldSettledOnce() throws Exception {
+        String id = reservationId(2);
+
+        assertEquals(3, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(5);
+
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productName").value("Pepsi"))
+                .andExpect(jsonPath("$.totalPrice").value(10))
+                .andExpect(jsonPath("$.change").value(5));
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isNotFound());
+
+        assertEquals(3, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(5);
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenReservation_whenCancelling_ThenExpectStockAndFundsReturned() throws Exception {
+        String id = reservationId(3);
+
+        mockMvc.perform(post("/reservations/" + id + "/cancel"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+
+        assertEquals(5, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(15);
+    }
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenNotEnoughFunds_whenReserving_ThenExpectBadRequestAndStockUntouched() throws Exception {
+        mockMvc.perform(reserve(1, 2))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        assertEquals(10, productRepository.findById(1).orElseThrow().getAmountAvailable());
+        assertDeposit(15);
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenExpiredHold_whenSweeping_ThenExpectStockAndFundsReturned() throws Exception {
+        reservationProperties.setTtl(Duration.ZERO);
+        String id = reservationId(1);
+
+        reservationService.expire();
+
+        assertEquals(5, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(15);
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenOpenHolds_whenSettling_ThenExpectRowsFollowHolds() throws Exception {
+        String committed = reservationId(1);
+        String open = reservationId(1);
+        assertEquals(2, reservationRepository.count());
+
+        mockMvc.perform(post("/reservations/" + committed + "/commit")).andExpect(status().isOk());
+
+        assertEquals(1, reservationRepository.count());
+        assertEquals(open, reservationRepository.findAll().get(0).getId());
+        mockMvc.perform(get("/reservations/" + open))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("HELD"));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenHoldSettledElsewhere_whenCommitting_ThenExpectConflictAndNoSale() throws Exception {
+        String id = reservationId(2);
+        reservationRepository.deleteById(id);
+
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(get("/reservations/" + id))
+                .andExpect(status().isNotFound());
+        assertEquals(3, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(5);
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenHoldPastItsTtl_whenCommittingBeforeTheSweep_ThenExpectConflictAndHoldReturned() throws Exception {
+        reservationProperties.setTtl(Duration.ZERO);
+        String id = reservationId(1);
+
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isConflict());
+        reservationService.expire();
+
+        assertEquals(5, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(15);
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenExpiredHoldOfAnotherInstance_whenCommitting_ThenExpectConflictAndRowKept() throws Exception {
+        String id = "expired-on-another-instance";
+        reservationRepository.save(Reservation.builder()
+                .id(id)
+                .userId(BUYER_ID)
+                .productId(PRODUCT_ID)
+                .productName("Pepsi")
+                .sellerId(9)
+                .amount(1)
+                .totalPrice(BigDecimal.valueOf(5))
+                .expiresAt(Instant.now().minusSeconds(1))
+                .heldBy("another-instance")
+                .leaseExpiresAt(Instant.now().plusSeconds(60))
+                .build());
+
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isConflict());
+
+        assertEquals(1, reservationRepository.count());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenHoldOfAnotherInstance_whenCommitting_ThenExpectSettledFromItsRow() throws Exception {
+        String id = "held-by-another-instance";
+        reservationRepository.save(Reservation.builder()
+                .id(id)
+                .userId(BUYER_ID)
+                .productId(PRODUCT_ID)
+                .productName("Pepsi")
+                .sellerId(9)
+                .amount(1)
+                .totalPrice(BigDecimal.valueOf(5))
+                .expiresAt(Instant.now().plusSeconds(60))
+                .heldBy("another-instance")
+                .leaseExpiresAt(Instant.now().plusSeconds(60))
+                .build());
+
+        mockMvc.perform(get("/reservations/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("HELD"));
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(5));
+        mockMvc.perform(post("/reservations/" + id + "/commit"))
+                .andExpect(status().isNotFound());
+        assertEquals(0, reservationRepository.count());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenLapsedHoldOfCrashedInstance_whenAdoptingTwice_ThenExpectReleasedOnce() throws Exception {
+        reservationProperties.setTtl(Duration.ZERO);
+        String id = reservationId(2);
+        Reservation reservation = reservationRepository.findById(id).orElseThrow();
+        reservation.setHeldBy("crashed");
+        reservation.setLeaseExpiresAt(Instant.now().minusSeconds(1));
+        reservationRepository.save(reservation);
+
+        reservationService.restore();
+        reservationService.renewLeases();
+        assertNotEquals("crashed", reservationRepository.findById(id).orElseThrow().getHeldBy());
+        reservationService.expire();
+
+        assertEquals(0, reservationRepository.count());
+        assertEquals(5, productRepository.findById(PRODUCT_ID).orElseThrow().getAmountAvailable());
+        assertDeposit(15);
+    }
+
+    private String reservationId(int amount) throws Exception {
+        String body = mockMvc.perform(reserve(PRODUCT_ID, amount))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status").value("HELD"))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asText();
+    }
+
+    private RequestBuilder reserve(int productId, int amount) throws Exception {
+        return post("/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(CreateReservationDto.builder()
+                        .productId(productId)
+                        .amount(amount)
+                        .build()));
+    }
+
+    private void assertDeposit(int expected) {
+        assertEquals(0, BigDecimal.valueOf(expected)
+                .compareTo(userRepository.findById(BUYER_ID).orElseThrow().getDeposit()));
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.domain.PriceRuleType;
+import com.adrianr.vending.rest.dto.PriceRuleDto;
+import com.adrianr.vending.rest.dto.ProductDto;
+import com.adrianr.vending.service.RestockService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "vending.restock.check-interval-ms=3600000")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class SellerControllerIntegrationTest {
+
+    private static final String SELLER_USERNAME = "seller";
+    private static final String SELLER_ROLE = "SELLER";
+    private static final String BUYER_ROLE = "BUYER";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RestockService restockService;
+
+    @Test
+    @WithMockUser(roles = BUYER_ROLE)
+    void givenBuyerRole_whenGettingMySummary_ThenExpectForbiddenResponseStatus() throws Exception {
+        mockMvc.perform(get("/sellers/me/summary"))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenSeller_whenGettingMyProducts_ThenExpectOnlyOwnProducts() throws Exception {
+        mockMvc.perform(get("/sellers/me/products"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[*].sellerId", everyItem(is(9))));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBuysAndProductChanges_whenGettingMySummary_ThenExpectSummaryKeptUpToDate() throws Exception {
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "3")
+                        .with(user("buyer").roles(BUYER_ROLE)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1")
+                        .with(user("buyer").roles(BUYER_ROLE)))
+                .andExpect(status().isBadRequest());
+
+        ProductDto payload = ProductDto.builder()
+                .productName("Sprite")
+                .cost(BigDecimal.TEN)
+                .amountAvailable(4)
+                .build();
+        mockMvc.perform(post("/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload))
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(delete("/products/3").with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/sellers/me/summary").with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sellerId").value(9))
+                .andExpect(jsonPath("$.productCount").value(3))
+                .andExpect(jsonPath("$.unitsSold").value(3))
+                .andExpect(jsonPath("$.revenue").value(15))
+                .andExpect(jsonPath("$.sales").value(1));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBuysDrainingStock_whenChecking_ThenExpectOneAlertPerItemUntilAcknowledged() throws Exception {
+        buy("/buy", "buyer", 2, 3);
+        buy("/buy", "test-buyer", 3, 1);
+        restockService.check();
+        buy("/machines/1/buy", "test-buyer", 1, 1);
+        restockService.check();
+        buy("/buy", "test-buyer", 2, 1);
+        restockService.check();
+
+        MvcResult queue = mockMvc.perform(get("/sellers/me/restock-queue")
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].productId").value(2))
+                .andExpect(jsonPath("$[0].machineId").doesNotExist())
+                .andExpect(jsonPath("$[0].amountAvailable").value(2))
+                .andExpect(jsonPath("$[1].productId").value(1))
+                .andExpect(jsonPath("$[1].machineId").value(1))
+                .andExpect(jsonPath("$[1].amountAvailable").value(1))
+                .andReturn();
+        Integer firstId = objectMapper.readTree(queue.getResponse().getContentAsString()).get(0).get("id").asInt();
+
+        mockMvc.perform(delete("/sellers/me/restock-queue/" + firstId).with(user("test-seller").roles(SELLER_ROLE)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/sellers/me/restock-queue/" + firstId).with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/sellers/me/restock-queue").with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].productId").value(1));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenOpenStream_whenStockRunsLow_ThenExpectAlertBatchPushed() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/sellers/me/restock-queue/stream")
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        buy("/buy", "buyer", 2, 3);
+        restockService.check();
+
+        String body = stream.getResponse().getContentAsString();
+        assertTrue(body.contains("event:restock"), body);
+        assertTrue(body.contains("\"productId\":2"), body);
+    }
+
+    @Test
+    @DirtiesContext
+    void givenPercentageRule_whenBuying_ThenExpectDiscountUntilRuleDeleted() throws Exception {
+        MvcResult created = mockMvc.perform(post("/sellers/me/price-rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(PriceRuleDto.builder()
+                                .productId(3)
+                                .ruleType(PriceRuleType.PERCENTAGE)
+                                .percentOff(50)
+                                .build()))
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andDo(print())
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.sellerId").value(9))
+                .andReturn();
+        Integer ruleId = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asInt();
+
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "3")
+                        .queryParam("amount", "2")
+                        .with(user("buyer").roles(BUYER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(3));
+
+        mockMvc.perform(delete("/sellers/me/price-rules/" + ruleId).with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "3")
+                        .queryParam("amount", "2")
+                        .with(user("buyer").roles(BUYER_ROLE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(6));
+    }
+
+    @Test
+    void givenOtherSellersProductOrIncompleteRule_whenCreatingPriceRule_ThenExpectRejected() throws Exception {
+        mockMvc.perform(post("/sellers/me/price-rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(PriceRuleDto.builder()
+                                .productId(4)
+                                .ruleType(PriceRuleType.PERCENTAGE)
+                                .percentOff(10)
+                                .build()))
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/sellers/me/price-rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(PriceRuleDto.builder()
+                                .ruleType(PriceRuleType.HAPPY_HOUR)
+                                .unitPrice(BigDecimal.ONE)
+                                .build()))
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/sellers/me/price-rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(PriceRuleDto.builder()
+                                .productId(3)
+                                .ruleType(PriceRuleType.HAPPY_HOUR)
+                                .unitPrice(new BigDecimal("12.5"))
+                                .dailyFrom(LocalTime.of(17, 0))
+                                .dailyTo(LocalTime.of(18, 0))
+                                .build()))
+                        .with(user(SELLER_USERNAME).roles(SELLER_ROLE)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void buy(String path, String username, int productId, int amount) throws Exception {
+        mockMvc.perform(post(path)
+                        .queryParam("productId", String.valueOf(productId))
+                        .queryParam("amount", String.valueOf(amount))
+                        .with(user(username).roles(BUYER_ROLE)))
+                .andExpect(status().isOk());
+    }
+
+}
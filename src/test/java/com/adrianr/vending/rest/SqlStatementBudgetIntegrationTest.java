@@ -0,0 +1,161 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.rest.dto.CreateUserDto;
+import com.adrianr.vending.rest.dto.UpdateUserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement budgets per endpoint. A change that makes an endpoint run more SQL than its budget fails here; lower the
+ * budget when an endpoint gets cheaper. Requests authenticate with real Basic credentials, so the statements spent
+ * looking up the caller count against the budget too.
+ */
+@SpringBootTest(properties = {
+        "vending.sql-statements.expose-header=true",
+        "vending.rate-limit.enabled=false"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class SqlStatementBudgetIntegrationTest {
+
+    private static final String PASSWORD = "budget";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void givenCatalogue_whenBrowsing_ThenExpectWithinBudget() throws Exception {
+        mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(1));
+        mockMvc.perform(get("/products/1"))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(1));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBuyer_whenDepositingBuyingAndResetting_ThenExpectWithinBudget() throws Exception {
+        RequestPostProcessor buyer = createUser("budget-buyer", UserRole.BUYER);
+
+        mockMvc.perform(post("/deposit/10").with(buyer))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(5));
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1")
+                        .with(buyer))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(8));
+        mockMvc.perform(post("/reset").with(buyer))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(5));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBuyer_whenUpdatingUser_ThenExpectWithinBudget() throws Exception {
+        RequestPostProcessor buyer = createUser("budget-renamed", UserRole.BUYER);
+
+        mockMvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(UpdateUserDto.builder()
+                                .username("bob")
+                                .build()))
+                        .with(buyer))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(5));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenSeller_whenReadingDashboard_ThenExpectWithinBudget() throws Exception {
+        RequestPostProcessor seller = createUser("budget-seller", UserRole.SELLER);
+
+        mockMvc.perform(get("/sellers/me/products").with(seller))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(4));
+        mockMvc.perform(get("/sellers/me/summary").with(seller))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(5));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenBasicCredentials_whenRequesting_ThenExpectUserAndAuthorityLookupsCounted() throws Exception {
+        RequestPostProcessor buyer = createUser("budget-caller", UserRole.BUYER);
+
+        int anonymous = statements(mockMvc.perform(get("/products/1")).andExpect(status().isOk()).andReturn());
+        int authenticated = statements(mockMvc.perform(get("/products/1").with(buyer))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        assertEquals(anonymous + 2, authenticated);
+    }
+
+    @Test
+    void givenRequest_whenServed_ThenExpectStatementsRecordedPerEndpoint() throws Exception {
+        mockMvc.perform(get("/products/1")).andExpect(status().isOk());
+
+        assertTrue(meterRegistry.get("vending.http.sql.statements")
+                .tags("method", "GET", "uri", "/products/{id}")
+                .summary()
+                .totalAmount() >= 1);
+    }
+
+    private RequestPostProcessor createUser(String username, UserRole role) throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CreateUserDto.builder()
+                                .username(username)
+                                .password(PASSWORD)
+                                .role(role)
+                                .build())))
+                .andExpect(status().isCreated());
+        return httpBasic(username, PASSWORD);
+    }
+
+    private static int statements(MvcResult result) {
+        String statements = result.getResponse().getHeader(SqlStatementFilter.STATEMENTS_HEADER);
+        assertNotNull(statements, "no statement count on the response");
+        return Integer.parseInt(statements);
+    }
+
+    private static ResultMatcher statementsAtMost(int budget) {
+        return result -> {
+            String statements = result.getResponse().getHeader(SqlStatementFilter.STATEMENTS_HEADER);
+            assertNotNull(statements, "no statement count on the response");
+            assertTrue(Integer.parseInt(statements) <= budget, () -> result.getRequest().getMethod() + " "
+                    + result.getRequest().getRequestURI() + " ran " + statements + " statements, budget is " + budget);
+        };
+    }
+
+}
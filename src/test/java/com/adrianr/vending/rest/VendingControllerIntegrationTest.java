@@ -1,14 +1,18 @@
 package com.adrianr.vending.rest;
 
+import com.adrianr.vending.domain.User;
 import com.adrianr.vending.domain.UserRole;
 import com.adrianr.vending.repository.ProductRepository;
 import com.adrianr.vending.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
@@ -21,6 +25,7 @@ import java.math.BigDecimal;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -189,4 +194,44 @@ class VendingControllerIntegrationTest {
         assertEquals(BigDecimal.ZERO, userRepository.getById(11).getDeposit());
     }
 
+    @Test
+    @DirtiesContext
+    @Transactional
+    @WithMockUser(roles = BUYER_ROLE, username = "test-buyer")
+    void givenDepositNoCoinCovers_whenCallingReset_thenExpectRemainderReportedAsNewDeposit() throws Exception {
+        User user = userRepository.getById(11);
+        user.setDeposit(BigDecimal.valueOf(74));
+        userRepository.saveAndFlush(user);
+
+        mockMvc.perform(post("/reset"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.newDeposit").value(4))
+                .andExpect(jsonPath("$.change.['50']").value(1))
+                .andExpect(jsonPath("$.change.['20']").value(1))
+                .andExpect(jsonPath("$.change.['5']").value(0));
+
+        assertEquals(BigDecimal.valueOf(4), userRepository.getById(11).getDeposit());
+    }
+
+    @Test
+    @DirtiesContext
+    @Transactional
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenCborAccept_whenCallingBuy_thenExpectCborBody() throws Exception {
+        byte[] body = mockMvc.perform(post("/buy")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .queryParam("productId", "1")
+                        .queryParam("amount", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode response = new CBORMapper().readTree(body);
+        assertEquals(12, response.get("totalPrice").asInt());
+        assertEquals("Coca Cola", response.get("productName").asText());
+        assertEquals(0, response.get("change").asInt());
+    }
+
 }
@@ -0,0 +1,87 @@
+package com.adrianr.vending.rest;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.rest.dto.BuyResponseDto;
+import com.adrianr.vending.rest.dto.ChangeDto;
+import com.adrianr.vending.rest.dto.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("benchmark")
+class WireFormatBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+
+    @Test
+    void compareJsonAndCborPayloadSizeAndSerializationCost() throws Exception {
+        Product product = Product.builder()
+                .id(1).productName("Coca Cola").sellerId(9).cost(BigDecimal.valueOf(12)).amountAvailable(10)
+                .build();
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("BuyResponseDto", BuyResponseDto.of(product, 1, BigDecimal.valueOf(12), BigDecimal.valueOf(3)));
+        samples.put("ChangeDto", ChangeDto.builder().change(Map.of(100, 1, 50, 0, 20, 1, 10, 0, 5, 1)).build());
+        samples.put("UserDto", UserDto.fromUser(User.builder()
+                .id(8).username("buyer").role(UserRole.BUYER).deposit(BigDecimal.valueOf(15)).build()));
+        samples.put("Product", product);
+        samples.put("List<Product>", List.of(product, product, product, product, product, product, product, product));
+
+        System.out.printf("%-16s %10s %10s %14s %14s %14s %14s%n", "payload", "json B", "cbor B",
+                "json ser ns", "cbor ser ns", "json read ns", "cbor read ns");
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            byte[] jsonBytes = json.writeValueAsBytes(sample.getValue());
+            byte[] cborBytes = cbor.writeValueAsBytes(sample.getValue());
+
+            System.out.printf("%-16s %10d %10d %14.0f %14.0f %14.0f %14.0f%n", sample.getKey(),
+                    jsonBytes.length, cborBytes.length,
+                    serializeNanos(json, sample.getValue()), serializeNanos(cbor, sample.getValue()),
+                    readNanos(json, jsonBytes), readNanos(cbor, cborBytes));
+
+            assertTrue(cborBytes.length < jsonBytes.length, sample.getKey());
+        }
+    }
+
+    private static double serializeNanos(ObjectMapper mapper, Object value) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += mapper.writeValueAsBytes(value).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += mapper.writeValueAsBytes(value).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static double readNanos(ObjectMapper mapper, byte[] bytes) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += mapper.readTree(bytes).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += mapper.readTree(bytes).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return (double) elapsed / ITERATIONS;
+    }
+
+}
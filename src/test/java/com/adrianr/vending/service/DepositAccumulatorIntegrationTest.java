@@ -0,0 +1,184 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.domain.OfflineTransactionType;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.OfflineTransactionDto;
+import com.adrianr.vending.rest.dto.SyncRequestDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "vending.deposit.coalescing.enabled=true",
+        "vending.deposit.coalescing.flush-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class DepositAccumulatorIntegrationTest {
+
+    private static final String BUYER_ROLE = "BUYER";
+    private static final String BUYER_USERNAME = "buyer";
+    private static final int BUYER_ID = 8;
+    private static final String SELLER_ROLE = "SELLER";
+    private static final String SELLER_USERNAME = "seller";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DepositAccumulator depositAccumulator;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenCoinBurst_whenDepositing_ThenExpectPendingVisibleAndSingleWriteOnFlush() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/deposit/10")).andExpect(status().isOk());
+        }
+
+        assertEquals(0, BigDecimal.valueOf(15).compareTo(userRepository.findById(BUYER_ID).orElseThrow().getDeposit()));
+        mockMvc.perform(get("/users/" + BUYER_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deposit").value(45));
+
+        depositAccumulator.flushAll();
+
+        assertEquals(0, BigDecimal.valueOf(45).compareTo(userRepository.findById(BUYER_ID).orElseThrow().getDeposit()));
+        assertEquals(0, depositAccumulator.pendingAmount(BUYER_ID).signum());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenPendingDeposit_whenBuying_ThenExpectBuySeesFullBalance() throws Exception {
+        mockMvc.perform(post("/deposit/10")).andExpect(status().isOk());
+
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "1")
+                        .queryParam("amount", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(24));
+
+        assertEquals(0, BigDecimal.ONE.compareTo(userRepository.findById(BUYER_ID).orElseThrow().getDeposit()));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = SELLER_ROLE, username = SELLER_USERNAME)
+    void givenPendingDeposit_whenSyncingDepositThenBuy_ThenExpectBuySeesFullBalance() throws Exception {
+        depositAccumulator.add(BUYER_ID, 10);
+        String buyerToken = tokenService.issue(userRepository.findById(BUYER_ID).orElseThrow());
+        Instant start = Instant.now();
+
+        mockMvc.perform(post("/machines/1/sync")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(SyncRequestDto.builder()
+                                .transactions(List.of(
+                                        offline("t1", start, OfflineTransactionType.DEPOSIT, null, 5, buyerToken),
+                                        offline("t2", start.plusSeconds(1), OfflineTransactionType.BUY, 1, 2,
+                                                buyerToken)))
+                                .build())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[*].status").value(contains("APPLIED", "APPLIED")));
+
+        assertEquals(0, BigDecimal.valueOf(6).compareTo(userRepository.findById(BUYER_ID).orElseThrow().getDeposit()));
+        assertEquals(0, depositAccumulator.pendingAmount(BUYER_ID).signum());
+    }
+
+    @Test
+    @DirtiesContext
+    void givenPendingDeposit_whenFlushingInsideTransaction_ThenExpectRejected() {
+        depositAccumulator.add(BUYER_ID, 10);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(
+                status -> depositAccumulator.flush(BUYER_ID)));
+        assertEquals(0, BigDecimal.TEN.compareTo(depositAccumulator.pendingAmount(BUYER_ID)));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenConcurrentCoinsAndFlushes_whenDraining_ThenExpectNoCoinLost() throws Exception {
+        int threads = 8;
+        int coinsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean adding = new AtomicBoolean(true);
+        try {
+            Future<?> flusher = executor.submit(() -> {
+                while (adding.get()) {
+                    depositAccumulator.flushAll();
+                }
+            });
+            List<Future<?>> adders = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                adders.add(executor.submit(() -> {
+                    for (int j = 0; j < coinsPerThread; j++) {
+                        depositAccumulator.add(BUYER_ID, 5);
+                    }
+                }));
+            }
+            for (Future<?> adder : adders) {
+                adder.get();
+            }
+            adding.set(false);
+            flusher.get();
+        } finally {
+            executor.shutdown();
+        }
+        depositAccumulator.flushAll();
+
+        BigDecimal expected = BigDecimal.valueOf(15 + threads * coinsPerThread * 5);
+        assertEquals(0, expected.compareTo(userRepository.findById(BUYER_ID).orElseThrow().getDeposit()));
+    }
+
+    private static OfflineTransactionDto offline(String id, Instant timestamp, OfflineTransactionType type,
+                                                 Integer productId, Integer amount, String authorization) {
+        return OfflineTransactionDto.builder()
+                .id(id)
+                .timestamp(timestamp)
+                .type(type)
+                .userId(BUYER_ID)
+                .productId(productId)
+                .amount(amount)
+                .authorization(authorization)
+                .build();
+    }
+
+}
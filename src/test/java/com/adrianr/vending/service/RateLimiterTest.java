@@ -0,0 +1,76 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setUser(new RateLimitProperties.Bucket(3, 1));
+        properties.setMaxConcurrentPerUser(2);
+        rateLimiter = new RateLimiter(properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void givenFullBucket_whenAcquiringBeyondCapacity_ThenExpectWaitUntilNextToken() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.acquireUser("buyer"));
+        }
+
+        long wait = rateLimiter.acquireUser("buyer");
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1), wait);
+        assertEquals(1, RateLimiter.toRetryAfterSeconds(wait));
+        assertEquals(1.0, meterRegistry.get("vending.rate-limit.rejections").tag("reason", "user").counter().count());
+    }
+
+    @Test
+    void givenEmptyBucket_whenTimePasses_ThenExpectTokensRefilled() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquireUser("buyer");
+        }
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2_000));
+
+        assertEquals(0, rateLimiter.acquireUser("buyer"));
+        assertEquals(0, rateLimiter.acquireUser("buyer"));
+        assertTrue(rateLimiter.acquireUser("buyer") > 0);
+    }
+
+    @Test
+    void givenDifferentUsers_whenAcquiring_ThenExpectIndependentBuckets() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquireUser("buyer");
+        }
+
+        assertEquals(0, rateLimiter.acquireUser("other-buyer"));
+    }
+
+    @Test
+    void givenConcurrencyCap_whenEnteringBeyondCap_ThenExpectRejectedUntilExit() {
+        assertTrue(rateLimiter.enter("buyer"));
+        assertTrue(rateLimiter.enter("buyer"));
+        assertFalse(rateLimiter.enter("buyer"));
+
+        rateLimiter.exit("buyer");
+
+        assertTrue(rateLimiter.enter("buyer"));
+        assertEquals(1.0, meterRegistry.get("vending.rate-limit.rejections").tag("reason", "concurrency").counter().count());
+    }
+
+}
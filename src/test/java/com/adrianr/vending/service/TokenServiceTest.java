@@ -0,0 +1,94 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.config.TokenProperties;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.domain.UserRole;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T10:00:00Z");
+
+    private final User user = User.builder()
+            .id(8)
+            .username("buyer")
+            .role(UserRole.BUYER)
+            .build();
+
+    private TokenProperties properties;
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TokenProperties();
+        properties.setSecret("test-secret-test-secret-test-secret");
+        properties.setTtl(Duration.ofMinutes(15));
+        revocationList = new TokenRevocationList(properties, Optional.empty());
+    }
+
+    @Test
+    void givenIssuedToken_whenVerifying_ThenExpectPrincipalWithIdAndRole() {
+        TokenService tokenService = tokenServiceAt(NOW);
+
+        VendingPrincipal principal = tokenService.verify(tokenService.issue(user)).orElseThrow();
+
+        assertEquals(8, principal.getId());
+        assertEquals("buyer", principal.getUsername());
+        assertEquals("ROLE_BUYER", principal.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void givenExpiredToken_whenVerifying_ThenExpectEmpty() {
+        String token = tokenServiceAt(NOW).issue(user);
+
+        assertTrue(tokenServiceAt(NOW.plus(Duration.ofMinutes(15))).verify(token).isEmpty());
+    }
+
+    @Test
+    void givenExpiredToken_whenVerifyingAtTimeItWasValid_ThenExpectPrincipalOnlyInsideItsLifetime() {
+        String token = tokenServiceAt(NOW).issue(user);
+        TokenService later = tokenServiceAt(NOW.plus(Duration.ofDays(1)));
+
+        assertEquals(8, later.verifyAt(token, NOW.plusSeconds(60)).orElseThrow().getId());
+        assertTrue(later.verifyAt(token, NOW.minusSeconds(1)).isEmpty());
+        assertTrue(later.verifyAt(token, NOW.plus(Duration.ofMinutes(15))).isEmpty());
+    }
+
+    @Test
+    void givenTamperedToken_whenVerifying_ThenExpectEmpty() {
+        TokenService tokenService = tokenServiceAt(NOW);
+        String token = tokenService.issue(user);
+        String[] parts = token.split("\\.");
+        String forgedPayload = java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"iss\":\"vending\",\"sub\":\"buyer\",\"uid\":8,\"role\":\"SELLER\",\"iat\":0,\"exp\":9999999999}".getBytes());
+
+        assertTrue(tokenService.verify(parts[0] + "." + forgedPayload + "." + parts[2]).isEmpty());
+        assertTrue(tokenService.verify("not-a-token").isEmpty());
+    }
+
+    @Test
+    void givenRevokedUser_whenVerifyingTokenIssuedBefore_ThenExpectEmpty() {
+        TokenService tokenService = tokenServiceAt(NOW.minusSeconds(60));
+        String token = tokenService.issue(user);
+
+        revocationList.revokeUser(user.getId());
+
+        assertTrue(tokenService.verify(token).isEmpty());
+    }
+
+    private TokenService tokenServiceAt(Instant instant) {
+        return new TokenService(properties, revocationList, new ObjectMapper(), Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+}
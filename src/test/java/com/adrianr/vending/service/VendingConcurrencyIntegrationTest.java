@@ -0,0 +1,249 @@
+package com.adrianr.vending.service;
+
+import com.adrianr.vending.domain.Product;
+import com.adrianr.vending.domain.SellerSummary;
+import com.adrianr.vending.domain.User;
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.repository.ProductRepository;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.BuyResponseDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs buyers and sellers in parallel against the services and checks the books balance afterwards: every coin
+ * deposited is either still on a deposit, spent on a sale or paid back as change, every unit of stock that left a
+ * product was sold, and no stock ever goes negative.
+ */
+@SpringBootTest(properties = {
+        "vending.restock.check-interval-ms=3600000",
+        "vending.deposit.coalescing.flush-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class VendingConcurrencyIntegrationTest {
+
+    private static final int[] COINS = {5, 10, 20, 50, 100};
+    private static final int SELLER_ID = 9;
+    private static final int BUYERS = 12;
+    private static final int SELLERS = 2;
+    private static final int OPERATIONS_PER_BUYER = 200;
+    private static final int OPERATIONS_PER_SELLER = 100;
+
+    @Autowired
+    private VendingService vendingService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DepositAccumulator depositAccumulator;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SellerDashboardService sellerDashboardService;
+
+    @Test
+    @DirtiesContext
+    void givenBuyersAndSellersRacing_whenTrading_ThenExpectMoneyAndStockConserved() throws Exception {
+        List<Integer> buyerIds = createBuyers(BUYERS);
+        Map<Integer, Integer> initialStock = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            Product product = createProduct("Stress " + i, 5 + i, 150);
+            initialStock.put(product.getId(), product.getAmountAvailable());
+        }
+        List<Integer> productIds = new ArrayList<>(initialStock.keySet());
+        SellerSummary summaryBefore = sellerSummary();
+
+        LongAdder deposited = new LongAdder();
+        LongAdder changePaid = new LongAdder();
+        LongAdder spent = new LongAdder();
+        Map<Integer, LongAdder> unitsSold = new ConcurrentHashMap<>();
+
+        List<Callable<Void>> actors = new ArrayList<>();
+        for (Integer buyerId : buyerIds) {
+            actors.add(() -> {
+                actAs(buyerId, UserRole.BUYER);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_BUYER; i++) {
+                    int roll = random.nextInt(100);
+                    if (roll < 40) {
+                        int coin = COINS[random.nextInt(COINS.length)];
+                        vendingService.deposit(coin);
+                        deposited.add(coin);
+                    } else if (roll < 85) {
+                        Integer productId = productIds.get(random.nextInt(productIds.size()));
+                        int amount = 1 + random.nextInt(3);
+                        try {
+                            BuyResponseDto response = vendingService.buy(productId, amount);
+                            spent.add(response.getTotalPrice().longValueExact());
+                            unitsSold.computeIfAbsent(productId, key -> new LongAdder()).add(amount);
+                        } catch (ResponseStatusException e) {
+                            assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+                        }
+                    } else {
+                        vendingService.reset().getChange().forEach((coin, count) -> changePaid.add((long) coin * count));
+                    }
+                }
+                return null;
+            });
+        }
+        for (int s = 0; s < SELLERS; s++) {
+            actors.add(() -> {
+                actAs(SELLER_ID, UserRole.SELLER);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_SELLER; i++) {
+                    Integer productId = productIds.get(random.nextInt(productIds.size()));
+                    Product repriced = productService.updateProduct(Product.builder()
+                            .id(productId)
+                            .productName("Stress " + productId)
+                            .cost(BigDecimal.valueOf(1 + random.nextInt(10)))
+                            .build());
+                    assertTrue(repriced.getAmountAvailable() >= 0, "stock went negative");
+                }
+                return null;
+            });
+        }
+
+        runConcurrently(actors);
+        depositAccumulator.flushAll();
+
+        long totalSpent = spent.sum();
+        long depositsLeft = buyerIds.stream()
+                .map(id -> userRepository.findById(id).orElseThrow().getDeposit())
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .longValueExact();
+        assertEquals(deposited.sum(), depositsLeft + totalSpent + changePaid.sum(), "money was created or lost");
+
+        long totalUnits = 0;
+        for (Integer productId : productIds) {
+            int finalStock = productRepository.findById(productId).orElseThrow().getAmountAvailable();
+            long sold = unitsSold.getOrDefault(productId, new LongAdder()).sum();
+            assertTrue(finalStock >= 0, "stock went negative");
+            assertEquals(initialStock.get(productId) - sold, finalStock, "stock decrements do not match sales");
+            totalUnits += sold;
+        }
+
+        SellerSummary summaryAfter = sellerSummary();
+        assertEquals(totalUnits, summaryAfter.getUnitsSold() - summaryBefore.getUnitsSold());
+        assertEquals(0, BigDecimal.valueOf(totalSpent).compareTo(summaryAfter.getRevenue()
+                .subtract(summaryBefore.getRevenue())));
+    }
+
+    @Test
+    @DirtiesContext
+    void givenScarceStock_whenBuyersRace_ThenExpectExactlyTheStockSold() throws Exception {
+        int stock = 25;
+        List<Integer> buyerIds = createBuyers(BUYERS);
+        Product product = createProduct("Scarce", 5, stock);
+        LongAdder sold = new LongAdder();
+
+        List<Callable<Void>> actors = new ArrayList<>();
+        for (Integer buyerId : buyerIds) {
+            actors.add(() -> {
+                actAs(buyerId, UserRole.BUYER);
+                vendingService.deposit(100);
+                for (int i = 0; i < stock; i++) {
+                    try {
+                        vendingService.buy(product.getId(), 1);
+                        sold.increment();
+                    } catch (ResponseStatusException e) {
+                        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+                    }
+                }
+                return null;
+            });
+        }
+
+        runConcurrently(actors);
+
+        assertEquals(stock, sold.sum());
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getAmountAvailable());
+    }
+
+    private List<Integer> createBuyers(int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(userRepository.save(User.builder()
+                    .username("stress-buyer-" + i)
+                    .password("password")
+                    .role(UserRole.BUYER)
+                    .deposit(BigDecimal.ZERO)
+                    .build()).getId());
+        }
+        return ids;
+    }
+
+    private Product createProduct(String name, int cost, int stock) {
+        return productRepository.save(Product.builder()
+                .productName(name)
+                .sellerId(SELLER_ID)
+                .cost(BigDecimal.valueOf(cost))
+                .amountAvailable(stock)
+                .build());
+    }
+
+    private SellerSummary sellerSummary() {
+        return sellerDashboardService.getSummary(SELLER_ID);
+    }
+
+    private static void actAs(Integer userId, UserRole role) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new VendingPrincipal(userId, "stress-" + userId,
+                        List.of(new SimpleGrantedAuthority("ROLE_" + role.name()))),
+                null, List.of()));
+    }
+
+    /**
+     * Starts every actor at once and waits for all of them, rethrowing the first failure.
+     */
+    private static void runConcurrently(List<Callable<Void>> actors) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(actors.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> actor : actors) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return actor.call();
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                try {
+                    future.get(2, TimeUnit.MINUTES);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
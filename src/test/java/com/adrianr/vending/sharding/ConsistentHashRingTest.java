@@ -0,0 +1,61 @@
+package com.adrianr.vending.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    void givenSameNodes_whenLookingUpKey_ThenExpectSameNode() {
+        ConsistentHashRing<String> first = new ConsistentHashRing<>(List.of("a", "b", "c"), 160);
+        ConsistentHashRing<String> second = new ConsistentHashRing<>(List.of("c", "a", "b"), 160);
+
+        for (int key = 0; key < 1_000; key++) {
+            assertEquals(first.nodeFor(key), second.nodeFor(key));
+        }
+    }
+
+    @Test
+    void givenThreeNodes_whenHashingKeys_ThenExpectRoughlyEvenDistribution() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(List.of("a", "b", "c"), 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int key = 0; key < KEYS; key++) {
+            counts.merge(ring.nodeFor(key), 1, Integer::sum);
+        }
+
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 * 0.2, counts.toString()));
+    }
+
+    @Test
+    void givenAddedNode_whenHashingKeys_ThenExpectOnlyKeysMovingToNewNode() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(List.of("a", "b", "c"), 160);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(List.of("a", "b", "c", "d"), 160);
+
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            String node = after.nodeFor(key);
+            if (!node.equals(before.nodeFor(key))) {
+                assertEquals("d", node);
+                moved++;
+            }
+        }
+
+        assertTrue(moved < KEYS / 4 * 1.2, "moved " + moved);
+    }
+
+    @Test
+    void givenNoNodes_whenCreatingRing_ThenExpectIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<>(List.of(), 160));
+    }
+
+}
@@ -0,0 +1,293 @@
+package com.adrianr.vending.sharding;
+
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.repository.UserRepository;
+import com.adrianr.vending.rest.dto.CreateUserDto;
+import com.adrianr.vending.rest.dto.ProductDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.flyway.locations=classpath:db/migration/{vendor}",
+        "spring.jpa.open-in-view=false",
+        "vending.sharding.enabled=true",
+        "vending.sharding.shards.shard-a.jdbc-url=jdbc:h2:mem:shard-a;DB_CLOSE_DELAY=-1",
+        "vending.sharding.shards.shard-a.username=sa",
+        "vending.sharding.shards.shard-b.jdbc-url=jdbc:h2:mem:shard-b;DB_CLOSE_DELAY=-1",
+        "vending.sharding.shards.shard-b.username=sa",
+        "vending.sharding.shards.shard-c.jdbc-url=jdbc:h2:mem:shard-c;DB_CLOSE_DELAY=-1",
+        "vending.sharding.shards.shard-c.username=sa"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ShardingIntegrationTest {
+
+    private static final int USERS = 9;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardIdAllocator shardIdAllocator;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ShardedBuySaga shardedBuySaga;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, JdbcTemplate> shards = new TreeMap<>();
+
+    @BeforeEach
+    void connectToShards() {
+        for (String shard : List.of("shard-a", "shard-b", "shard-c")) {
+            shards.put(shard, new JdbcTemplate(
+                    new DriverManagerDataSource("jdbc:h2:mem:" + shard + ";DB_CLOSE_DELAY=-1", "sa", "")));
+        }
+    }
+
+    @Test
+    void givenShardedUsers_whenBuyingAcrossShards_ThenExpectStockAndDepositUpdatedOnOwningShards() throws Exception {
+        Map<Integer, String> users = createUsers("cross");
+        Integer sellerId = users.keySet().iterator().next();
+        Integer buyerId = userOnOtherShard(users, sellerId);
+        String seller = users.get(sellerId);
+        String buyer = users.get(buyerId);
+
+        Integer productId = createProduct(seller, 10, 4);
+        mockMvc.perform(post("/deposit/50").with(user(buyer).roles(UserRole.BUYER.getName())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deposit").value(50));
+
+        mockMvc.perform(post("/buy")
+                        .with(user(buyer).roles(UserRole.BUYER.getName()))
+                        .queryParam("productId", productId.toString())
+                        .queryParam("amount", "3"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(30))
+                .andExpect(jsonPath("$.change").value(20));
+
+        JdbcTemplate sellerShard = shards.get(shardRouter.shardForSeller(sellerId));
+        JdbcTemplate buyerShard = shards.get(shardRouter.shardForUser(buyerId));
+        assertNotEquals(sellerShard, buyerShard);
+        assertEquals(1, sellerShard.queryForObject(
+                "select amount_available from products where id = ?", Integer.class, productId));
+        assertEquals(20, buyerShard.queryForObject("select deposit from users where id = ?", Integer.class, buyerId));
+        assertEquals(0, countOnAllShards("buy_sagas"));
+    }
+
+    @Test
+    void givenInsufficientFunds_whenBuyingAcrossShards_ThenExpectStockCompensated() throws Exception {
+        Map<Integer, String> users = createUsers("saga");
+        Integer sellerId = users.keySet().iterator().next();
+        Integer buyerId = userOnOtherShard(users, sellerId);
+
+        Integer productId = createProduct(users.get(sellerId), 10, 4);
+
+        mockMvc.perform(post("/buy")
+                        .with(user(users.get(buyerId)).roles(UserRole.BUYER.getName()))
+                        .queryParam("productId", productId.toString())
+                        .queryParam("amount", "1"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        assertEquals(4, shards.get(shardRouter.shardForSeller(sellerId)).queryForObject(
+                "select amount_available from products where id = ?", Integer.class, productId));
+        assertEquals(0, countOnAllShards("buy_sagas"));
+        assertEquals(0, countOnAllShards("buy_saga_outcomes"));
+    }
+
+    @Test
+    void givenAbandonedSagas_whenRecovering_ThenExpectStockReturnedOnlyWhereBuyerWasNotDebited() throws Exception {
+        Map<Integer, String> users = createUsers("recovery");
+        Integer sellerId = users.keySet().iterator().next();
+        Integer buyerId = userOnOtherShard(users, sellerId);
+        Integer productId = createProduct(users.get(sellerId), 10, 4);
+
+        JdbcTemplate sellerShard = shards.get(shardRouter.shardForSeller(sellerId));
+        JdbcTemplate buyerShard = shards.get(shardRouter.shardForUser(buyerId));
+        sellerShard.update("update products set amount_available = 1 where id = ?", productId);
+        sellerShard.update("insert into buy_sagas(id, product_id, buyer_id, amount, created_at) "
+                + "values ('unpaid', ?, ?, 2, timestamp '2021-10-01 12:00:00')", productId, buyerId);
+        sellerShard.update("insert into buy_sagas(id, product_id, buyer_id, amount, created_at) "
+                + "values ('paid', ?, ?, 1, timestamp '2021-10-01 12:00:00')", productId, buyerId);
+        buyerShard.update("insert into buy_saga_outcomes(saga_id, debited, created_at) "
+                + "values ('paid', true, timestamp '2021-10-01 12:00:00')");
+
+        shardedBuySaga.recover();
+
+        assertEquals(3, sellerShard.queryForObject(
+                "select amount_available from products where id = ?", Integer.class, productId));
+        assertEquals(0, countOnAllShards("buy_sagas"));
+        assertEquals(0, countOnAllShards("buy_saga_outcomes"));
+    }
+
+    @Test
+    void givenShardedUsers_whenListingUsersAndProducts_ThenExpectResultsGatheredFromAllShards() throws Exception {
+        createUsers("list");
+        int totalUsers = shards.values().stream()
+                .mapToInt(shard -> shard.queryForObject("select count(*) from users", Integer.class))
+                .sum();
+
+        mockMvc.perform(get("/users").with(user("list-user")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(totalUsers));
+
+        shards.forEach((name, shard) -> shard.queryForList("select id from users", Integer.class)
+                .forEach(id -> assertEquals(name, shardRouter.shardForUser(id))));
+    }
+
+    @Test
+    void givenRolledBackTransaction_whenItRoutedToSeveralShards_ThenExpectOnlyOtherShardsWritesKept() throws Exception {
+        Map<Integer, String> users = createUsers("join");
+        Integer localId = users.keySet().stream()
+                .filter(id -> shardRouter.shardForUser(id).equals(shardRouter.getDirectoryShard()))
+                .findFirst()
+                .orElseThrow();
+        Integer remoteId = userOnOtherShard(users, localId);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userRepository.addToDeposit(localId, BigDecimal.TEN);
+            userRepository.addToDeposit(remoteId, BigDecimal.TEN);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, shards.get(shardRouter.getDirectoryShard()).queryForObject(
+                "select deposit from users where id = ?", Integer.class, localId));
+        assertEquals(10, shards.get(shardRouter.shardForUser(remoteId)).queryForObject(
+                "select deposit from users where id = ?", Integer.class, remoteId));
+    }
+
+    @Test
+    void givenMisplacedUserWithOpenSaga_whenRebalancing_ThenExpectMoveDeferredUntilSettled() {
+        Integer userId = shardIdAllocator.nextUserId();
+        String owner = shardRouter.shardForUser(userId);
+        String wrongShard = shards.keySet().stream().filter(shard -> !shard.equals(owner)).findFirst().orElseThrow();
+
+        JdbcTemplate wrong = shards.get(wrongShard);
+        wrong.update("insert into users(id, username, password, deposit, role) values (?, ?, ?, ?, ?)",
+                userId, "misplaced-buyer", "password", 0, UserRole.BUYER.getName());
+        shards.get(owner).update("insert into buy_sagas(id, product_id, buyer_id, amount, created_at) "
+                + "values ('open', 0, ?, 1, timestamp '2021-10-01 12:00:00')", userId);
+
+        ShardRebalancer.RebalanceReport deferred = shardRebalancer.rebalance();
+        shards.get(owner).update("delete from buy_sagas where id = 'open'");
+        ShardRebalancer.RebalanceReport moved = shardRebalancer.rebalance();
+
+        assertEquals(0, deferred.getMovedUsers());
+        assertEquals(1, deferred.getDeferredUsers());
+        assertEquals(1, moved.getMovedUsers());
+        assertEquals(0, wrong.queryForObject("select count(*) from users where id = ?", Integer.class, userId));
+        assertEquals("misplaced-buyer", userRepository.findById(userId).orElseThrow().getUsername());
+    }
+
+    @Test
+    void givenUserOnWrongShard_whenRebalancing_ThenExpectUserAndProductsMovedToRingShard() {
+        Integer userId = shardIdAllocator.nextUserId();
+        Integer productId = shardIdAllocator.nextProductId();
+        String owner = shardRouter.shardForUser(userId);
+        String wrongShard = shards.keySet().stream().filter(shard -> !shard.equals(owner)).findFirst().orElseThrow();
+
+        JdbcTemplate wrong = shards.get(wrongShard);
+        wrong.update("insert into users(id, username, password, deposit, role) values (?, ?, ?, ?, ?)",
+                userId, "misplaced", "password", 0, UserRole.SELLER.getName());
+        wrong.update("insert into products(id, product_name, seller_id, cost, amount_available) values (?, ?, ?, ?, ?)",
+                productId, "Misplaced Product", userId, 5, 1);
+
+        ShardRebalancer.RebalanceReport report = shardRebalancer.rebalance();
+
+        assertEquals(1, report.getMovedUsers());
+        assertEquals(1, report.getMovedProducts());
+        assertEquals(0, wrong.queryForObject("select count(*) from users where id = ?", Integer.class, userId));
+        assertEquals(1, shards.get(owner).queryForObject("select count(*) from products where id = ?", Integer.class,
+                productId));
+        assertEquals("misplaced", userRepository.findById(userId).orElseThrow().getUsername());
+    }
+
+    private int countOnAllShards(String table) {
+        return shards.values().stream()
+                .mapToInt(shard -> shard.queryForObject("select count(*) from " + table, Integer.class))
+                .sum();
+    }
+
+    private Map<Integer, String> createUsers(String prefix) throws Exception {
+        Map<Integer, String> users = new TreeMap<>();
+        for (int i = 0; i < USERS; i++) {
+            CreateUserDto payload = CreateUserDto.builder()
+                    .username(prefix + "-" + i)
+                    .password("password")
+                    .role(UserRole.BUYER)
+                    .build();
+
+            String response = mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(payload)))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            users.put(objectMapper.readTree(response).get("id").asInt(), payload.getUsername());
+        }
+        return users;
+    }
+
+    private Integer userOnOtherShard(Map<Integer, String> users, Integer userId) {
+        return users.keySet().stream()
+                .filter(id -> !shardRouter.shardForUser(id).equals(shardRouter.shardForUser(userId)))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Integer createProduct(String seller, int cost, int amount) throws Exception {
+        ProductDto payload = ProductDto.builder()
+                .productName("Sharded Product")
+                .cost(BigDecimal.valueOf(cost))
+                .amountAvailable(amount)
+                .build();
+
+        String response = mockMvc.perform(post("/products")
+                        .with(user(seller).roles(UserRole.SELLER.getName()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("id").asInt();
+    }
+
+}
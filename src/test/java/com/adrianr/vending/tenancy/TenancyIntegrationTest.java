@@ -0,0 +1,170 @@
+package com.adrianr.vending.tenancy;
+
+import com.adrianr.vending.domain.UserRole;
+import com.adrianr.vending.rest.dto.CreateUserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "vending.tenancy.enabled=true",
+        "vending.tenancy.hosts[globex.vending.test]=globex",
+        "vending.tenancy.tenants.acme.jdbc-url=jdbc:h2:mem:tenant-acme;DB_CLOSE_DELAY=-1",
+        "vending.tenancy.tenants.acme.username=sa",
+        "vending.tenancy.tenants.globex.jdbc-url=jdbc:h2:mem:tenant-globex;DB_CLOSE_DELAY=-1",
+        "vending.tenancy.tenants.globex.username=sa",
+        "vending.rate-limit.enabled=false"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class TenancyIntegrationTest {
+
+    private static final String TENANT_HEADER = "X-Tenant-Id";
+    private static final String PASSWORD = "tenant-password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private JdbcTemplate acme;
+    private JdbcTemplate globex;
+
+    @BeforeEach
+    void connectToTenants() {
+        acme = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:tenant-acme;DB_CLOSE_DELAY=-1", "sa", ""));
+        globex = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:tenant-globex;DB_CLOSE_DELAY=-1", "sa", ""));
+    }
+
+    @Test
+    void givenTenantHeader_whenDepositing_ThenExpectOnlyThatTenantsDatabaseUpdated() throws Exception {
+        BigDecimal globexBefore = deposit(globex, "buyer");
+
+        mockMvc.perform(post("/deposit/10")
+                        .header(TENANT_HEADER, "acme")
+                        .with(user("buyer").roles("BUYER")))
+                .andExpect(status().isOk());
+
+        assertEquals(0, deposit(acme, "buyer").compareTo(deposit(globex, "buyer").add(BigDecimal.TEN)));
+        assertEquals(0, globexBefore.compareTo(deposit(globex, "buyer")));
+    }
+
+    @Test
+    void givenHostName_whenReadingProducts_ThenExpectTenantResolvedFromHost() throws Exception {
+        globex.update("insert into products (id, product_name, seller_id, cost, amount_available) "
+                + "values (900, 'Globex Cola', 9, 5, 3)");
+
+        mockMvc.perform(get("/products/900").with(request -> {
+                    request.setServerName("globex.vending.test");
+                    return request;
+                }))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productName").value("Globex Cola"));
+        mockMvc.perform(get("/products/900").header(TENANT_HEADER, "acme"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void givenNoOrUnknownTenant_whenRequesting_ThenExpectBadRequest() throws Exception {
+        mockMvc.perform(get("/products"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products").header(TENANT_HEADER, "initech"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void givenTokenFromOneTenant_whenUsedOnAnother_ThenExpectUnauthorized() throws Exception {
+        createUser("acme", "tenant-buyer");
+        createUser("globex", "tenant-buyer");
+        String response = mockMvc.perform(post("/auth/token")
+                        .header(TENANT_HEADER, "acme")
+                        .with(httpBasic("tenant-buyer", PASSWORD)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(response).get("token").asText();
+
+        mockMvc.perform(post("/deposit/5")
+                        .header(TENANT_HEADER, "globex")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/deposit/5")
+                        .header(TENANT_HEADER, "acme")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deposit").value(5));
+    }
+
+    @Test
+    void givenTenantAtItsRequestLimit_whenAnotherRequestArrives_ThenExpectItTurnedAway() throws Exception {
+        TenancyProperties properties = new TenancyProperties();
+        properties.setMaxConcurrentRequests(1);
+        properties.setTenants(Map.of("acme", new HikariConfig(),
+                "globex", new HikariConfig()));
+        TenantFilter filter = new TenantFilter(properties);
+        AtomicInteger nestedStatus = new AtomicInteger();
+        AtomicInteger otherTenantStatus = new AtomicInteger();
+
+        filter.doFilter(tenantRequest("acme"), new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletResponse nested = new MockHttpServletResponse();
+            filter.doFilter(tenantRequest("acme"), nested, (innerRequest, innerResponse) -> {
+            });
+            nestedStatus.set(nested.getStatus());
+
+            MockHttpServletResponse other = new MockHttpServletResponse();
+            filter.doFilter(tenantRequest("globex"), other, (innerRequest, innerResponse) -> {
+            });
+            otherTenantStatus.set(other.getStatus());
+        });
+
+        assertEquals(429, nestedStatus.get());
+        assertEquals(200, otherTenantStatus.get());
+    }
+
+    private void createUser(String tenant, String username) throws Exception {
+        mockMvc.perform(post("/users")
+                        .header(TENANT_HEADER, tenant)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CreateUserDto.builder()
+                                .username(username)
+                                .password(PASSWORD)
+                                .role(UserRole.BUYER)
+                                .build())))
+                .andExpect(status().isCreated());
+    }
+
+    private static BigDecimal deposit(JdbcTemplate tenant, String username) {
+        return tenant.queryForObject("select deposit from users where username = ?", BigDecimal.class, username);
+    }
+
+    private static MockHttpServletRequest tenantRequest(String tenant) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        request.addHeader(TENANT_HEADER, tenant);
+        return request;
+    }
+
+}
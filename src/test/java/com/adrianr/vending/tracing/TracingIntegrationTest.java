@@ -0,0 +1,133 @@
+package com.adrianr.vending.tracing;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "vending.tracing.enabled=true",
+        "vending.tracing.log-spans=false",
+        "vending.rate-limit.enabled=false"
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class TracingIntegrationTest {
+
+    private static final String BUYER_ROLE = "BUYER";
+    private static final String BUYER_USERNAME = "buyer";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private InMemorySpanExporter exporter;
+
+    @BeforeEach
+    void clearSpans() {
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+        exporter.reset();
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = BUYER_ROLE, username = BUYER_USERNAME)
+    void givenBuyer_whenBuying_ThenExpectOneTraceFromFilterChainToJdbc() throws Exception {
+        mockMvc.perform(post("/buy")
+                        .queryParam("productId", "2")
+                        .queryParam("amount", "1"))
+                .andExpect(status().isOk());
+
+        List<SpanData> spans = finishedSpans();
+        SpanData server = span(spans, "POST /buy");
+        assertEquals(SpanKind.SERVER, server.getKind());
+        assertEquals(200L, server.getAttributes().get(longKey("http.status_code")));
+        assertEquals(server.getSpanId(), span(spans, "security filter chain").getParentSpanId());
+
+        SpanData buy = span(spans, "VendingService.buy");
+        assertEquals(server.getSpanId(), buy.getParentSpanId());
+        SpanData debit = span(spans, "UserRepository.debit");
+        SpanData update = spans.stream()
+                .filter(span -> span.getName().equals("JDBC UPDATE"))
+                .filter(span -> span.getParentSpanId().equals(debit.getSpanId()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no JDBC span under UserRepository.debit: " + names(spans)));
+        assertEquals(SpanKind.CLIENT, update.getKind());
+
+        assertTrue(spans.stream().allMatch(span -> span.getTraceId().equals(server.getTraceId())),
+                "spans from more than one trace: " + names(spans));
+    }
+
+    @Test
+    void givenTraceparent_whenRequesting_ThenExpectCallerTraceContinued() throws Exception {
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        mockMvc.perform(get("/products/1")
+                        .header("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01"))
+                .andExpect(status().isOk());
+
+        SpanData server = span(finishedSpans(), "GET /products/{id}");
+        assertEquals(traceId, server.getTraceId());
+        assertEquals("00f067aa0ba902b7", server.getParentSpanId());
+    }
+
+    @Test
+    void givenUnsampledCaller_whenRequesting_ThenExpectNothingRecorded() throws Exception {
+        mockMvc.perform(get("/products/1")
+                        .header("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00"))
+                .andExpect(status().isOk());
+
+        assertTrue(finishedSpans().isEmpty());
+    }
+
+    private List<SpanData> finishedSpans() {
+        tracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+        return exporter.getFinishedSpanItems();
+    }
+
+    private static SpanData span(List<SpanData> spans, String name) {
+        return spans.stream()
+                .filter(span -> span.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no span " + name + " in " + names(spans)));
+    }
+
+    private static String names(List<SpanData> spans) {
+        return spans.stream().map(SpanData::getName).collect(Collectors.joining(", "));
+    }
+
+    @TestConfiguration
+    static class ExporterConfiguration {
+
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+
+    }
+
+}
@@ -6,4 +6,30 @@ insert into users(id, username, password, role, deposit) values (11, 'test-buyer
 insert into products(id, product_name, seller_id, cost, amount_available) values (1, 'Coca Cola', 9, 12, 10);
 insert into products(id, product_name, seller_id, cost, amount_available) values (2, 'Pepsi', 9, 5, 5);
 insert into products(id, product_name, seller_id, cost, amount_available) values (3, 'Snickers', 9, 3, 12);
-insert into products(id, product_name, seller_id, cost, amount_available) values (4, 'Fanta', 10, 6, 7);
\ No newline at end of file
+insert into products(id, product_name, seller_id, cost, amount_available) values (4, 'Fanta', 10, 6, 7);
+
+insert into seller_summaries(seller_id, product_count) values (9, 3);
+insert into seller_summaries(seller_id, product_count) values (10, 1);
+insert into seller_summaries(seller_id, product_count) values (11, 0);
+
+insert into seller_sales_stripes(seller_id, stripe, units_sold, revenue, sales)
+select s.seller_id, r.stripe, 0, 0, 0
+from seller_summaries s cross join (values (0), (1), (2), (3), (4), (5), (6), (7), (8), (9), (10), (11), (12), (13),
+                                           (14), (15)) as r(stripe);
+
+insert into machines(id, location, owner_id) values (1, 'Lobby', 9);
+insert into machines(id, location, owner_id) values (2, 'Canteen', 9);
+
+insert into machine_slots(id, machine_id, product_id, amount_available) values (1, 1, 1, 2);
+insert into machine_slots(id, machine_id, product_id, amount_available) values (2, 2, 1, 5);
+
+insert into machine_coins(id, machine_id, coin, quantity) values (1, 1, 100, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (2, 1, 50, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (3, 1, 20, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (4, 1, 10, 1);
+insert into machine_coins(id, machine_id, coin, quantity) values (5, 1, 5, 1);
+insert into machine_coins(id, machine_id, coin, quantity) values (6, 2, 100, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (7, 2, 50, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (8, 2, 20, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (9, 2, 10, 0);
+insert into machine_coins(id, machine_id, coin, quantity) values (10, 2, 5, 0);